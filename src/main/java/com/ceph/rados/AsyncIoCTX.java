@@ -0,0 +1,277 @@
+/*
+ * RADOS Java - Java bindings for librados
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.ceph.rados;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.IntFunction;
+
+import com.ceph.rados.exceptions.RadosException;
+import com.ceph.rados.jna.RadosObjectInfo;
+
+/**
+ * CompletableFuture based view on the asynchronous operations of an IoCTX.
+ * <p>
+ * Every operation returns a future which is completed from the librados
+ * callback. The native completion is released automatically and negative
+ * return codes fail the future with the same RadosException the synchronous
+ * call would throw.
+ * <p>
+ * Futures are completed on the executor given to IoCTX.async(Executor), or
+ * on a shared CallbackDispatcher for IoCTX.async(), never on the librados
+ * callback thread unless the executor is null. Dependent stages which are
+ * not added with one of the *Async methods of CompletableFuture run on that
+ * executor too, so long stages delay the completion of other futures.
+ */
+public class AsyncIoCTX {
+
+    /**
+     * Submits an asynchronous operation using the given completion.
+     */
+    interface Operation {
+        void submit(Completion completion) throws RadosException;
+    }
+
+    private static final IntFunction<Void> NO_RESULT = returnValue -> null;
+
+    private final IoCTX ioctx;
+    private final Executor executor;
+
+    /**
+     * Created by IoCTX.async()
+     */
+    AsyncIoCTX(IoCTX ioctx, Executor executor) {
+        this.ioctx = ioctx;
+        this.executor = executor;
+    }
+
+    /**
+     * @return the IoCTX operations are issued on
+     */
+    public IoCTX getIoCTX() {
+        return ioctx;
+    }
+
+    /**
+     * Write to an object
+     *
+     * @param oid The object to write to
+     * @param buf The content to write
+     * @param offset The offset when writing
+     * @return a future completed once the write is complete
+     */
+    public CompletableFuture<Void> write(final String oid, final byte[] buf, final long offset) {
+        return submit(NO_RESULT,
+                c -> ioctx.aioWrite(oid, c, buf, offset),
+                "Failed writing %s bytes with offset %s to %s", buf.length, offset, oid);
+    }
+
+    /**
+     * Write the remaining bytes of a direct buffer to an object
+     *
+     * @param oid The object to write to
+     * @param buf A direct ByteBuffer holding the content to write
+     * @param offset The offset when writing
+     * @return a future completed once the write is complete
+     */
+    public CompletableFuture<Void> write(final String oid, final ByteBuffer buf, final long offset) {
+        return submit(NO_RESULT,
+                c -> ioctx.aioWrite(oid, c, buf, offset),
+                "Failed writing %s bytes with offset %s to %s", buf.remaining(), offset, oid);
+    }
+
+    /**
+     * Write an entire object
+     *
+     * @param oid The object to write to
+     * @param buf The content to write
+     * @return a future completed once the write is complete
+     */
+    public CompletableFuture<Void> writeFull(final String oid, final byte[] buf) {
+        return submit(NO_RESULT,
+                c -> ioctx.aioWriteFull(oid, c, buf, buf.length),
+                "Failed to write %s bytes to %s", buf.length, oid);
+    }
+
+    /**
+     * Write an entire object from the remaining bytes of a direct buffer
+     *
+     * @param oid The object to write to
+     * @param buf A direct ByteBuffer holding the content to write
+     * @return a future completed once the write is complete
+     */
+    public CompletableFuture<Void> writeFull(final String oid, final ByteBuffer buf) {
+        return submit(NO_RESULT,
+                c -> ioctx.aioWriteFull(oid, c, buf),
+                "Failed to write %s bytes to %s", buf.remaining(), oid);
+    }
+
+    /**
+     * Append data to an object
+     *
+     * @param oid The name to append to
+     * @param buf The data to append
+     * @return a future completed once the append is complete
+     */
+    public CompletableFuture<Void> append(final String oid, final byte[] buf) {
+        return submit(NO_RESULT,
+                c -> ioctx.aioAppend(oid, c, buf),
+                "Failed appending %s bytes to object %s", buf.length, oid);
+    }
+
+    /**
+     * Append the remaining bytes of a direct buffer to an object
+     *
+     * @param oid The name to append to
+     * @param buf A direct ByteBuffer holding the data to append
+     * @return a future completed once the append is complete
+     */
+    public CompletableFuture<Void> append(final String oid, final ByteBuffer buf) {
+        return submit(NO_RESULT,
+                c -> ioctx.aioAppend(oid, c, buf),
+                "Failed appending %s bytes to object %s", buf.remaining(), oid);
+    }
+
+    /**
+     * Remove an object
+     *
+     * @param oid The object to remove
+     * @return a future completed once the object is removed
+     */
+    public CompletableFuture<Void> remove(final String oid) {
+        return submit(NO_RESULT,
+                c -> ioctx.aioRemove(oid, c),
+                "Failed removing object %s", oid);
+    }
+
+    /**
+     * Read data from an object into a direct buffer
+     *
+     * Up to buf.remaining() bytes are read into the buffer starting at its
+     * position. The buffer must not be touched until the future is done, its
+     * position is not modified.
+     *
+     * @param oid The object's name
+     * @param buf A direct ByteBuffer to store the result
+     * @param offset The offset where to start reading
+     * @return a future holding the number of bytes read
+     */
+    public CompletableFuture<Integer> read(final String oid, final ByteBuffer buf, final long offset) {
+        return submit(returnValue -> returnValue,
+                c -> ioctx.aioRead(oid, c, buf, offset),
+                "Failed to read object %s using offset %s and length %s", oid, offset, buf.remaining());
+    }
+
+    /**
+     * Read data from an object
+     *
+     * @param oid The object's name
+     * @param length Amount of bytes to read
+     * @param offset The offset where to start reading
+     * @return a future holding the bytes read, which may be less than length
+     */
+    public CompletableFuture<byte[]> read(final String oid, final int length, final long offset) {
+        if (length < 0) {
+            throw new IllegalArgumentException("Length shouldn't be a negative value");
+        }
+        final ByteBuffer buf = ByteBuffer.allocateDirect(length);
+        return submit(returnValue -> {
+                    byte[] data = new byte[returnValue];
+                    buf.get(data);
+                    return data;
+                },
+                c -> ioctx.aioRead(oid, c, buf, offset),
+                "Failed to read object %s using offset %s and length %s", oid, offset, length);
+    }
+
+    /**
+     * Stat an object
+     *
+     * @param oid The name of the object
+     * @return a future holding the size and mtime of the object
+     */
+    public CompletableFuture<RadosObjectInfo> stat(final String oid) {
+        final IoCTX.StatResult stat = new IoCTX.StatResult(oid);
+        return submit(returnValue -> stat.getObjectInfo(),
+                c -> ioctx.aioStat(oid, c, stat),
+                "Failed performing a stat on object %s", oid);
+    }
+
+    /**
+     * Execute a compound read operation. The results queued on the ReadOp
+     * are filled in once the future is done, and the ReadOp must not be
+     * closed before that.
+     *
+     * @param oid The name of the object
+     * @param readOp The operation to execute
+     * @param flags The flags for the operation
+     * @return a future completed once the operation is done
+     */
+    public CompletableFuture<Void> operate(final String oid, final ReadOp readOp, final int flags) {
+        return submit(NO_RESULT,
+                c -> readOp.aioOperate(oid, c, flags),
+                "ReadOp.aioOperate(%s, %d)", oid, flags);
+    }
+
+    /**
+     * Execute a compound write operation. The WriteOp must not be closed
+     * before the future is done.
+     *
+     * @param oid The name of the object
+     * @param writeOp The operation to execute
+     * @param flags The flags for the operation
+     * @return a future completed once all mutations are applied, or failed
+     *         if none of them was
+     */
+    public CompletableFuture<Void> operate(final String oid, final WriteOp writeOp, final int flags) {
+        return submit(NO_RESULT,
+                c -> writeOp.aioOperate(oid, c, flags),
+                "WriteOp.aioOperate(%s, %d)", oid, flags);
+    }
+
+    /**
+     * Create a completion, submit an operation with it and return the future
+     * of the completion.
+     *
+     * @param result builds the result from the return value of the operation
+     * @param operation submits the operation
+     * @param errorMsg the message of the exception the future fails with
+     * @param errorMsgArgs the arguments for the error message
+     * @return the future of the operation
+     */
+    <T> CompletableFuture<T> submit(IntFunction<T> result, Operation operation, String errorMsg, Object... errorMsgArgs) {
+        final FutureCompletion<T> completion;
+        try {
+            completion = new FutureCompletion<>(executor, result, errorMsg, errorMsgArgs);
+        } catch (RadosException e) {
+            return failed(e);
+        }
+        try {
+            operation.submit(completion);
+        } catch (RadosException | RuntimeException e) {
+            completion.fail(e);
+        }
+        return completion.getFuture();
+    }
+
+    static <T> CompletableFuture<T> failed(Throwable cause) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(cause);
+        return future;
+    }
+}
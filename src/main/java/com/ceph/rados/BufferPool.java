@@ -0,0 +1,399 @@
+/*
+ * RADOS Java - Java bindings for librados
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.ceph.rados;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A pool of direct ByteBuffers in power of two size classes, bounded by a
+ * memory budget.
+ * <p>
+ * Allocating direct buffers is expensive and their memory is only freed by
+ * the garbage collector, so buffers for native I/O are borrowed with
+ * acquire() and handed back with release() instead.
+ * <p>
+ * All buffers, borrowed or idle, count against the budget. When it is used
+ * up, idle buffers of other size classes are dropped to make room, and if
+ * that is not enough acquire() waits until buffers are released.
+ * <p>
+ * Buffers larger than the largest size class are allocated with their exact
+ * size and dropped on release, but still count against the budget while
+ * they are borrowed.
+ */
+public class BufferPool {
+
+    public static final int DEFAULT_MIN_BUFFER_SIZE = 4 * 1024;
+    public static final int DEFAULT_MAX_BUFFER_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * System property with the budget in bytes of the shared pool.
+     */
+    public static final String SHARED_CAPACITY_PROPERTY = "com.ceph.rados.bufferPool.capacity";
+    private static final long DEFAULT_SHARED_CAPACITY = 64L * 1024 * 1024;
+
+    private static volatile BufferPool shared;
+
+    private final long capacity;
+    private final int minBufferSize;
+    private final int maxBufferSize;
+    private final int minShift;
+    private final ArrayDeque<ByteBuffer>[] idle;
+    private final Map<ByteBuffer, Boolean> borrowed = new IdentityHashMap<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+
+    // Guarded by lock
+    private long allocatedBytes;
+    private long idleBytes;
+    private long acquireCount;
+    private long reuseCount;
+    private long allocationCount;
+    private long evictionCount;
+    private long waitCount;
+
+    /**
+     * Get the pool shared by the bindings. Its budget is read from the
+     * system property com.ceph.rados.bufferPool.capacity and defaults to
+     * 64 MiB.
+     *
+     * @return BufferPool
+     */
+    public static BufferPool getShared() {
+        BufferPool pool = shared;
+        if (pool == null) {
+            synchronized (BufferPool.class) {
+                pool = shared;
+                if (pool == null) {
+                    pool = new BufferPool(Long.getLong(SHARED_CAPACITY_PROPERTY, DEFAULT_SHARED_CAPACITY));
+                    shared = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Create a pool with size classes from 4 KiB to 4 MiB.
+     *
+     * @param capacity the maximum number of bytes allocated by the pool, at
+     *                 least 4 MiB
+     */
+    public BufferPool(long capacity) {
+        this(capacity, DEFAULT_MIN_BUFFER_SIZE, DEFAULT_MAX_BUFFER_SIZE);
+    }
+
+    /**
+     * @param capacity the maximum number of bytes allocated by the pool
+     * @param minBufferSize the smallest size class, a power of two
+     * @param maxBufferSize the largest size class, a power of two
+     */
+    @SuppressWarnings("unchecked")
+    public BufferPool(long capacity, int minBufferSize, int maxBufferSize) {
+        if (Integer.bitCount(minBufferSize) != 1 || Integer.bitCount(maxBufferSize) != 1) {
+            throw new IllegalArgumentException("Buffer sizes should be powers of two");
+        }
+        if (minBufferSize > maxBufferSize) {
+            throw new IllegalArgumentException("The smallest buffer size is larger than the largest one");
+        }
+        if (capacity < maxBufferSize) {
+            throw new IllegalArgumentException("The capacity should hold at least one buffer of the largest size");
+        }
+        this.capacity = capacity;
+        this.minBufferSize = minBufferSize;
+        this.maxBufferSize = maxBufferSize;
+        this.minShift = Integer.numberOfTrailingZeros(minBufferSize);
+        this.idle = (ArrayDeque<ByteBuffer>[]) new ArrayDeque<?>[Integer.numberOfTrailingZeros(maxBufferSize) - minShift + 1];
+        for (int i = 0; i < idle.length; i++) {
+            idle[i] = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * Borrow a buffer, waiting for other buffers to be released if the
+     * budget is used up.
+     *
+     * @param size the number of bytes needed
+     * @return a direct buffer with position 0 and limit size. Its capacity
+     *         may be larger.
+     * @throws InterruptedException if interrupted while waiting
+     * @throws IllegalArgumentException if size is larger than the capacity
+     */
+    public ByteBuffer acquire(int size) throws InterruptedException {
+        return acquire(size, -1);
+    }
+
+    /**
+     * Borrow a buffer, waiting at most the given time for other buffers to be
+     * released if the budget is used up.
+     *
+     * @param size the number of bytes needed
+     * @param timeout the maximum time to wait
+     * @param unit the unit of timeout
+     * @return a direct buffer with position 0 and limit size, or null if the
+     *         budget stayed used up
+     * @throws InterruptedException if interrupted while waiting
+     * @throws IllegalArgumentException if size is larger than the capacity
+     */
+    public ByteBuffer tryAcquire(int size, long timeout, TimeUnit unit) throws InterruptedException {
+        return acquire(size, Math.max(0, unit.toNanos(timeout)));
+    }
+
+    private ByteBuffer acquire(int size, long timeoutNanos) throws InterruptedException {
+        if (size < 0) {
+            throw new IllegalArgumentException("Size shouldn't be a negative value");
+        }
+        if (size > capacity) {
+            throw new IllegalArgumentException("Size " + size + " exceeds the capacity of the pool");
+        }
+        final int sizeClass = sizeClass(size);
+        final int bufferSize = sizeClass < 0 ? size : minBufferSize << sizeClass;
+
+        ByteBuffer buf = null;
+        long nanos = timeoutNanos;
+        boolean waited = false;
+        lock.lock();
+        try {
+            acquireCount++;
+            while (true) {
+                if (sizeClass >= 0) {
+                    buf = idle[sizeClass].pollFirst();
+                    if (buf != null) {
+                        idleBytes -= bufferSize;
+                        reuseCount++;
+                        break;
+                    }
+                }
+                if (allocatedBytes + bufferSize > capacity
+                        && allocatedBytes - idleBytes + bufferSize <= capacity) {
+                    // only drop idle buffers if that makes enough room
+                    evict(allocatedBytes + bufferSize - capacity);
+                }
+                if (allocatedBytes + bufferSize <= capacity) {
+                    // reserve now, allocate outside the lock
+                    allocatedBytes += bufferSize;
+                    allocationCount++;
+                    break;
+                }
+                if (!waited) {
+                    waited = true;
+                    waitCount++;
+                }
+                if (timeoutNanos < 0) {
+                    released.await();
+                } else if (nanos <= 0) {
+                    return null;
+                } else {
+                    nanos = released.awaitNanos(nanos);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (buf == null) {
+            try {
+                buf = ByteBuffer.allocateDirect(bufferSize);
+            } catch (OutOfMemoryError e) {
+                lock.lock();
+                try {
+                    allocatedBytes -= bufferSize;
+                    released.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                throw e;
+            }
+        }
+        buf.clear().limit(size);
+
+        lock.lock();
+        try {
+            borrowed.put(buf, Boolean.TRUE);
+        } finally {
+            lock.unlock();
+        }
+        return buf;
+    }
+
+    /**
+     * Hand a buffer back to the pool. It must not be used afterwards.
+     *
+     * @param buf a buffer borrowed from this pool
+     * @throws IllegalArgumentException if the buffer is not borrowed from
+     *                                  this pool
+     */
+    public void release(ByteBuffer buf) {
+        lock.lock();
+        try {
+            if (borrowed.remove(buf) == null) {
+                throw new IllegalArgumentException("Buffer was not borrowed from this pool or released twice");
+            }
+            final int bufferSize = buf.capacity();
+            final int sizeClass = sizeClass(bufferSize);
+            if (sizeClass >= 0 && minBufferSize << sizeClass == bufferSize) {
+                buf.clear();
+                idle[sizeClass].offerFirst(buf);
+                idleBytes += bufferSize;
+            } else {
+                allocatedBytes -= bufferSize;
+            }
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drop idle buffers, largest first, until at least the given number of
+     * bytes is freed or no idle buffer is left.
+     */
+    private void evict(long bytes) {
+        for (int i = idle.length - 1; i >= 0 && bytes > 0; i--) {
+            ByteBuffer buf;
+            while (bytes > 0 && (buf = idle[i].pollLast()) != null) {
+                idleBytes -= buf.capacity();
+                allocatedBytes -= buf.capacity();
+                bytes -= buf.capacity();
+                evictionCount++;
+            }
+        }
+    }
+
+    /**
+     * @return the index of the size class for size, or -1 if it is larger
+     *         than the largest size class
+     */
+    private int sizeClass(int size) {
+        if (size <= minBufferSize) {
+            return 0;
+        }
+        if (size > maxBufferSize) {
+            return -1;
+        }
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - minShift;
+    }
+
+    /**
+     * @return the maximum number of bytes allocated by the pool
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the number of bytes in borrowed and idle buffers
+     */
+    public long getAllocatedBytes() {
+        lock.lock();
+        try {
+            return allocatedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of bytes in idle buffers
+     */
+    public long getIdleBytes() {
+        lock.lock();
+        try {
+            return idleBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of buffers currently borrowed
+     */
+    public int getBorrowedCount() {
+        lock.lock();
+        try {
+            return borrowed.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of acquire calls
+     */
+    public long getAcquireCount() {
+        lock.lock();
+        try {
+            return acquireCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of acquire calls served with an idle buffer
+     */
+    public long getReuseCount() {
+        lock.lock();
+        try {
+            return reuseCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of buffers allocated
+     */
+    public long getAllocationCount() {
+        lock.lock();
+        try {
+            return allocationCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of idle buffers dropped to make room in the budget
+     */
+    public long getEvictionCount() {
+        lock.lock();
+        try {
+            return evictionCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of acquire calls which had to wait for the budget
+     */
+    public long getWaitCount() {
+        lock.lock();
+        try {
+            return waitCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * RADOS Java - Java bindings for librados
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.ceph.rados;
+
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+
+import com.ceph.rados.exceptions.RadosException;
+
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+
+/**
+ * Helpers for handing direct ByteBuffers to librados, librbd and
+ * libradosstriper without a staging copy.
+ */
+public final class Buffers {
+
+    private Buffers() {}
+
+    /**
+     * Return a native pointer to the current position of a direct buffer.
+     *
+     * The pointer aliases the buffer's memory, so whatever librados writes
+     * through it is visible in the buffer and vice versa.
+     *
+     * @param buf a direct ByteBuffer
+     * @return Pointer to buf.position()
+     * @throws IllegalArgumentException if the buffer is not direct
+     */
+    public static Pointer pointer(ByteBuffer buf) {
+        if (!buf.isDirect()) {
+            throw new IllegalArgumentException("Buffer must be a direct ByteBuffer");
+        }
+        return Native.getDirectBufferPointer(buf).share(buf.position());
+    }
+
+    /**
+     * Same as {@link #pointer(ByteBuffer)} but also rejects read-only buffers,
+     * for buffers librados is going to fill.
+     *
+     * @throws ReadOnlyBufferException if the buffer is read-only
+     */
+    public static Pointer writablePointer(ByteBuffer buf) {
+        if (buf.isReadOnly()) {
+            throw new ReadOnlyBufferException();
+        }
+        return pointer(buf);
+    }
+
+    /**
+     * Borrow a buffer from a pool for an operation which reports failures
+     * as RadosException.
+     *
+     * @throws RadosException if interrupted while waiting for the pool
+     */
+    static ByteBuffer borrow(BufferPool pool, int size) throws RadosException {
+        try {
+            return pool.acquire(size);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RadosException("Interrupted while waiting for a buffer of " + size + " bytes");
+        }
+    }
+}
@@ -0,0 +1,323 @@
+/*
+ * RADOS Java - Java bindings for librados
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.ceph.rados;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.ceph.rados.exceptions.RadosException;
+
+/**
+ * Writes many objects with pipelined asynchronous writes.
+ * <p>
+ * The number of writes and the number of bytes in flight are bounded by a
+ * window. A failed write is recorded and does not abort the batch.
+ * <p>
+ * A BulkWriter keeps its completions for the next writeAll() call until it
+ * is closed. Several threads may call writeAll() at the same time: they
+ * share the window, and each call reports only its own writes.
+ */
+public class BulkWriter implements Closeable {
+
+    /**
+     * The outcome of a writeAll() call.
+     */
+    public static class BulkWriteResult {
+        private final long written;
+        private final long bytesWritten;
+        private final List<Failure> failures;
+        private final long elapsedNanos;
+
+        BulkWriteResult(long written, long bytesWritten, List<Failure> failures, long elapsedNanos) {
+            this.written = written;
+            this.bytesWritten = bytesWritten;
+            this.failures = Collections.unmodifiableList(failures);
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * @return the number of objects written successfully
+         */
+        public long getWritten() { return written; }
+
+        /**
+         * @return the number of bytes written successfully
+         */
+        public long getBytesWritten() { return bytesWritten; }
+
+        /**
+         * @return the writes which failed and why, in the order they failed.
+         *         An object written more than once may fail more than once.
+         */
+        public List<Failure> getFailures() { return failures; }
+
+        public long getElapsed(TimeUnit unit) { return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS); }
+
+        public double getObjectsPerSecond() { return perSecond(written); }
+
+        public double getBytesPerSecond() { return perSecond(bytesWritten); }
+
+        private double perSecond(long count) {
+            return elapsedNanos == 0 ? 0 : count * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+        }
+    }
+
+    /**
+     * A write which failed.
+     */
+    public static class Failure {
+        private final String oid;
+        private final RadosException cause;
+
+        Failure(String oid, RadosException cause) {
+            this.oid = oid;
+            this.cause = cause;
+        }
+
+        public String getOid() { return oid; }
+
+        public RadosException getCause() { return cause; }
+    }
+
+    /**
+     * The state of a single writeAll() call. Guarded by the lock of the
+     * writer.
+     */
+    private static class Batch {
+        int inFlight;
+        long written;
+        long bytesWritten;
+        final List<Failure> failures = new ArrayList<>();
+    }
+
+    /**
+     * A pooled completion which carries the object it is used for.
+     */
+    private class WriteCompletion extends Completion {
+        Batch batch;
+        String oid;
+        int length;
+
+        WriteCompletion() throws RadosException {
+            super(true, false);
+        }
+
+        @Override
+        public void onComplete() {
+            final int returnValue = getReturnValue();
+            final Batch batch = this.batch;
+            final String oid = this.oid;
+            final int length = this.length;
+            this.batch = null;
+            completions.release(this);
+            finished(batch, oid, length, returnValue < 0
+                    ? createException(returnValue, String.format("Failed to write %s bytes to %s", length, oid))
+                    : null);
+        }
+    }
+
+    private final IoCTX ioctx;
+    private final int maxOpsInFlight;
+    private final long maxBytesInFlight;
+    private final CompletionHandlePool completions;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition windowChanged = lock.newCondition();
+    private int opsInFlight;
+    private long bytesInFlight;
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+
+    /**
+     * @param ioctx the IO context to write to
+     * @param maxOpsInFlight the maximum number of writes in flight
+     * @param maxBytesInFlight the maximum number of bytes in flight. A single
+     *                         object larger than this is written on its own.
+     */
+    public BulkWriter(IoCTX ioctx, int maxOpsInFlight, long maxBytesInFlight) {
+        if (maxOpsInFlight < 1) {
+            throw new IllegalArgumentException("There should be at least one write in flight");
+        }
+        if (maxBytesInFlight < 1) {
+            throw new IllegalArgumentException("There should be at least one byte in flight");
+        }
+        this.ioctx = ioctx;
+        this.maxOpsInFlight = maxOpsInFlight;
+        this.maxBytesInFlight = maxBytesInFlight;
+        this.completions = new CompletionHandlePool(maxOpsInFlight, new CompletionHandlePool.Factory() {
+            @Override
+            public Completion create() throws RadosException {
+                return new WriteCompletion();
+            }
+        });
+    }
+
+    /**
+     * Write every object of items as a whole (like IoCTX.writeFull) and wait
+     * until all writes are done.
+     *
+     * @param items the object names and their content
+     * @return the number of objects and bytes written and the failed objects
+     * @throws InterruptedException if interrupted while waiting for the window.
+     *                              Writes in flight are waited for first.
+     */
+    public BulkWriteResult writeAll(Iterator<? extends Map.Entry<String, byte[]>> items) throws InterruptedException {
+        final long start = System.nanoTime();
+        final Batch batch = new Batch();
+
+        try {
+            while (items.hasNext()) {
+                Map.Entry<String, byte[]> item = items.next();
+                submit(batch, item.getKey(), item.getValue());
+            }
+        } finally {
+            awaitBatch(batch);
+        }
+
+        lock.lock();
+        try {
+            return new BulkWriteResult(batch.written, batch.bytesWritten, new ArrayList<>(batch.failures),
+                    System.nanoTime() - start);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of objects written successfully so far
+     */
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    /**
+     * @return the number of bytes written successfully so far
+     */
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    /**
+     * @return the number of writes currently in flight
+     */
+    public int getOpsInFlight() {
+        lock.lock();
+        try {
+            return opsInFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void submit(Batch batch, String oid, byte[] buf) throws InterruptedException {
+        acquireWindow(batch, buf.length);
+
+        WriteCompletion completion;
+        try {
+            completion = (WriteCompletion) completions.acquire();
+        } catch (RadosException e) {
+            finished(batch, oid, buf.length, e);
+            return;
+        }
+        completion.batch = batch;
+        completion.oid = oid;
+        completion.length = buf.length;
+        try {
+            ioctx.aioWriteFull(oid, completion, buf, buf.length);
+        } catch (RadosException e) {
+            completion.batch = null;
+            completions.release(completion);
+            finished(batch, oid, buf.length, e);
+        }
+    }
+
+    private void acquireWindow(Batch batch, int length) throws InterruptedException {
+        lock.lock();
+        try {
+            while (opsInFlight >= maxOpsInFlight
+                    || (opsInFlight > 0 && bytesInFlight + length > maxBytesInFlight)) {
+                windowChanged.await();
+            }
+            opsInFlight++;
+            bytesInFlight += length;
+            batch.inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Record the outcome of a write and make room in the window.
+     */
+    private void finished(Batch batch, String oid, int length, RadosException failure) {
+        if (failure == null) {
+            written.incrementAndGet();
+            bytesWritten.addAndGet(length);
+        }
+        lock.lock();
+        try {
+            if (failure == null) {
+                batch.written++;
+                batch.bytesWritten += length;
+            } else {
+                batch.failures.add(new Failure(oid, failure));
+            }
+            batch.inFlight--;
+            opsInFlight--;
+            bytesInFlight -= length;
+            windowChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void awaitBatch(Batch batch) throws InterruptedException {
+        boolean interrupted = false;
+        lock.lock();
+        try {
+            while (batch.inFlight > 0) {
+                try {
+                    windowChanged.await();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (interrupted) {
+            throw new InterruptedException();
+        }
+    }
+
+    /**
+     * Release the completions kept for reuse.
+     */
+    @Override
+    public void close() {
+        completions.close();
+    }
+}
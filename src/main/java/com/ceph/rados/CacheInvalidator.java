@@ -0,0 +1,202 @@
+/*
+ * RADOS Java - Java bindings for librados
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.ceph.rados;
+
+import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import com.ceph.rados.exceptions.RadosException;
+
+/**
+ * Keeps the client side caches of several clients consistent through
+ * watch/notify on a control object, so they can hold entries for minutes
+ * instead of relying on short times to live.
+ * <p>
+ * Every client watches the control object. A client which modified an
+ * object publishes its name, and each client, itself included, passes it
+ * to its cache as ObjectChangeListener.objectChanged. publishAll() makes
+ * every cache drop everything. publish returns once all watchers
+ * invalidated their caches or timed out.
+ * <p>
+ * If the watch fails, notifications may have been missed: the cache is
+ * told that everything changed and the watch is established again. If that
+ * fails too, check() retries it. The IoCTX should stay in the namespace it
+ * was in when the invalidator was created.
+ *
+ * @see ObjectMetadataCache
+ */
+public class CacheInvalidator implements Watch.Listener, Closeable {
+
+    public static final long DEFAULT_NOTIFY_TIMEOUT_MS = 5000;
+
+    private final IoCTX ioctx;
+    private final String controlOid;
+    private final ObjectChangeListener cache;
+    private final Executor executor;
+    private final long notifyTimeoutMs;
+
+    // Guarded by this
+    private Watch watch;
+    private RadosException lastError;
+    private boolean closed;
+
+    /**
+     * Watch a control object, created if needed, with the shared watch
+     * thread.
+     *
+     * @param ioctx the IO context of the control object
+     * @param controlOid the control object
+     * @param cache the cache to invalidate
+     * @throws RadosException if the control object could not be watched
+     */
+    public CacheInvalidator(IoCTX ioctx, String controlOid, ObjectChangeListener cache) throws RadosException {
+        this(ioctx, controlOid, cache, Watch.defaultDispatcher(), DEFAULT_NOTIFY_TIMEOUT_MS);
+    }
+
+    /**
+     * Watch a control object, created if needed.
+     *
+     * @param ioctx the IO context of the control object
+     * @param controlOid the control object
+     * @param cache the cache to invalidate
+     * @param executor runs the invalidations
+     * @param notifyTimeoutMs how long publishing waits for the watchers
+     * @throws RadosException if the control object could not be watched
+     */
+    public CacheInvalidator(IoCTX ioctx, String controlOid, ObjectChangeListener cache, Executor executor,
+            long notifyTimeoutMs) throws RadosException {
+        this.ioctx = ioctx;
+        this.controlOid = controlOid;
+        this.cache = cache;
+        this.executor = executor;
+        this.notifyTimeoutMs = notifyTimeoutMs;
+        try (WriteOp op = ioctx.writeOpCreate()) {
+            op.queueCreate(false);
+            op.operate(controlOid, Rados.OPERATION_NOFLAG);
+        }
+        this.watch = ioctx.watch(controlOid, this, executor);
+    }
+
+    /**
+     * Make the caches of all clients drop what they hold about an object.
+     *
+     * @param oid the modified object
+     * @return the watchers reached and the ones which timed out
+     * @throws RadosException if the notification could not be sent
+     */
+    public NotifyResult publish(String oid) throws RadosException {
+        if (oid.isEmpty()) {
+            throw new IllegalArgumentException("The object name shouldn't be empty");
+        }
+        return ioctx.notify(controlOid, oid.getBytes(StandardCharsets.UTF_8), notifyTimeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Make the caches of all clients drop everything.
+     *
+     * @return the watchers reached and the ones which timed out
+     * @throws RadosException if the notification could not be sent
+     */
+    public NotifyResult publishAll() throws RadosException {
+        return ioctx.notify(controlOid, new byte[0], notifyTimeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void onNotify(Watch.Notification notification) {
+        final byte[] payload = notification.getPayload();
+        if (payload.length == 0) {
+            cache.contextChanged();
+        } else {
+            cache.objectChanged(new String(payload, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Override
+    public void onError(Watch failed, RadosException e) {
+        // notifications may have been missed
+        cache.contextChanged();
+        synchronized (this) {
+            lastError = e;
+            if (!closed && watch == failed) {
+                rewatch();
+            }
+        }
+    }
+
+    /**
+     * Check the watch and establish it again if it failed. The cache is
+     * told that everything changed if it had to be established again.
+     *
+     * @return true if the control object is watched
+     */
+    public synchronized boolean check() {
+        if (closed) {
+            return false;
+        }
+        if (watch != null) {
+            try {
+                watch.check();
+                return true;
+            } catch (RadosException e) {
+                lastError = e;
+            }
+        }
+        cache.contextChanged();
+        rewatch();
+        return watch != null;
+    }
+
+    /**
+     * @return the last failure of the watch, or null
+     */
+    public synchronized RadosException getLastError() {
+        return lastError;
+    }
+
+    private void rewatch() {
+        if (watch != null) {
+            try {
+                watch.close();
+            } catch (RadosException e) {
+                // the failed watch may be gone already
+            }
+            watch = null;
+        }
+        try {
+            watch = ioctx.watch(controlOid, this, executor);
+        } catch (RadosException e) {
+            lastError = e;
+        }
+    }
+
+    /**
+     * Remove the watch. The cache is not invalidated anymore.
+     *
+     * @throws RadosException if the watch could not be removed
+     */
+    @Override
+    public synchronized void close() throws RadosException {
+        closed = true;
+        if (watch != null) {
+            final Watch w = watch;
+            watch = null;
+            w.close();
+        }
+    }
+}
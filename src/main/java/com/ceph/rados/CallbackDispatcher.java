@@ -0,0 +1,186 @@
+/*
+ * RADOS Java - Java bindings for librados
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.ceph.rados;
+
+import java.io.Closeable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded executor to run Completion handlers off the librados callback
+ * thread.
+ * <p>
+ * Handlers are queued and run by a fixed number of daemon threads.
+ * execute() never blocks, so the librados callback only hands the handler
+ * over. The queue capacity is a soft limit: handlers dispatched while it is
+ * full are queued anyway, in order, and counted by getOverflowCount().
+ * Handlers are never dropped and never run on the submitting thread. A
+ * growing overflow count means the handlers are too slow for the rate of
+ * completions, and the queue takes more memory than planned.
+ * <p>
+ * Handlers dispatched after close() are rejected with a
+ * RejectedExecutionException. Completion and Watch hand those to a shared
+ * dispatcher instead.
+ */
+public class CallbackDispatcher implements Executor, Closeable {
+
+    private static final AtomicInteger dispatcherCount = new AtomicInteger();
+    private static CallbackDispatcher fallback;
+    private static CallbackDispatcher shared;
+
+    private final ThreadPoolExecutor executor;
+    private final Semaphore slots;
+    private final AtomicLong overflowCount = new AtomicLong();
+
+    /**
+     * @param threads the number of threads running handlers
+     * @param queueCapacity the number of handlers which may wait for a thread
+     *                      before further ones count as overflow
+     */
+    public CallbackDispatcher(int threads, int queueCapacity) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("There should be at least one thread");
+        }
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Queue capacity should be at least one");
+        }
+        this.slots = new Semaphore(queueCapacity);
+        final String namePrefix = "rados-callback-" + dispatcherCount.incrementAndGet() + "-";
+        // Unbounded so overflowing handlers keep their order, the capacity
+        // is enforced by the slots
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private final AtomicInteger threadCount = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, namePrefix + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+
+    /**
+     * Create a dispatcher with one thread per available processor and a
+     * queue of 1024 handlers per thread.
+     */
+    public CallbackDispatcher() {
+        this(Runtime.getRuntime().availableProcessors(), 1024 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @return a dispatcher with a single thread which is never closed, for
+     *         handlers another executor rejected
+     */
+    static synchronized Executor fallback() {
+        if (fallback == null) {
+            fallback = new CallbackDispatcher(1, 1024);
+        }
+        return fallback;
+    }
+
+    /**
+     * @return a dispatcher with one thread per available processor which is
+     *         never closed, the default of IoCTX.async()
+     */
+    static synchronized Executor shared() {
+        if (shared == null) {
+            shared = new CallbackDispatcher();
+        }
+        return shared;
+    }
+
+    /**
+     * Queue a handler without blocking, beyond the capacity if the queue is
+     * full.
+     *
+     * @throws RejectedExecutionException if the dispatcher is closed
+     */
+    @Override
+    public void execute(final Runnable command) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("The callback dispatcher is closed");
+        }
+        if (!slots.tryAcquire()) {
+            overflowCount.incrementAndGet();
+            executor.execute(command);
+            return;
+        }
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    slots.release();
+                    command.run();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            slots.release();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the number of handlers waiting for a thread
+     */
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return the number of handlers which were queued beyond the capacity
+     *         because the queue was full
+     */
+    public long getOverflowCount() {
+        return overflowCount.get();
+    }
+
+    /**
+     * @return the number of handlers run so far
+     */
+    public long getCompletedCount() {
+        return executor.getCompletedTaskCount();
+    }
+
+    /**
+     * Stop the threads once the queued handlers have run. Handlers dispatched
+     * afterwards are rejected.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    /**
+     * Wait for queued handlers to finish after close().
+     *
+     * @return true if all handlers finished in time
+     * @throws InterruptedException
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+}
@@ -4,9 +4,10 @@ import static com.ceph.rados.Library.rados;
 
 import java.io.Closeable;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.ceph.rados.exceptions.RadosException;
 import com.sun.jna.Callback;
@@ -15,50 +16,77 @@ import com.sun.jna.ptr.PointerByReference;
 
 public class Completion extends RadosBase implements Closeable {
     // Static members
-    private static Map<Integer, Completion> completionMap = new HashMap<>();
-    private static int nextCompletionId = 1;
+    private static final CompletionRegistry<Completion> completionMap = new CompletionRegistry<>();
 
-    // Instance members
-    private boolean safe;
-    private boolean complete;
+    // Instance members, written by the librados callback threads
+    private volatile boolean safe;
+    private volatile boolean complete;
+    private volatile int returnValue;
+    // Handlers dispatched by the callbacks which did not finish yet
+    private final AtomicInteger runningHandlers = new AtomicInteger();
 
     // Callback support
     private static Callback completeCallback = new Callback() {
         @SuppressWarnings("unused")
         public void callback(Pointer completionPointer, Pointer callbackContext) throws RadosException {
-            final int completionId = (int) Pointer.nativeValue(callbackContext);
-            Completion completion;
-            synchronized (completionMap) {
-                completion = completionMap.get(completionId);
-            }
+            final Completion completion = completionMap.get((int) Pointer.nativeValue(callbackContext));
 
             // If the completion has not been closed yet, call the handler.
             if (completion != null) {
+                completion.returnValue = rados.rados_aio_get_return_value(completionPointer);
                 completion.complete = true;
-                completion.onComplete();
+                completion.runningHandlers.incrementAndGet();
+                completion.dispatch(completion.completeHandler);
             }
         }
     };
     private static Callback safeCallback = new Callback() {
         @SuppressWarnings("unused")
         public void callback(Pointer completionPointer, Pointer callbackContext) throws RadosException {
-            final int completionId = (int) Pointer.nativeValue(callbackContext);
-            Completion completion;
-            synchronized (completionMap) {
-                completion = completionMap.get(completionId);
-            }
+            final Completion completion = completionMap.get((int) Pointer.nativeValue(callbackContext));
 
             // If the completion has not been closed yet, call the handler.
             if (completion != null) {
+                completion.returnValue = rados.rados_aio_get_return_value(completionPointer);
                 completion.safe = true;
-                completion.onSafe();
+                completion.runningHandlers.incrementAndGet();
+                completion.dispatch(completion.safeHandler);
             }
         }
     };
 
     // Instance members
-    private Pointer pointer;
+    private volatile Pointer pointer;
     private int id;
+    private final boolean notifyOnComplete;
+    private final boolean notifyOnSafe;
+    private final Executor executor;
+    private final PointerByReference pointerByReference = new PointerByReference();
+    private final Runnable completeHandler = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                onComplete();
+            } finally {
+                runningHandlers.decrementAndGet();
+            }
+        }
+    };
+    private final Runnable safeHandler = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                onSafe();
+            } finally {
+                runningHandlers.decrementAndGet();
+            }
+        }
+    };
+    // Native memory an in-flight operation writes into, kept reachable for as
+    // long as this completion is.
+    private Object attachment;
+    // The CompletionHandlePool this completion is outstanding from, if any
+    volatile CompletionHandlePool pool;
 
     /**
      * Constructs a completion to use with asynchronous operations.
@@ -79,25 +107,53 @@ public class Completion extends RadosBase implements Closeable {
      * @throws RadosException
      */
     public Completion(final boolean notifyOnComplete, final boolean notifyOnSafe) throws RadosException {
+        this(notifyOnComplete, notifyOnSafe, null);
+    }
+
+    /**
+     * Constructs a completion whose handlers run on the given executor.
+     * <p>
+     * The librados callback only records that the operation completed and
+     * hands onComplete()/onSafe() over to the executor, so slow handlers do
+     * not hold up the callbacks of other operations. If the executor rejects
+     * a handler, e.g. because it was shut down, the handler runs on a shared
+     * dispatcher thread instead, never on the librados callback thread.
+     *
+     * @param notifyOnComplete
+     *            If true, onComplete() is called when the operation is in
+     *            memory on all replicas
+     * @param notifyOnSafe
+     *            If true, onSafe() is called when the operation is on stable
+     *            storage on all replicas
+     * @param executor
+     *            The executor to run onComplete() and onSafe() on, or null to
+     *            run them on the librados callback thread
+     * @throws RadosException
+     * @see CallbackDispatcher
+     */
+    public Completion(final boolean notifyOnComplete, final boolean notifyOnSafe, final Executor executor) throws RadosException {
         super();
-        final PointerByReference pointerByReference = new PointerByReference();
-
-        // Generate an ID for this completion.
-        synchronized (completionMap) {
-            id = nextCompletionId++;
-            if (id <= 0) {
-                id = 1;
-                nextCompletionId = 2;
-            }
+        this.notifyOnComplete = notifyOnComplete;
+        this.notifyOnSafe = notifyOnSafe;
+        this.executor = executor;
 
-            // If callbacks will be registered, then also record this object in
-            // the global completion map
-            // so that it can be accessed from the callback handlers.
-            if (notifyOnComplete || notifyOnSafe)
-                completionMap.put(id, this);
+        // If callbacks will be registered, then record this object in the
+        // global completion map so that it can be accessed from the callback
+        // handlers. Otherwise an ID is only needed to identify the completion.
+        id = notifyOnComplete || notifyOnSafe ? completionMap.register(this) : completionMap.nextId();
+        try {
+            create();
+        } catch (RadosException e) {
+            completionMap.unregister(id);
+            id = 0;
+            throw e;
         }
+    }
 
-        // Create the completion object.
+    /**
+     * Create the native completion, with callbacks to the registered ID.
+     */
+    private void create() throws RadosException {
         if (notifyOnComplete || notifyOnSafe) {
             handleReturnCode(new Callable<Integer>() {
                 @Override
@@ -118,6 +174,61 @@ public class Completion extends RadosBase implements Closeable {
         pointer = pointerByReference.getValue();
     }
 
+    /**
+     * Prepare this completion for another operation. Only call this once
+     * isQuiescent() returned true.
+     * <p>
+     * librados completions can not be reset, so the native completion is
+     * released and a new one is created. The completion keeps its ID, no
+     * callback of the previous operation can arrive anymore.
+     *
+     * @throws RadosException if the new native completion could not be
+     *                        created, the completion is unusable then
+     */
+    void recycle() throws RadosException {
+        final Pointer p = pointer;
+        if (p != null) {
+            pointer = null;
+            rados.rados_aio_release(p);
+        }
+        safe = false;
+        complete = false;
+        attachment = null;
+        create();
+    }
+
+    /**
+     * @return True if the operation is complete, its callbacks returned and
+     *         the handlers they dispatched finished, so recycle() can not
+     *         pull the completion from under them.
+     */
+    boolean isQuiescent() {
+        final Pointer p = pointer;
+        // The callbacks count their handlers before they return, so check
+        // the callbacks first
+        return p != null && rados.rados_aio_is_complete_and_cb(p) != 0 && runningHandlers.get() == 0;
+    }
+
+    /**
+     * @return True if the operation is complete, whether or not callbacks are
+     *         enabled.
+     */
+    boolean isCompleteNative() {
+        return rados.rados_aio_is_complete(getPointer()) != 0;
+    }
+
+    /**
+     * @return True if the operation is known to be complete, either through
+     *         the complete callback or by asking librados.
+     */
+    boolean isDone() {
+        if (complete) {
+            return true;
+        }
+        Pointer p = pointer;
+        return p != null && rados.rados_aio_is_complete(p) != 0;
+    }
+
     /**
      * Block until the operation completes. This means it is in memory on all
      * replicas.
@@ -133,6 +244,61 @@ public class Completion extends RadosBase implements Closeable {
         }, "Failed to wait for AIO completion");
     }
 
+    /**
+     * Block until the operation is on stable storage on all replicas.
+     *
+     * @throws RadosException
+     */
+    public void waitForSafe() throws RadosException {
+        handleReturnCode(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return rados.rados_aio_wait_for_safe(getPointer());
+            }
+        }, "Failed to wait for AIO safe");
+    }
+
+    /**
+     * Get the return value of the asynchronous operation. Only valid once the
+     * operation is complete.
+     * <p>
+     * For reads this is the number of bytes read, for other operations 0 on
+     * success. A negative value is an error code. Once a callback arrived,
+     * the value it saw is returned, so handlers may still call this after
+     * the completion was closed.
+     *
+     * @return int
+     */
+    public int getReturnValue() {
+        if (complete || safe) {
+            return returnValue;
+        }
+        return rados.rados_aio_get_return_value(getPointer());
+    }
+
+    /**
+     * Keep an object (usually a buffer librados writes into) reachable for as
+     * long as this completion is.
+     */
+    void attach(Object attachment) {
+        this.attachment = attachment;
+    }
+
+    /**
+     * Run a handler on the executor, or right away if there is none.
+     */
+    private void dispatch(Runnable handler) {
+        if (executor == null) {
+            handler.run();
+            return;
+        }
+        try {
+            executor.execute(handler);
+        } catch (RejectedExecutionException e) {
+            CallbackDispatcher.fallback().execute(handler);
+        }
+    }
+
     /**
      * Override this function to implement callback handling. If notifyOnSafe is
      * true, this function is called when the operation is in memory on all
@@ -157,11 +323,12 @@ public class Completion extends RadosBase implements Closeable {
      */
     @Override
     public void close() throws IOException {
-        rados.rados_aio_release(getPointer());
+        if (pointer != null) {
+            rados.rados_aio_release(pointer);
+            pointer = null;
+        }
         if (id > 0) {
-            synchronized (completionMap) {
-                completionMap.remove(id);
-            }
+            completionMap.unregister(id);
             id = 0;
         }
     }
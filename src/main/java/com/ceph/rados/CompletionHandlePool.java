@@ -0,0 +1,333 @@
+/*
+ * RADOS Java - Java bindings for librados
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.ceph.rados;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import com.ceph.rados.exceptions.RadosException;
+
+/**
+ * A pool of the Java handles of completions, for high rates of asynchronous
+ * operations.
+ * <p>
+ * A reused completion keeps its Java object, its handlers and its slot in
+ * the completion registry, so acquire() allocates nothing on the Java heap
+ * and does not register anything. The native completion is not pooled:
+ * librados has no way to reset a completion once it completed, so every
+ * reuse releases the previous native completion and creates a new one, as
+ * a new Completion would. CompletionHandlePoolBenchmark measures what is
+ * saved.
+ * <p>
+ * Completions must only be released once their operation is complete, or
+ * if they were never used. A completion released while its operation is
+ * still in flight, or one which was never used, is closed instead, as if
+ * close() was called on it. Completions may be released from their own
+ * onComplete(): a released completion is only reused once its callbacks
+ * returned and its handlers finished, until then acquire() creates a new
+ * one.
+ * <p>
+ * With leak tracking enabled, completions which are acquired but never
+ * released are reported by findLeaks(). Tracking costs an allocation per
+ * acquire(), so it is off by default.
+ */
+public class CompletionHandlePool implements Closeable {
+
+    /**
+     * Creates the completions of a pool, e.g. subclasses of Completion
+     * which implement onComplete().
+     */
+    public interface Factory {
+        Completion create() throws RadosException;
+    }
+
+    /**
+     * A completion which was acquired but not released in time.
+     */
+    public static class Leak {
+        private final Completion completion;
+        private final long ageNanos;
+        private final Throwable acquireSite;
+
+        Leak(Completion completion, long ageNanos, Throwable acquireSite) {
+            this.completion = completion;
+            this.ageNanos = ageNanos;
+            this.acquireSite = acquireSite;
+        }
+
+        public Completion getCompletion() { return completion; }
+        public long getAge(TimeUnit unit) { return unit.convert(ageNanos, TimeUnit.NANOSECONDS); }
+
+        /**
+         * @return a Throwable whose stack trace shows where the completion was
+         *         acquired
+         */
+        public Throwable getAcquireSite() { return acquireSite; }
+    }
+
+    private static class Acquisition {
+        final long acquiredAt;
+        final Throwable site;
+
+        Acquisition(long acquiredAt, Throwable site) {
+            this.acquiredAt = acquiredAt;
+            this.site = site;
+        }
+    }
+
+    private static final Factory DEFAULT_FACTORY = new Factory() {
+        @Override
+        public Completion create() throws RadosException {
+            return new Completion(false, false);
+        }
+    };
+
+    // Marks the completions outstanding from a pool without allocating
+    private static final AtomicReferenceFieldUpdater<Completion, CompletionHandlePool> OWNER =
+            AtomicReferenceFieldUpdater.newUpdater(Completion.class, CompletionHandlePool.class, "pool");
+
+    private final Factory factory;
+    private final int maxIdle;
+    private final boolean trackLeaks;
+
+    // Released completions, oldest first, which are recycled by acquire()
+    private final ConcurrentLinkedDeque<Completion> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final AtomicInteger outstandingCount = new AtomicInteger();
+    private final ConcurrentMap<Completion, Acquisition> outstanding = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+
+    /**
+     * Create a pool of completions without callbacks.
+     *
+     * @param maxIdle the maximum number of released completions kept for reuse
+     */
+    public CompletionHandlePool(int maxIdle) {
+        this(maxIdle, DEFAULT_FACTORY, false);
+    }
+
+    /**
+     * @param maxIdle the maximum number of released completions kept for reuse
+     * @param factory creates new completions
+     */
+    public CompletionHandlePool(int maxIdle, Factory factory) {
+        this(maxIdle, factory, false);
+    }
+
+    /**
+     * @param maxIdle the maximum number of released completions kept for reuse
+     * @param factory creates new completions
+     * @param trackLeaks if true, record every acquire() with its stack trace
+     *                   so findLeaks() can tell which completions leaked and
+     *                   where they were acquired
+     */
+    public CompletionHandlePool(int maxIdle, Factory factory, boolean trackLeaks) {
+        if (maxIdle < 0) {
+            throw new IllegalArgumentException("maxIdle shouldn't be a negative value");
+        }
+        this.maxIdle = maxIdle;
+        this.factory = factory;
+        this.trackLeaks = trackLeaks;
+    }
+
+    /**
+     * Take a completion from the pool, or create one if none can be reused.
+     *
+     * @return Completion ready to be used for one asynchronous operation
+     * @throws RadosException if a new completion could not be created
+     */
+    public Completion acquire() throws RadosException {
+        if (closed) {
+            throw new IllegalStateException("The completion pool is closed");
+        }
+        Completion completion = reuse();
+        if (completion == null) {
+            completion = factory.create();
+            created.incrementAndGet();
+        }
+        OWNER.set(completion, this);
+        outstandingCount.incrementAndGet();
+        if (trackLeaks) {
+            outstanding.put(completion, new Acquisition(System.nanoTime(), new Throwable("Completion acquired here")));
+        }
+        return completion;
+    }
+
+    /**
+     * Return a completion to the pool once its operation is complete.
+     *
+     * @param completion a completion acquired from this pool
+     * @throws IllegalArgumentException if the completion is not outstanding
+     *                                  from this pool
+     */
+    public void release(Completion completion) {
+        if (!OWNER.compareAndSet(completion, this, null)) {
+            throw new IllegalArgumentException("Completion was not acquired from this pool or released twice");
+        }
+        outstandingCount.decrementAndGet();
+        if (trackLeaks) {
+            outstanding.remove(completion);
+        }
+
+        if (closed || completion.getPointer() == null || !completion.isCompleteNative()) {
+            discard(completion);
+            return;
+        }
+        if (idleCount.incrementAndGet() > maxIdle) {
+            idleCount.decrementAndGet();
+            discard(completion);
+            return;
+        }
+        idle.offerLast(completion);
+
+        if (closed) {
+            closeIdle();
+        }
+    }
+
+    /**
+     * @return the oldest released completion, recycled for a new operation,
+     *         or null if none is quiescent yet
+     */
+    private Completion reuse() {
+        final Completion completion = idle.pollFirst();
+        if (completion == null) {
+            return null;
+        }
+        if (!completion.isQuiescent()) {
+            // its handlers are still running, try again on a later acquire()
+            idle.offerLast(completion);
+            return null;
+        }
+        idleCount.decrementAndGet();
+        try {
+            completion.recycle();
+        } catch (RadosException e) {
+            discard(completion);
+            return null;
+        }
+        reused.incrementAndGet();
+        return completion;
+    }
+
+    /**
+     * Find completions which were acquired but not released.
+     *
+     * @param minAge only report completions outstanding for at least this long
+     * @param unit the unit of minAge
+     * @return the leaked completions, oldest first, always empty unless leak
+     *         tracking is enabled
+     */
+    public List<Leak> findLeaks(long minAge, TimeUnit unit) {
+        if (!trackLeaks) {
+            return Collections.emptyList();
+        }
+        final long now = System.nanoTime();
+        final long minAgeNanos = unit.toNanos(minAge);
+        List<Leak> leaks = new ArrayList<>();
+        for (Map.Entry<Completion, Acquisition> entry : outstanding.entrySet()) {
+            long age = now - entry.getValue().acquiredAt;
+            if (age >= minAgeNanos) {
+                leaks.add(new Leak(entry.getKey(), age, entry.getValue().site));
+            }
+        }
+        leaks.sort((a, b) -> Long.compare(b.ageNanos, a.ageNanos));
+        return leaks;
+    }
+
+    /**
+     * @return the number of completions acquired and not yet released
+     */
+    public int getOutstandingCount() {
+        return outstandingCount.get();
+    }
+
+    /**
+     * @return the number of completions waiting for reuse
+     */
+    public int getIdleCount() {
+        return idleCount.get();
+    }
+
+    /**
+     * @return the number of completions created by the pool
+     */
+    public long getCreatedCount() {
+        return created.get();
+    }
+
+    /**
+     * @return the number of times acquire() reused a released completion
+     */
+    public long getReusedCount() {
+        return reused.get();
+    }
+
+    /**
+     * @return the number of released completions which were closed instead of
+     *         being kept for reuse
+     */
+    public long getDiscardedCount() {
+        return discarded.get();
+    }
+
+    /**
+     * Close all idle completions. Completions released afterwards are closed
+     * as well. Outstanding completions are left alone, see findLeaks().
+     */
+    @Override
+    public void close() {
+        closed = true;
+        closeIdle();
+    }
+
+    private void closeIdle() {
+        Completion completion;
+        while ((completion = idle.pollFirst()) != null) {
+            idleCount.decrementAndGet();
+            closeQuietly(completion);
+        }
+    }
+
+    private void discard(Completion completion) {
+        discarded.incrementAndGet();
+        closeQuietly(completion);
+    }
+
+    private static void closeQuietly(Completion completion) {
+        try {
+            completion.close();
+        } catch (IOException e) {
+            // rados_aio_release does not fail
+        }
+    }
+}
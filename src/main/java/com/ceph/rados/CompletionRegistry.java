@@ -0,0 +1,77 @@
+/*
+ * RADOS Java - Java bindings for librados
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.ceph.rados;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Maps the callback context handed to librados back to the Java object
+ * waiting for the callback.
+ * <p>
+ * Lookups from the librados callback threads and registrations from the
+ * submitting threads do not share a lock, so the registry does not become a
+ * serialization point with many operations in flight.
+ *
+ * @param <T> the type of the registered objects
+ */
+final class CompletionRegistry<T> {
+
+    private final ConcurrentMap<Integer, T> entries = new ConcurrentHashMap<>();
+    private final AtomicInteger lastId = new AtomicInteger();
+
+    /**
+     * @return a new positive ID which is not registered
+     */
+    int nextId() {
+        int id;
+        do {
+            id = lastId.incrementAndGet() & Integer.MAX_VALUE;
+        } while (id == 0 || entries.containsKey(id));
+        return id;
+    }
+
+    /**
+     * Register an object under a new positive ID.
+     *
+     * @return the ID
+     */
+    int register(T entry) {
+        while (true) {
+            final int id = nextId();
+            if (entries.putIfAbsent(id, entry) == null) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * @return the object registered under id or null if there is none
+     */
+    T get(int id) {
+        return entries.get(id);
+    }
+
+    void unregister(int id) {
+        entries.remove(id);
+    }
+
+    int size() {
+        return entries.size();
+    }
+}
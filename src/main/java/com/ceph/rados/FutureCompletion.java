@@ -0,0 +1,100 @@
+/*
+ * RADOS Java - Java bindings for librados
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.ceph.rados;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.IntFunction;
+
+import com.ceph.rados.exceptions.RadosException;
+
+/**
+ * A completion which completes a CompletableFuture from the librados
+ * callback and releases itself afterwards.
+ *
+ * @param <T> the type of the result of the operation
+ */
+class FutureCompletion<T> extends Completion {
+
+    private final CompletableFuture<T> future = new CompletableFuture<>();
+    private final IntFunction<T> result;
+    private final String errorMsg;
+    private final Object[] errorMsgArgs;
+
+    /**
+     * @param executor the executor to complete the future on, or null to
+     *                 complete it on the librados callback thread
+     * @param result builds the result of the operation from its non-negative
+     *               return value once it completed successfully
+     * @param errorMsg the message of the exception the future fails with on a
+     *                 negative return value. Can be a format string
+     * @param errorMsgArgs the arguments for the error message
+     * @throws RadosException
+     */
+    FutureCompletion(Executor executor, IntFunction<T> result, String errorMsg, Object... errorMsgArgs) throws RadosException {
+        super(true, false, executor);
+        this.result = result;
+        this.errorMsg = errorMsg;
+        this.errorMsgArgs = errorMsgArgs;
+    }
+
+    CompletableFuture<T> getFuture() {
+        return future;
+    }
+
+    @Override
+    public void onComplete() {
+        final int returnValue = getReturnValue();
+        T value = null;
+        Throwable failure = null;
+        try {
+            if (returnValue < 0) {
+                failure = createException(returnValue, String.format(errorMsg, errorMsgArgs));
+            } else {
+                value = result.apply(returnValue);
+            }
+        } catch (RuntimeException e) {
+            failure = e;
+        } finally {
+            release();
+        }
+
+        if (failure != null) {
+            future.completeExceptionally(failure);
+        } else {
+            future.complete(value);
+        }
+    }
+
+    /**
+     * Fail the future when the operation could not be submitted. No callback
+     * will follow, so the completion is released right away.
+     */
+    void fail(Throwable cause) {
+        release();
+        future.completeExceptionally(cause);
+    }
+
+    private void release() {
+        try {
+            close();
+        } catch (IOException e) {
+            // rados_aio_release does not fail
+        }
+    }
+}
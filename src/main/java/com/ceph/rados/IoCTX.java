@@ -23,16 +23,27 @@ import static com.ceph.rados.Library.rados;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import com.ceph.rados.exceptions.ErrorCode;
 import com.ceph.rados.exceptions.RadosException;
 import com.ceph.rados.jna.RadosObjectInfo;
 import com.ceph.rados.jna.RadosPoolInfo;
-import com.sun.jna.Memory;
 import com.sun.jna.Native;
 import com.sun.jna.Pointer;
 import com.sun.jna.ptr.IntByReference;
@@ -44,6 +55,24 @@ public class IoCTX extends RadosBase implements Closeable {
     private static final int EXT_ATTR_MAX_LEN = 4096;
 
     private Pointer ioCtxPtr;
+    private final List<ObjectChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Result of an asynchronous stat, populated once the operation is complete.
+     */
+    public static class StatResult {
+        private final String oid;
+        final LongByReference size;
+        final LongByReference mtime;
+        StatResult(String oid) {
+            this.oid = oid;
+            this.size = new LongByReference();
+            this.mtime = new LongByReference();
+        }
+        public long getSize() { return size.getValue(); }
+        public long getMtime() { return mtime.getValue(); }
+        public RadosObjectInfo getObjectInfo() { return new RadosObjectInfo(oid, getSize(), getMtime()); }
+    }
 
     /**
      * Create a new IO Context object
@@ -74,9 +103,11 @@ public class IoCTX extends RadosBase implements Closeable {
      * The namespace specification further refines a pool into different domains. The mapping of objects to PGs is also based on this value.
      *
      * @param namespace The name to use as the namespace, or NULL use the default namespace.
+     *                  Rados.ALL_NAMESPACES makes listings cover every namespace.
      */
     public void setNamespace(String namespace) {
         rados.rados_ioctx_set_namespace(getPointer(), namespace);
+        contextChanged();
     }
 
     /**
@@ -88,6 +119,35 @@ public class IoCTX extends RadosBase implements Closeable {
         return rados.rados_ioctx_get_id(this.getPointer());
     }
 
+    /**
+     * Get the alignment writes to the current pool need, e.g. the stripe
+     * width of an erasure coded pool without overwrites
+     *
+     * @return long
+     *          The alignment in bytes, or 0 if the pool has none
+     * @throws RadosException
+     */
+    public long getRequiredAlignment() throws RadosException {
+        final IntByReference requires = new IntByReference();
+        final LongByReference alignment = new LongByReference();
+        handleReturnCode(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return rados.rados_ioctx_pool_requires_alignment2(getPointer(), requires);
+            }
+        }, "Failed to check if the pool requires alignment");
+        if (requires.getValue() == 0) {
+            return 0;
+        }
+        handleReturnCode(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return rados.rados_ioctx_pool_required_alignment2(getPointer(), alignment);
+            }
+        }, "Failed to get the alignment of the pool");
+        return alignment.getValue();
+    }
+
     /**
      * Set the associated auid owner of the current pool
      *
@@ -148,6 +208,52 @@ public class IoCTX extends RadosBase implements Closeable {
      */
     public void locatorSetKey(String key) {
         rados.rados_ioctx_locator_set_key(this.getPointer(), key);
+        contextChanged();
+    }
+
+    /**
+     * Register a listener told about every object modified through this
+     * IO context, including by the WriteOps it creates
+     *
+     * @param listener
+     *          The listener to add
+     */
+    public void addObjectChangeListener(ObjectChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    /**
+     * @param listener
+     *          The listener to remove
+     */
+    public void removeObjectChangeListener(ObjectChangeListener listener) {
+        changeListeners.remove(listener);
+    }
+
+    void objectChanged(String oid) {
+        for (ObjectChangeListener listener : changeListeners) {
+            listener.objectChanged(oid);
+        }
+    }
+
+    private void contextChanged() {
+        for (ObjectChangeListener listener : changeListeners) {
+            listener.contextChanged();
+        }
+    }
+
+    /**
+     * handleReturnCode for a call which modifies an object. The listeners
+     * are told once the call returned, also if it failed, as a timed out
+     * write may still have been applied.
+     */
+    private <T extends Number> T handleMutation(String oid, Callable<T> callable, String errorMsg, Object... errorMsgArgs)
+            throws RadosException {
+        try {
+            return handleReturnCode(callable, errorMsg, errorMsgArgs);
+        } finally {
+            objectChanged(oid);
+        }
     }
 
     /**
@@ -157,24 +263,43 @@ public class IoCTX extends RadosBase implements Closeable {
      * @throws RadosException
      */
     public String[] listObjects() throws RadosException {
-        Pointer entry = new Memory(Pointer.SIZE);
         List<String> objects = new ArrayList<String>();
-        final Pointer list = new Memory(Pointer.SIZE);
+        try (ObjectIterator iterator = listObjectsIterator()) {
+            while (iterator.hasNext()) {
+                objects.add(iterator.next());
+            }
+        } catch (UncheckedIOException e) {
+            throw (RadosException) e.getCause();
+        }
+        return objects.toArray(new String[objects.size()]);
+    }
 
+    /**
+     * List the objects in a pool lazily, one name at a time
+     *
+     * @return ObjectIterator, close it if the iteration stops before the end
+     * @throws RadosException
+     */
+    public ObjectIterator listObjectsIterator() throws RadosException {
+        final PointerByReference list = new PointerByReference();
         handleReturnCode(new Callable<Integer>() {
             @Override
             public Integer call() throws Exception {
-                return rados.rados_objects_list_open(getPointer(), list);
+                return rados.rados_nobjects_list_open(getPointer(), list);
             }
         }, "Failed starting to list all objects");
+        return new ObjectIterator(list.getValue());
+    }
 
-        while (rados.rados_objects_list_next(list.getPointer(0), entry, null) == 0) {
-            objects.add(entry.getPointer(0).getString(0));
-        }
-
-        rados.rados_objects_list_close(list.getPointer(0));
-
-        return objects.toArray(new String[objects.size()]);
+    /**
+     * List the objects in a pool as a lazy Stream. Close the stream when
+     * done, to close the native list handle.
+     *
+     * @return a sequential Stream of object names
+     * @throws RadosException
+     */
+    public Stream<String> listObjectsStream() throws RadosException {
+        return listObjectsIterator().stream();
     }
 
     /**
@@ -185,13 +310,213 @@ public class IoCTX extends RadosBase implements Closeable {
      * @throws RadosException
      */
     public ListCtx listObjectsPartial(int limit) throws RadosException {
-        Pointer list = new Memory(Pointer.SIZE);
+        PointerByReference list = new PointerByReference();
 
-        int r = rados.rados_objects_list_open(this.getPointer(), list);
+        int r = rados.rados_nobjects_list_open(this.getPointer(), list);
         if (r < 0) {
             throw new RadosException("Failed listing all objects", r);
         }
-        return new ListCtx(limit, list);
+        return new ListCtx(limit, list.getPointer());
+    }
+
+    /**
+     * Resume listing all objects in a pool by piece at a position returned
+     * by ListCtx.getCursor(), possibly by another process. The position is
+     * approximate: objects created or removed since in the placement group
+     * of the position may make the listing skip or repeat some of its
+     * objects.
+     * @param limit
+     * @param cursor a token returned by ListCtx.getCursor()
+     * @return a ListCtx from which nextObjects() and getObjects() could be called
+     * @throws RadosException
+     */
+    public ListCtx listObjectsPartial(int limit, String cursor) throws RadosException {
+        ListCtx listCtx = listObjectsPartial(limit);
+        try {
+            listCtx.seek(cursor);
+        } catch (RadosException | RuntimeException e) {
+            listCtx.close();
+            throw e;
+        }
+        return listCtx;
+    }
+
+    /**
+     * List the objects of a pool from many threads at once
+     *
+     * The pool is split into hash ranges which are listed in parallel. The
+     * order of the objects is undefined. Close the stream when done, to
+     * free the native cursors.
+     *
+     * @return a parallel Stream of object names
+     */
+    public Stream<String> listObjectsParallel() {
+        ObjectListSpliterator<String> spliterator = objectListSpliterator(0, 1, ObjectListSpliterator.DEFAULT_BATCH_SIZE);
+        return StreamSupport.stream(spliterator, true).onClose(spliterator::close);
+    }
+
+    /**
+     * List one of several disjoint slices of a pool, e.g. to share a listing
+     * between processes. Together the slices 0 to slices - 1 hold every
+     * object once. Close the stream when done, to free the native cursors.
+     *
+     * @param slice
+     *          The slice to list, from 0 to slices - 1
+     * @param slices
+     *          The number of slices the pool is divided into
+     * @return a sequential Stream of object names
+     */
+    public Stream<String> listObjectsSlice(final int slice, final int slices) {
+        ObjectListSpliterator<String> spliterator = objectListSpliterator(slice, slices, ObjectListSpliterator.DEFAULT_BATCH_SIZE);
+        return StreamSupport.stream(spliterator, false).onClose(spliterator::close);
+    }
+
+    /**
+     * Create a cursor based listing of a slice of the pool
+     *
+     * @param slice
+     *          The slice to list, from 0 to slices - 1
+     * @param slices
+     *          The number of slices the pool is divided into, 1 for the whole pool
+     * @param batchSize
+     *          The number of objects fetched per round trip
+     * @return ObjectListSpliterator, close it when done
+     */
+    public ObjectListSpliterator<String> objectListSpliterator(final int slice, final int slices, final int batchSize) {
+        return objectListSpliterator(slice, slices, batchSize, null);
+    }
+
+    /**
+     * List the objects of a pool which match a filter, from many threads at
+     * once. Extended attribute filters are evaluated by the OSDs, so only
+     * the matching names are transferred. Close the stream when done, to
+     * free the native cursors.
+     *
+     * @param filter
+     *          The objects to list
+     * @return a parallel Stream of object names
+     */
+    public Stream<String> listObjectsParallel(final ObjectListFilter filter) {
+        ObjectListSpliterator<String> spliterator = objectListSpliterator(0, 1, ObjectListSpliterator.DEFAULT_BATCH_SIZE, filter);
+        return StreamSupport.stream(spliterator, true).onClose(spliterator::close);
+    }
+
+    /**
+     * List the objects of one of several disjoint slices of a pool which
+     * match a filter. Close the stream when done, to free the native cursors.
+     *
+     * @param slice
+     *          The slice to list, from 0 to slices - 1
+     * @param slices
+     *          The number of slices the pool is divided into
+     * @param filter
+     *          The objects to list
+     * @return a sequential Stream of object names
+     */
+    public Stream<String> listObjectsSlice(final int slice, final int slices, final ObjectListFilter filter) {
+        ObjectListSpliterator<String> spliterator = objectListSpliterator(slice, slices, ObjectListSpliterator.DEFAULT_BATCH_SIZE, filter);
+        return StreamSupport.stream(spliterator, false).onClose(spliterator::close);
+    }
+
+    /**
+     * List the objects of a pool which have an extended attribute with a
+     * given value. The OSDs do the matching, so objects without it are not
+     * transferred. Close the stream when done, to free the native cursors.
+     *
+     * @param xattrName
+     *          The name of the extended attribute
+     * @param value
+     *          The value it must have
+     * @return a parallel Stream of object names
+     */
+    public Stream<String> listObjectsWithXattr(final String xattrName, final byte[] value) {
+        return listObjectsParallel(ObjectListFilter.xattrEquals(xattrName, value));
+    }
+
+    /**
+     * List the objects of a pool whose name starts with a prefix. Names which
+     * do not match are skipped without being decoded. Close the stream when
+     * done, to free the native cursors.
+     *
+     * @param prefix
+     *          The prefix of the object names
+     * @return a parallel Stream of object names
+     */
+    public Stream<String> listObjectsWithPrefix(final String prefix) {
+        return listObjectsParallel(ObjectListFilter.prefix(prefix));
+    }
+
+    /**
+     * Create a cursor based listing of the objects of a slice of the pool
+     * which match a filter
+     *
+     * @param slice
+     *          The slice to list, from 0 to slices - 1
+     * @param slices
+     *          The number of slices the pool is divided into, 1 for the whole pool
+     * @param batchSize
+     *          The number of objects examined per round trip
+     * @param filter
+     *          The objects to list
+     * @return ObjectListSpliterator, close it when done
+     */
+    public ObjectListSpliterator<String> objectListSpliterator(final int slice, final int slices, final int batchSize,
+            final ObjectListFilter filter) {
+        return new ObjectListSpliterator<>(getPointer(), batchSize, slice, slices, filter, ObjectListSpliterator.NAMES);
+    }
+
+    /**
+     * List the objects of a pool with their namespace and locator key, from
+     * many threads at once
+     *
+     * With the namespace set to Rados.ALL_NAMESPACES a single pass covers
+     * every namespace of the pool. Close the stream when done, to free the
+     * native cursors.
+     *
+     * @return a parallel Stream of ObjectListEntry
+     */
+    public Stream<ObjectListEntry> listObjectEntries() {
+        ObjectListSpliterator<ObjectListEntry> spliterator =
+                objectEntrySpliterator(0, 1, ObjectListSpliterator.DEFAULT_BATCH_SIZE, null);
+        return StreamSupport.stream(spliterator, true).onClose(spliterator::close);
+    }
+
+    /**
+     * List the objects of one of several disjoint slices of a pool which
+     * match a filter, with their namespace and locator key. Close the stream
+     * when done, to free the native cursors.
+     *
+     * @param slice
+     *          The slice to list, from 0 to slices - 1
+     * @param slices
+     *          The number of slices the pool is divided into
+     * @param filter
+     *          The objects to list, or null for all of them
+     * @return a sequential Stream of ObjectListEntry
+     */
+    public Stream<ObjectListEntry> listObjectEntriesSlice(final int slice, final int slices, final ObjectListFilter filter) {
+        ObjectListSpliterator<ObjectListEntry> spliterator =
+                objectEntrySpliterator(slice, slices, ObjectListSpliterator.DEFAULT_BATCH_SIZE, filter);
+        return StreamSupport.stream(spliterator, false).onClose(spliterator::close);
+    }
+
+    /**
+     * Create a cursor based listing of the objects of a slice of the pool,
+     * with their namespace and locator key
+     *
+     * @param slice
+     *          The slice to list, from 0 to slices - 1
+     * @param slices
+     *          The number of slices the pool is divided into, 1 for the whole pool
+     * @param batchSize
+     *          The number of objects examined per round trip
+     * @param filter
+     *          The objects to list, or null for all of them
+     * @return ObjectListSpliterator, close it when done
+     */
+    public ObjectListSpliterator<ObjectListEntry> objectEntrySpliterator(final int slice, final int slices,
+            final int batchSize, final ObjectListFilter filter) {
+        return new ObjectListSpliterator<>(getPointer(), batchSize, slice, slices, filter, ObjectListSpliterator.ENTRIES);
     }
 
     /**
@@ -209,7 +534,7 @@ public class IoCTX extends RadosBase implements Closeable {
         if (offset < 0) {
             throw new IllegalArgumentException("Offset shouldn't be a negative value");
         }
-        handleReturnCode(new Callable<Integer>() {
+        handleMutation(oid, new Callable<Integer>() {
             @Override
             public Integer call() throws Exception {
                 return rados.rados_write(getPointer(), oid, buf, buf.length, offset);
@@ -243,7 +568,7 @@ public class IoCTX extends RadosBase implements Closeable {
      * @throws RadosException
      */
     public void writeFull(final String oid, final byte[] buf, final int len) throws RadosException {
-        handleReturnCode(new Callable<Integer>() {
+        handleMutation(oid, new Callable<Integer>() {
             @Override
             public Integer call() throws Exception {
                 return rados.rados_write_full(getPointer(), oid, buf, len);
@@ -251,6 +576,59 @@ public class IoCTX extends RadosBase implements Closeable {
         }, "Failed to write %s bytes to %s", len, oid);
     }
 
+    /**
+     * Write the remaining bytes of a direct buffer to an object
+     *
+     * The bytes between the buffer's position and limit are handed to librados
+     * without being copied into a temporary buffer first. On success the
+     * position of the buffer is advanced to its limit.
+     *
+     * @param oid
+     *          The object to write to
+     * @param buf
+     *          A direct ByteBuffer holding the content to write
+     * @param offset
+     *          The offset when writing
+     * @throws RadosException
+     */
+    public void write(final String oid, final ByteBuffer buf, final long offset) throws RadosException, IllegalArgumentException {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Offset shouldn't be a negative value");
+        }
+        final Pointer ptr = Buffers.pointer(buf);
+        final int len = buf.remaining();
+        handleMutation(oid, new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return rados.rados_write(getPointer(), oid, ptr, len, offset);
+            }
+        }, "Failed writing %s bytes with offset %s to %s", len, offset, oid);
+        buf.position(buf.limit());
+    }
+
+    /**
+     * Write an entire object from the remaining bytes of a direct buffer
+     * The object is filled with the provided data. If the object exists, it is atomically truncated and then written.
+     * On success the position of the buffer is advanced to its limit.
+     *
+     * @param oid
+     *          The object to write to
+     * @param buf
+     *          A direct ByteBuffer holding the content to write
+     * @throws RadosException
+     */
+    public void writeFull(final String oid, final ByteBuffer buf) throws RadosException {
+        final Pointer ptr = Buffers.pointer(buf);
+        final int len = buf.remaining();
+        handleMutation(oid, new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return rados.rados_write_full(getPointer(), oid, ptr, len);
+            }
+        }, "Failed to write %s bytes to %s", len, oid);
+        buf.position(buf.limit());
+    }
+
     /**
      * Write to an object without an offset
      *
@@ -296,7 +674,7 @@ public class IoCTX extends RadosBase implements Closeable {
         if (offset < 0) {
             throw new IllegalArgumentException("Offset shouldn't be a negative value");
         }
-        handleReturnCode(new Callable<Integer>() {
+        handleMutation(oid, new Callable<Integer>() {
             @Override
             public Integer call() throws Exception {
                 return rados.rados_aio_write(getPointer(), oid, completion.getPointer(), buf, buf.length, offset);
@@ -334,7 +712,7 @@ public class IoCTX extends RadosBase implements Closeable {
      * @throws RadosException
      */
     public void aioWriteFull(final String oid, final Completion completion, final byte[] buf, final int len) throws RadosException {
-        handleReturnCode(new Callable<Integer>() {
+        handleMutation(oid, new Callable<Integer>() {
             @Override
             public Integer call() throws Exception {
                 return rados.rados_aio_write_full(getPointer(), oid, completion.getPointer(), buf, len);
@@ -342,6 +720,63 @@ public class IoCTX extends RadosBase implements Closeable {
         }, "Failed to AIO write %s bytes to %s", len, oid);
     }
 
+    /**
+     * Asynchronously write the remaining bytes of a direct buffer to an object
+     *
+     * librados takes its own copy of the data before this call returns, so the
+     * buffer may be reused right away. On success the position of the buffer
+     * is advanced to its limit.
+     *
+     * @param oid
+     *          The object to write to
+     * @param completion
+     *          The completion instructions
+     * @param buf
+     *          A direct ByteBuffer holding the content to write
+     * @param offset
+     *          The offset when writing
+     * @throws RadosException
+     */
+    public void aioWrite(final String oid, final Completion completion, final ByteBuffer buf, final long offset) throws RadosException, IllegalArgumentException {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Offset shouldn't be a negative value");
+        }
+        final Pointer ptr = Buffers.pointer(buf);
+        final int len = buf.remaining();
+        handleMutation(oid, new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return rados.rados_aio_write(getPointer(), oid, completion.getPointer(), ptr, len, offset);
+            }
+        }, "Failed AIO writing %s bytes with offset %s to %s", len, offset, oid);
+        buf.position(buf.limit());
+    }
+
+    /**
+     * Asynchronously write an entire object from the remaining bytes of a direct buffer
+     * The object is filled with the provided data. If the object exists, it is atomically truncated and then written.
+     * On success the position of the buffer is advanced to its limit.
+     *
+     * @param oid
+     *          The object to write to
+     * @param completion
+     *          The completion instructions
+     * @param buf
+     *          A direct ByteBuffer holding the content to write
+     * @throws RadosException
+     */
+    public void aioWriteFull(final String oid, final Completion completion, final ByteBuffer buf) throws RadosException {
+        final Pointer ptr = Buffers.pointer(buf);
+        final int len = buf.remaining();
+        handleMutation(oid, new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return rados.rados_aio_write_full(getPointer(), oid, completion.getPointer(), ptr, len);
+            }
+        }, "Failed to AIO write %s bytes to %s", len, oid);
+        buf.position(buf.limit());
+    }
+
     /**
      * Asynchronously write to an object without an offset
      *
@@ -375,73 +810,274 @@ public class IoCTX extends RadosBase implements Closeable {
     }
 
     /**
-     * Block until all pending writes in an io context are safe.
+     * Asynchronously read data from an object into a direct buffer
      *
-     * This is not equivalent to calling rados_aio_wait_for_safe() on all write completions, since this waits for the associated callbacks to complete as well.
+     * Up to buf.remaining() bytes are read into the buffer starting at its
+     * position. The number of bytes read is available from
+     * Completion.getReturnValue() once the operation is complete. The buffer
+     * must not be touched until then, its position is not modified.
+     *
+     * @param oid
+     *          The object's name
+     * @param completion
+     *          The completion instructions
+     * @param buf
+     *          A direct ByteBuffer to store the result
+     * @param offset
+     *          The offset where to start reading
      * @throws RadosException
      */
-    public void aioFlush() throws RadosException {
+    public void aioRead(final String oid, final Completion completion, final ByteBuffer buf, final long offset) throws RadosException {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Offset shouldn't be a negative value");
+        }
+        final Pointer ptr = Buffers.writablePointer(buf);
+        final int length = buf.remaining();
+        completion.attach(buf);
         handleReturnCode(new Callable<Integer>() {
             @Override
             public Integer call() throws Exception {
-                return rados.rados_aio_flush(getPointer());
+                return rados.rados_aio_read(getPointer(), oid, completion.getPointer(), ptr, length, offset);
             }
-        }, "Failed to AIO flush");
+        }, "Failed to AIO read object %s using offset %s and length %s", oid, offset, length);
     }
 
     /**
-     * Remove an object
+     * Asynchronously append data to an object
      *
      * @param oid
-     *          The object to remove
+     *           The name to append to
+     * @param completion
+     *          The completion instructions
+     * @param buf
+     *           The data to append
+     * @param len
+     *           The number of bytes to write from buf
      * @throws RadosException
      */
-    public void remove(final String oid) throws RadosException {
-        handleReturnCode(new Callable<Integer>() {
+    public void aioAppend(final String oid, final Completion completion, final byte[] buf, final int len) throws RadosException {
+        handleMutation(oid, new Callable<Integer>() {
             @Override
             public Integer call() throws Exception {
-                return rados.rados_remove(getPointer(), oid);
+                return rados.rados_aio_append(getPointer(), oid, completion.getPointer(), buf, len);
             }
-        }, "Failed removing object %s", oid);
+        }, "Failed AIO appending %s bytes to object %s", len, oid);
     }
 
     /**
-     * Read data from an object
+     * Asynchronously append data to an object
      *
      * @param oid
-     *          The object's name
-     * @param length
-     *          Amount of bytes to read
-     * @param offset
-     *          The offset where to start reading
+     *           The name to append to
+     * @param completion
+     *          The completion instructions
      * @param buf
-     *          The buffer to store the result
-     * @return Number of bytes read or negative on error
+     *           The data to append
      * @throws RadosException
      */
-    public int read(final String oid, final int length, final long offset, final byte[] buf)
-            throws RadosException {
-        if (length < 0) {
-            throw new IllegalArgumentException("Length shouldn't be a negative value");
-        }
-        if (offset < 0) {
-            throw new IllegalArgumentException("Offset shouldn't be a negative value");
-        }
-
-        return handleReturnCode(new Callable<Integer>() {
-            @Override
-            public Integer call() throws Exception {
-                return rados.rados_read(getPointer(), oid, buf, length, offset);
-            }
-        }, "Failed to read object %s using offset %s and length %s", oid, offset, length);
+    public void aioAppend(String oid, final Completion completion, byte[] buf) throws RadosException {
+        this.aioAppend(oid, completion, buf, buf.length);
     }
 
     /**
-     * Resize an object
+     * Asynchronously append the remaining bytes of a direct buffer to an object
+     * On success the position of the buffer is advanced to its limit.
      *
      * @param oid
-     *           The object to resize
-     * @param size
+     *           The name to append to
+     * @param completion
+     *          The completion instructions
+     * @param buf
+     *           A direct ByteBuffer holding the data to append
+     * @throws RadosException
+     */
+    public void aioAppend(final String oid, final Completion completion, final ByteBuffer buf) throws RadosException {
+        final Pointer ptr = Buffers.pointer(buf);
+        final int len = buf.remaining();
+        handleMutation(oid, new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return rados.rados_aio_append(getPointer(), oid, completion.getPointer(), ptr, len);
+            }
+        }, "Failed AIO appending %s bytes to object %s", len, oid);
+        buf.position(buf.limit());
+    }
+
+    /**
+     * Asynchronously remove an object
+     *
+     * @param oid
+     *          The object to remove
+     * @param completion
+     *          The completion instructions
+     * @throws RadosException
+     */
+    public void aioRemove(final String oid, final Completion completion) throws RadosException {
+        handleMutation(oid, new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return rados.rados_aio_remove(getPointer(), oid, completion.getPointer());
+            }
+        }, "Failed AIO removing object %s", oid);
+    }
+
+    /**
+     * Asynchronously stat an object
+     *
+     * The returned StatResult is populated once the operation is complete.
+     *
+     * @param oid
+     *          The name of the object
+     * @param completion
+     *          The completion instructions
+     * @return StatResult
+     *          Holds the size and mtime of the object after completion
+     * @throws RadosException
+     */
+    public StatResult aioStat(final String oid, final Completion completion) throws RadosException {
+        final StatResult result = new StatResult(oid);
+        aioStat(oid, completion, result);
+        return result;
+    }
+
+    void aioStat(final String oid, final Completion completion, final StatResult result) throws RadosException {
+        completion.attach(result);
+        handleReturnCode(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return rados.rados_aio_stat(getPointer(), oid, completion.getPointer(), result.size, result.mtime);
+            }
+        }, "Failed AIO performing a stat on object %s", oid);
+    }
+
+    /**
+     * Block until all pending writes in an io context are safe.
+     *
+     * This is not equivalent to calling rados_aio_wait_for_safe() on all write completions, since this waits for the associated callbacks to complete as well.
+     * @throws RadosException
+     */
+    public void aioFlush() throws RadosException {
+        handleReturnCode(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return rados.rados_aio_flush(getPointer());
+            }
+        }, "Failed to AIO flush");
+    }
+
+    /**
+     * Remove an object
+     *
+     * @param oid
+     *          The object to remove
+     * @throws RadosException
+     */
+    public void remove(final String oid) throws RadosException {
+        handleMutation(oid, new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return rados.rados_remove(getPointer(), oid);
+            }
+        }, "Failed removing object %s", oid);
+    }
+
+    /**
+     * Read data from an object
+     *
+     * @param oid
+     *          The object's name
+     * @param length
+     *          Amount of bytes to read
+     * @param offset
+     *          The offset where to start reading
+     * @param buf
+     *          The buffer to store the result
+     * @return Number of bytes read or negative on error
+     * @throws RadosException
+     */
+    public int read(final String oid, final int length, final long offset, final byte[] buf)
+            throws RadosException {
+        if (length < 0) {
+            throw new IllegalArgumentException("Length shouldn't be a negative value");
+        }
+        if (offset < 0) {
+            throw new IllegalArgumentException("Offset shouldn't be a negative value");
+        }
+
+        return handleReturnCode(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return rados.rados_read(getPointer(), oid, buf, length, offset);
+            }
+        }, "Failed to read object %s using offset %s and length %s", oid, offset, length);
+    }
+
+    /**
+     * Read data from an object straight into a direct buffer
+     *
+     * Up to buf.remaining() bytes are read into the buffer starting at its
+     * position, without any intermediate copy. The position of the buffer is
+     * advanced by the number of bytes read.
+     *
+     * @param oid
+     *          The object's name
+     * @param offset
+     *          The offset where to start reading
+     * @param buf
+     *          A direct ByteBuffer to store the result
+     * @return Number of bytes read
+     * @throws RadosException
+     */
+    public int read(final String oid, final long offset, final ByteBuffer buf) throws RadosException {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Offset shouldn't be a negative value");
+        }
+        final Pointer ptr = Buffers.writablePointer(buf);
+        final int length = buf.remaining();
+
+        final int read = handleReturnCode(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return rados.rados_read(getPointer(), oid, ptr, length, offset);
+            }
+        }, "Failed to read object %s using offset %s and length %s", oid, offset, length);
+        buf.position(buf.position() + read);
+        return read;
+    }
+
+    /**
+     * Read data from an object into a buffer borrowed from a pool
+     *
+     * @param oid
+     *          The object's name
+     * @param length
+     *          Amount of bytes to read
+     * @param offset
+     *          The offset where to start reading
+     * @param pool
+     *          The pool to borrow the buffer from, waiting if its budget is used up
+     * @return A buffer holding the bytes read between its position and limit.
+     *         Hand it back with pool.release() once done.
+     * @throws RadosException
+     */
+    public ByteBuffer read(final String oid, final int length, final long offset, final BufferPool pool) throws RadosException {
+        final ByteBuffer buf = Buffers.borrow(pool, length);
+        try {
+            read(oid, offset, buf);
+        } catch (RadosException | RuntimeException e) {
+            pool.release(buf);
+            throw e;
+        }
+        buf.flip();
+        return buf;
+    }
+
+    /**
+     * Resize an object
+     *
+     * @param oid
+     *           The object to resize
+     * @param size
      *          The new length of the object.  If this enlarges the object,
      *          the new area is logically filled with
      *          zeroes. If this shrinks the object, the excess data is removed.
@@ -451,7 +1087,7 @@ public class IoCTX extends RadosBase implements Closeable {
         if (size < 0) {
             throw new IllegalArgumentException("Size shouldn't be a negative value");
         }
-        handleReturnCode(new Callable<Integer>() {
+        handleMutation(oid, new Callable<Integer>() {
             @Override
             public Integer call() throws Exception {
                 return rados.rados_trunc(getPointer(), oid, size);
@@ -483,7 +1119,7 @@ public class IoCTX extends RadosBase implements Closeable {
      * @throws RadosException
      */
     public void append(final String oid, final byte[] buf, final int len) throws RadosException {
-        handleReturnCode(new Callable<Integer>() {
+        handleMutation(oid, new Callable<Integer>() {
             @Override
             public Integer call() throws Exception {
                 return rados.rados_append(getPointer(), oid, buf, len);
@@ -491,6 +1127,28 @@ public class IoCTX extends RadosBase implements Closeable {
         }, "Failed appending %s bytes to object %s", len, oid);
     }
 
+    /**
+     * Append the remaining bytes of a direct buffer to an object
+     * On success the position of the buffer is advanced to its limit.
+     *
+     * @param oid
+     *           The name to append to
+     * @param buf
+     *           A direct ByteBuffer holding the data to append
+     * @throws RadosException
+     */
+    public void append(final String oid, final ByteBuffer buf) throws RadosException {
+        final Pointer ptr = Buffers.pointer(buf);
+        final int len = buf.remaining();
+        handleMutation(oid, new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return rados.rados_append(getPointer(), oid, ptr, len);
+            }
+        }, "Failed appending %s bytes to object %s", len, oid);
+        buf.position(buf.limit());
+    }
+
     /**
      * Append data to an object
      *
@@ -526,7 +1184,7 @@ public class IoCTX extends RadosBase implements Closeable {
     * @throws RadosException
     */
     public void clone(final String dst, final long dst_off, final String src, final long src_off, final long len) throws RadosException {
-        handleReturnCode(new Callable<Integer>() {
+        handleMutation(dst, new Callable<Integer>() {
             @Override
             public Integer call() throws Exception {
                 return rados.rados_clone_range(getPointer(), dst, dst_off, src, src_off, len);
@@ -555,6 +1213,176 @@ public class IoCTX extends RadosBase implements Closeable {
         return new RadosObjectInfo(oid, size.getValue(), mtime.getValue());
     }
 
+    /**
+     * Open an object for sequential reading with 4 MiB chunks, two of them
+     * read ahead
+     *
+     * @param oid
+     *          The name of the object
+     * @return RadosInputStream
+     * @throws RadosException
+     */
+    public RadosInputStream openInputStream(final String oid) throws RadosException {
+        return openInputStream(oid, RadosInputStream.DEFAULT_CHUNK_SIZE, RadosInputStream.DEFAULT_READ_AHEAD);
+    }
+
+    /**
+     * Open an object for sequential reading
+     *
+     * @param oid
+     *          The name of the object
+     * @param chunkSize
+     *          The number of bytes per read, e.g. the object size of the data
+     * @param readAhead
+     *          The number of chunks read ahead of the one being consumed
+     * @return RadosInputStream
+     * @throws RadosException
+     */
+    public RadosInputStream openInputStream(final String oid, final int chunkSize, final int readAhead) throws RadosException {
+        return new RadosInputStream(this, oid, chunkSize, readAhead);
+    }
+
+    /**
+     * Open an object for sequential writing with 4 MiB chunks and up to four
+     * writes in flight. The content of the object is replaced.
+     *
+     * @param oid
+     *          The name of the object
+     * @return RadosOutputStream
+     * @throws RadosException
+     */
+    public RadosOutputStream openOutputStream(final String oid) throws RadosException {
+        return openOutputStream(oid, RadosOutputStream.DEFAULT_CHUNK_SIZE, RadosOutputStream.DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * Open an object for sequential writing. The content of the object is
+     * replaced. The chunk size is rounded up to a multiple of the alignment
+     * the pool requires, if any.
+     *
+     * @param oid
+     *          The name of the object
+     * @param chunkSize
+     *          The number of bytes per write
+     * @param maxInFlight
+     *          The maximum number of writes in flight
+     * @return RadosOutputStream
+     * @throws RadosException
+     */
+    public RadosOutputStream openOutputStream(final String oid, final int chunkSize, final int maxInFlight) throws RadosException {
+        final long alignment = getRequiredAlignment();
+        long size = chunkSize;
+        if (alignment > 0 && size % alignment != 0) {
+            size += alignment - size % alignment;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Chunk size " + size + " is too large");
+        }
+        return new RadosOutputStream(this, oid, (int) size, (int) alignment, maxInFlight);
+    }
+
+    /**
+     * Open an object as a SeekableByteChannel, caching sixteen 64 KiB blocks
+     * for small reads
+     *
+     * @param oid
+     *          The name of the object, which is created by the first write
+     *          if it does not exist
+     * @return RadosObjectChannel
+     * @throws RadosException
+     */
+    public RadosObjectChannel openChannel(final String oid) throws RadosException {
+        return openChannel(oid, RadosObjectChannel.DEFAULT_BLOCK_SIZE, RadosObjectChannel.DEFAULT_CACHED_BLOCKS);
+    }
+
+    /**
+     * Open an object as a SeekableByteChannel
+     *
+     * @param oid
+     *          The name of the object, which is created by the first write
+     *          if it does not exist
+     * @param blockSize
+     *          The size of the blocks cached for reads smaller than a block
+     * @param cachedBlocks
+     *          The number of blocks cached, 0 to disable the cache
+     * @return RadosObjectChannel
+     * @throws RadosException
+     */
+    public RadosObjectChannel openChannel(final String oid, final int blockSize, final int cachedBlocks) throws RadosException {
+        return new RadosObjectChannel(this, oid, blockSize, cachedBlocks);
+    }
+
+    /**
+     * Create a cache of stat results and extended attributes of objects in
+     * this IO context, kept up to date with the modifications made through it
+     *
+     * @param maxEntries
+     *          The maximum number of objects cached
+     * @param ttl
+     *          How long an object is cached, also when it does not exist
+     * @param unit
+     *          The unit of ttl
+     * @return ObjectMetadataCache, close it when done
+     */
+    public ObjectMetadataCache createMetadataCache(final int maxEntries, final long ttl, final TimeUnit unit) {
+        return new ObjectMetadataCache(this, maxEntries, ttl, ttl, unit);
+    }
+
+    /**
+     * Create a cache of stat results and extended attributes of objects in
+     * this IO context, kept up to date with the modifications made through it
+     *
+     * @param maxEntries
+     *          The maximum number of objects cached
+     * @param ttl
+     *          How long stat results and extended attributes are cached
+     * @param negativeTtl
+     *          How long a missing object is cached, 0 to not cache missing objects
+     * @param unit
+     *          The unit of ttl and negativeTtl
+     * @return ObjectMetadataCache, close it when done
+     */
+    public ObjectMetadataCache createMetadataCache(final int maxEntries, final long ttl, final long negativeTtl,
+            final TimeUnit unit) {
+        return new ObjectMetadataCache(this, maxEntries, ttl, negativeTtl, unit);
+    }
+
+    /**
+     * Create a read-through cache of objects of up to 4 MiB in this IO
+     * context, kept off the Java heap
+     *
+     * @param maxBytes
+     *          The maximum number of bytes of memory used by the cache
+     * @param validateAfter
+     *          How long an object is served before its mtime is checked again
+     * @param unit
+     *          The unit of validateAfter
+     * @return ObjectCache, close it when done
+     */
+    public ObjectCache createObjectCache(final long maxBytes, final long validateAfter, final TimeUnit unit) {
+        return new ObjectCache(this, maxBytes, ObjectCache.DEFAULT_MAX_OBJECT_SIZE, validateAfter, unit);
+    }
+
+    /**
+     * Create a read-through cache of objects in this IO context, kept off
+     * the Java heap
+     *
+     * @param maxBytes
+     *          The maximum number of bytes of memory used by the cache
+     * @param maxObjectSize
+     *          The size of the largest object cached, larger ones are read
+     *          without being cached
+     * @param validateAfter
+     *          How long an object is served before its mtime is checked again
+     * @param unit
+     *          The unit of validateAfter
+     * @return ObjectCache, close it when done
+     */
+    public ObjectCache createObjectCache(final long maxBytes, final int maxObjectSize, final long validateAfter,
+            final TimeUnit unit) {
+        return new ObjectCache(this, maxBytes, maxObjectSize, validateAfter, unit);
+    }
+
     /**
      * Stat the currently open pool
      *
@@ -684,6 +1512,94 @@ public class IoCTX extends RadosBase implements Closeable {
         return snaps;
     }
 
+    /**
+     * Get a CompletableFuture based view on the asynchronous operations of
+     * this IO context which completes its futures on a shared
+     * CallbackDispatcher, off the librados callback thread
+     *
+     * @return AsyncIoCTX
+     */
+    public AsyncIoCTX async() {
+        return new AsyncIoCTX(this, CallbackDispatcher.shared());
+    }
+
+    /**
+     * Get a CompletableFuture based view on the asynchronous operations of
+     * this IO context which completes its futures on the given executor
+     *
+     * @param executor
+     *          The executor to complete futures on, e.g. a CallbackDispatcher,
+     *          or null to complete them on the librados callback thread
+     * @return AsyncIoCTX
+     */
+    public AsyncIoCTX async(Executor executor) {
+        return new AsyncIoCTX(this, executor);
+    }
+
+    /**
+     * Upload a file as parts written in parallel, replacing the content of
+     * the object
+     *
+     * @param oid
+     *          The object to write
+     * @param file
+     *          The file to upload
+     * @param xattrs
+     *          Extended attributes to set on the object once it is written
+     * @return The size of the object and the throughput
+     * @throws IOException
+     * @throws InterruptedException
+     * @see ParallelUploader
+     */
+    public ParallelUploader.UploadResult upload(String oid, Path file, Map<String, byte[]> xattrs)
+            throws IOException, InterruptedException {
+        try (ParallelUploader uploader = new ParallelUploader(this, ParallelUploader.DEFAULT_PART_SIZE,
+                ParallelUploader.DEFAULT_PARTS_IN_FLIGHT)) {
+            return uploader.upload(oid, file, xattrs);
+        }
+    }
+
+    /**
+     * Download an object into a file with ranged reads in parallel. The file
+     * is created or truncated.
+     *
+     * @param oid
+     *          The object to read
+     * @param file
+     *          The file to write
+     * @return The number of bytes downloaded and the throughput
+     * @throws IOException
+     * @see ParallelDownloader
+     */
+    public ParallelDownloader.DownloadResult download(String oid, Path file) throws IOException {
+        try (ParallelDownloader downloader = new ParallelDownloader(this, ParallelDownloader.DEFAULT_PART_SIZE,
+                ParallelDownloader.DEFAULT_PARTS_IN_FLIGHT);
+             FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            return downloader.download(oid, channel, 0);
+        }
+    }
+
+    /**
+     * Write many objects as a whole with pipelined asynchronous writes
+     *
+     * @param items
+     *          The object names and their content
+     * @param maxOpsInFlight
+     *          The maximum number of writes in flight
+     * @param maxBytesInFlight
+     *          The maximum number of bytes in flight
+     * @return The number of objects written, the failed objects and the throughput
+     * @throws InterruptedException
+     * @see BulkWriter
+     */
+    public BulkWriter.BulkWriteResult writeAll(Iterator<? extends Map.Entry<String, byte[]>> items,
+            int maxOpsInFlight, long maxBytesInFlight) throws InterruptedException {
+        try (BulkWriter writer = new BulkWriter(this, maxOpsInFlight, maxBytesInFlight)) {
+            return writer.writeAll(items);
+        }
+    }
+
     public ReadOp readOpCreate() {
         return new ReadOp(getPointer(), rados.rados_create_read_op());
     }
@@ -696,6 +1612,98 @@ public class IoCTX extends RadosBase implements Closeable {
         rados.rados_release_read_op(read_op.getPointer());
     }
 
+    /**
+     * Create a compound write operation. The queued mutations are applied
+     * atomically by WriteOp.operate
+     *
+     * @return WriteOp, close it when done
+     */
+    public WriteOp writeOpCreate() {
+        return new WriteOp(this, rados.rados_create_write_op());
+    }
+
+    /**
+     * Set omap keys of an object in one operation
+     *
+     * @param oid
+     *          The name of the object
+     * @param values
+     *          The keys and their values
+     * @throws RadosException
+     */
+    public void omapSet(final String oid, final Map<String, byte[]> values) throws RadosException {
+        try (WriteOp writeOp = writeOpCreate()) {
+            writeOp.queueOmapSet(values);
+            writeOp.operate(oid, Rados.OPERATION_NOFLAG);
+        }
+    }
+
+    /**
+     * Get the values of omap keys of an object
+     *
+     * @param oid
+     *          The name of the object
+     * @param keys
+     *          The keys to get
+     * @return The keys which are set and their values, in key order
+     * @throws RadosException
+     */
+    public Map<String, byte[]> omapGet(final String oid, final String... keys) throws RadosException {
+        try (ReadOp readOp = readOpCreate()) {
+            ReadOp.OmapResult result = readOp.queueOmapGetValsByKeys(keys);
+            readOp.operate(oid, Rados.OPERATION_NOFLAG);
+            result.raiseExceptionOnError("Failed to get omap keys of %s", oid);
+            return result.getValues();
+        }
+    }
+
+    /**
+     * Remove omap keys of an object
+     *
+     * @param oid
+     *          The name of the object
+     * @param keys
+     *          The keys to remove
+     * @throws RadosException
+     */
+    public void omapRemove(final String oid, final String... keys) throws RadosException {
+        try (WriteOp writeOp = writeOpCreate()) {
+            writeOp.queueOmapRemove(keys);
+            writeOp.operate(oid, Rados.OPERATION_NOFLAG);
+        }
+    }
+
+    /**
+     * Remove all omap keys of an object
+     *
+     * @param oid
+     *          The name of the object
+     * @throws RadosException
+     */
+    public void omapClear(final String oid) throws RadosException {
+        try (WriteOp writeOp = writeOpCreate()) {
+            writeOp.queueOmapClear();
+            writeOp.operate(oid, Rados.OPERATION_NOFLAG);
+        }
+    }
+
+    /**
+     * Iterate over the omap of an object in key order, one page at a time
+     *
+     * @param oid
+     *          The name of the object
+     * @param startAfter
+     *          Start after this key, or null to start at the beginning
+     * @param filterPrefix
+     *          Only return keys starting with this prefix, or null for all keys
+     * @param pageSize
+     *          The number of keys and values fetched per round trip
+     * @return OmapIterator
+     */
+    public OmapIterator omapIterator(final String oid, final String startAfter, final String filterPrefix, final int pageSize) {
+        return new OmapIterator(this, oid, startAfter, filterPrefix, pageSize);
+    }
+
 
     /**
      * Get the value of an extended attribute on an object.
@@ -705,22 +1713,74 @@ public class IoCTX extends RadosBase implements Closeable {
      * @param xattrName
      *          The name of the extended attribute
      * @return
-     *      The value of the extended attribute
+     *      The value of the extended attribute, up to its first NUL
      * @throws RadosException
      *      on failure -- common error codes:
-     *      -34 (ERANGE)  : value exceeds buffer
      *      -61 (ENODATA) : no such attribute
      */
     public String getExtendedAttribute(final String oid, final String xattrName) throws RadosException {
-        final byte[] buf = new byte[EXT_ATTR_MAX_LEN];
-        handleReturnCode(new Callable<Integer>() {
+        return Native.toString(getExtendedAttributeBytes(oid, xattrName));
+    }
+
+    /**
+     * Get the value of an extended attribute on an object as bytes.
+     *
+     * The value is read into a buffer kept per thread. Larger values are
+     * fetched with their exact size, so there is no limit on the length.
+     *
+     * @param oid
+     *          The name of the object
+     * @param xattrName
+     *          The name of the extended attribute
+     * @return
+     *      The value of the extended attribute, with its exact length
+     * @throws RadosException
+     *      on failure -- common error codes:
+     *      -61 (ENODATA) : no such attribute
+     */
+    public byte[] getExtendedAttributeBytes(final String oid, final String xattrName) throws RadosException {
+        return getXattr(new XattrGetter() {
+            @Override
+            public int get(byte[] buf, long len) {
+                return rados.rados_getxattr(getPointer(), oid, xattrName, buf, len);
+            }
+        }, new Callable<Map<String, byte[]>>() {
+            @Override
+            public Map<String, byte[]> call() throws Exception {
+                return getExtendedAttributesBytes(oid);
+            }
+        }, xattrName, "Failed to get extended attribute %s on %s", xattrName, oid);
+    }
+
+    /**
+     * Get the value of an extended attribute on an object into a direct
+     * buffer. The value is written at the position of the buffer, which is
+     * advanced by its length.
+     *
+     * @param oid
+     *          The name of the object
+     * @param xattrName
+     *          The name of the extended attribute
+     * @param buf
+     *          A direct ByteBuffer
+     * @return
+     *      The length of the value
+     * @throws RadosException
+     *      on failure -- common error codes:
+     *      -34 (ERANGE)  : value exceeds the remaining bytes of the buffer
+     *      -61 (ENODATA) : no such attribute
+     */
+    public int getExtendedAttribute(final String oid, final String xattrName, final ByteBuffer buf) throws RadosException {
+        final Pointer ptr = Buffers.writablePointer(buf);
+        final int len = buf.remaining();
+        final int length = handleReturnCode(new Callable<Integer>() {
             @Override
             public Integer call() throws Exception {
-                return rados.rados_getxattr(getPointer(), oid, xattrName, buf, buf.length);
+                return rados.rados_getxattr(getPointer(), oid, xattrName, ptr, len);
             }
         }, "Failed to get extended attribute %s on %s", xattrName, oid);
-        // else...
-        return  Native.toString(buf);
+        buf.position(buf.position() + length);
+        return length;
     }
 
     /**
@@ -743,7 +1803,7 @@ public class IoCTX extends RadosBase implements Closeable {
             throw new IllegalArgumentException( "Length of attribute value must not exceed " + EXT_ATTR_MAX_LEN);
         }
         // else...
-        handleReturnCode(new Callable<Integer>() {
+        handleMutation(oid, new Callable<Integer>() {
             @Override
             public Integer call() throws Exception {
                 return rados.rados_setxattr(getPointer(), oid, xattrName, buf, buf.length);
@@ -751,6 +1811,53 @@ public class IoCTX extends RadosBase implements Closeable {
         }, "Failed to set extended attribute %s on %s", xattrName, oid);
     }
 
+    /**
+     * Set an extended attribute on an object to a binary value.
+     *
+     * @param oid
+     *          The name of the object
+     * @param xattrName
+     *          The name of the extended attribute
+     * @param val
+     *      The value of the extended attribute
+     * @throws RadosException
+     *      on failure
+     */
+    public void setExtendedAttribute(final String oid, final String xattrName, final byte[] val) throws RadosException {
+        handleMutation(oid, new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return rados.rados_setxattr(getPointer(), oid, xattrName, val, val.length);
+            }
+        }, "Failed to set extended attribute %s on %s", xattrName, oid);
+    }
+
+    /**
+     * Set an extended attribute on an object to the remaining bytes of a
+     * direct buffer. On success the position of the buffer is advanced to
+     * its limit.
+     *
+     * @param oid
+     *          The name of the object
+     * @param xattrName
+     *          The name of the extended attribute
+     * @param val
+     *      A direct ByteBuffer holding the value of the extended attribute
+     * @throws RadosException
+     *      on failure
+     */
+    public void setExtendedAttribute(final String oid, final String xattrName, final ByteBuffer val) throws RadosException {
+        final Pointer ptr = Buffers.pointer(val);
+        final int len = val.remaining();
+        handleMutation(oid, new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return rados.rados_setxattr(getPointer(), oid, xattrName, ptr, len);
+            }
+        }, "Failed to set extended attribute %s on %s", xattrName, oid);
+        val.position(val.limit());
+    }
+
     /**
      * Delete an extended attribute from an object.
      *
@@ -762,7 +1869,7 @@ public class IoCTX extends RadosBase implements Closeable {
      *      on failure
      */
     public void removeExtendedAttribute(final String oid, final String xattrName) throws RadosException {
-        handleReturnCode(new Callable<Integer>() {
+        handleMutation(oid, new Callable<Integer>() {
             @Override
             public Integer call() throws Exception {
                 return rados.rados_rmxattr(getPointer(), oid, xattrName);
@@ -782,31 +1889,136 @@ public class IoCTX extends RadosBase implements Closeable {
      */
     public Map<String, String> getExtendedAttributes(final String oid) throws RadosException {
         Map<String, String> attr_map = new HashMap<>();
-        final Pointer iterator = new Memory(Pointer.SIZE);
-        final PointerByReference attr_name = new PointerByReference();
-        final PointerByReference attr_value = new PointerByReference();
-        final IntByReference attr_value_len = new IntByReference();
+        for (Map.Entry<String, byte[]> attr : getExtendedAttributesBytes(oid).entrySet()) {
+            attr_map.put(attr.getKey(), Native.toString(attr.getValue()));
+        }
+        return attr_map;
+    }
 
+    /**
+     * Get all extended attributes on an object with their binary values.
+     *
+     * @param oid
+     *          The name of the object
+     * @return
+     *      The map of the extended attributes, with values of their exact length
+     * @throws RadosException
+     *      on failure
+     */
+    public Map<String, byte[]> getExtendedAttributesBytes(final String oid) throws RadosException {
+        final PointerByReference iterator = new PointerByReference();
         handleReturnCode(new Callable<Integer>() {
             @Override
             public Integer call() throws Exception {
-                return rados.rados_getxattrs(getPointer(), oid, iterator);
+                return rados.rados_getxattrs(getPointer(), oid, iterator.getPointer());
             }
-        }, "Failed starting to list all extended attributes");
+        }, "Failed starting to list all extended attributes of %s", oid);
+
+        final Pointer iter = iterator.getValue();
+        try {
+            return readXattrs(new XattrIterator() {
+                @Override
+                public int next(PointerByReference name, PointerByReference value, LongByReference len) {
+                    return rados.rados_getxattrs_next(iter, name, value, len);
+                }
+            });
+        } finally {
+            rados.rados_getxattrs_end(iter);
+        }
+    }
+
+    /**
+     * Watch an object for notifications, handled in order by a shared
+     * thread
+     *
+     * @param oid
+     *          The name of the object
+     * @param listener
+     *          Receives the notifications and failures of the watch
+     * @return Watch, close it to remove the watch
+     * @throws RadosException
+     */
+    public Watch watch(final String oid, final Watch.Listener listener) throws RadosException {
+        return new Watch(this, oid, listener, Watch.defaultDispatcher());
+    }
+
+    /**
+     * Watch an object for notifications
+     *
+     * @param oid
+     *          The name of the object
+     * @param listener
+     *          Receives the notifications and failures of the watch
+     * @param executor
+     *          Runs the listener, off the librados callback thread
+     * @return Watch, close it to remove the watch
+     * @throws RadosException
+     * @see CallbackDispatcher
+     */
+    public Watch watch(final String oid, final Watch.Listener listener, final Executor executor) throws RadosException {
+        return new Watch(this, oid, listener, executor);
+    }
 
-        while (rados.rados_getxattrs_next(iterator.getPointer(0), attr_name, attr_value, attr_value_len) == 0
-                && attr_value_len.getValue() > 0) {
-            int length = attr_value_len.getValue();
-            String name = (attr_name.getValue() == null ? null : new String(attr_name.getValue().getString(0)));
-            String value = (attr_value.getValue() == null ? null : new String(attr_value.getValue().getString(0)));
-            if (length > 0 && name != null && value != null) {
-                attr_map.put(name, value);
+    /**
+     * Send a notification to all watchers of an object and wait for them to
+     * acknowledge it
+     *
+     * @param oid
+     *          The name of the object
+     * @param payload
+     *          The payload handed to the watchers
+     * @param timeout
+     *          How long to wait for the watchers, 0 for the librados default
+     * @param unit
+     *          The unit of timeout
+     * @return NotifyResult
+     *          The replies of the watchers, and the watchers which timed out
+     * @throws RadosException
+     *      on failure -- watchers which timed out are reported in the result,
+     *      not as ETIMEDOUT
+     */
+    public NotifyResult notify(final String oid, final byte[] payload, final long timeout, final TimeUnit unit)
+            throws RadosException {
+        final PointerByReference reply = new PointerByReference();
+        final LongByReference replyLen = new LongByReference();
+        final int r = rados.rados_notify2(getPointer(), oid, payload, payload.length, unit.toMillis(timeout), reply, replyLen);
+        byte[] buf = new byte[0];
+        final Pointer replyPtr = reply.getValue();
+        if (replyPtr != null) {
+            try {
+                buf = replyPtr.getByteArray(0, (int) replyLen.getValue());
+            } finally {
+                rados.rados_buffer_free(replyPtr);
             }
         }
+        // ETIMEDOUT still comes with the replies of the other watchers
+        if (r < 0 && r != ErrorCode.ETIMEDOUT.getErrorCode()) {
+            throwException(r, String.format("Failed to notify %s", oid));
+        }
+        return NotifyResult.decode(buf);
+    }
 
-        rados.rados_getxattrs_end(iterator.getPointer(0));
-
-        return attr_map;
+    /**
+     * Acknowledge a notification received by a watch
+     *
+     * @param oid
+     *          The name of the watched object
+     * @param notifyId
+     *          The ID of the notification
+     * @param cookie
+     *          The cookie of the watch
+     * @param reply
+     *          The reply handed to the notifier, or null for none
+     * @throws RadosException
+     * @see Watch.Notification#ack(byte[])
+     */
+    public void notifyAck(final String oid, final long notifyId, final long cookie, final byte[] reply) throws RadosException {
+        handleReturnCode(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return rados.rados_notify_ack(getPointer(), oid, notifyId, cookie, reply, reply == null ? 0 : reply.length);
+            }
+        }, "Failed to acknowledge notification %s on %s", notifyId, oid);
     }
 
     @Override
@@ -20,33 +20,87 @@ package com.ceph.rados;
 
 import java.util.Arrays;
 
+import com.ceph.rados.exceptions.ErrorCode;
 import com.ceph.rados.exceptions.RadosException;
 
-import com.sun.jna.Memory;
 import com.sun.jna.Pointer;
+import com.sun.jna.ptr.PointerByReference;
 
 import static com.ceph.rados.Library.rados;
 
 /**
- * Used by 
+ * Used by IoCTX.listObjectsPartial to list the objects of a pool one page
+ * at a time.
+ * <p>
+ * getCursor() returns a token for the current position. It is a plain
+ * String, so it can be stored or handed to another process, and
+ * IoCTX.listObjectsPartial(limit, cursor) resumes the listing there. The
+ * token is made of the hash position of the current placement group and
+ * the number of objects already returned from it, so resuming costs at
+ * most one placement group worth of skipped entries instead of the whole
+ * listing so far.
+ * <p>
+ * NOTE: The position is approximate. The librados C API can not serialize
+ * an exact object cursor, so resuming walks past as many entries of the
+ * placement group as were returned before. If objects of that placement
+ * group are created or removed in between, the resumed listing skips or
+ * repeats some of its objects. Other placement groups are not affected.
  */
 public class ListCtx {
+    private static final String END = "end";
+
     Pointer list;
     String [] ids;
     int size;
     int limit;
-    
+    // reused for every entry
+    private final PointerByReference entry = new PointerByReference();
+    private int pgHash;
+    private long pgOffset;
+    // read ahead by seek(), returned by the next call of nextObject()
+    private String pending;
+
     /**
      * @param limit
-     * @param list
+     * @param list memory holding the rados_list_ctx_t
      */
     protected ListCtx(int limit, Pointer list) {
         this.limit = limit;
         this.ids = new String[limit];
         this.list = list;
         this.size = 0;
+        this.pgHash = rados.rados_nobjects_list_get_pg_hash_position(list.getPointer(0));
+    }
+
+    /**
+     * Move to the next object and remember how far into its placement group
+     * it is.
+     *
+     * @return the name of the object or null at the end of the list
+     */
+    private String nextObject() throws RadosException {
+        if (pending != null) {
+            String oid = pending;
+            pending = null;
+            pgOffset++;
+            return oid;
+        }
+        int r = rados.rados_nobjects_list_next(list.getPointer(0), entry, null, null);
+        if (r == ErrorCode.ENOENT.getErrorCode()) {
+            return null;
+        }
+        if (r < 0) {
+            throw RadosBase.createException(r, "Failed listing objects");
+        }
+        int position = rados.rados_nobjects_list_get_pg_hash_position(list.getPointer(0));
+        if (position != pgHash) {
+            pgHash = position;
+            pgOffset = 0;
+        }
+        pgOffset++;
+        return entry.getValue().getString(0);
     }
-    
+
     /**
      * List a subset of objects in a pool
      *
@@ -54,23 +108,9 @@ public class ListCtx {
      * @throws RadosException
      */
     public int nextObjects() throws RadosException {
-        if (list == null) {
-            return 0;
-        }
-        Pointer entry = new Memory(Pointer.SIZE);
-        int i = 0;
-        while (i < limit && rados.rados_objects_list_next(list.getPointer(0), entry, null) == 0) {
-            ids[i] = entry.getPointer(0).getString(0);
-            i++;
-        }
-        if (i < limit) {
-            // closing it
-            rados.rados_objects_list_close(list.getPointer(0));
-            list = null;
-        }
-        this.size = i;
-        return this.size;
+        return nextObjects(0);
     }
+
     /**
      * List a subset of objects in a pool after skipping a set of ids
      *
@@ -82,24 +122,88 @@ public class ListCtx {
         if (list == null) {
             return 0;
         }
-        Pointer entry = new Memory(Pointer.SIZE);
         long j = 0;
-        while (j < skip && rados.rados_objects_list_next(list.getPointer(0), entry, null) == 0) {
+        while (j < skip && nextObject() != null) {
             j++;
         }
         int i = 0;
-        while (i < limit && rados.rados_objects_list_next(list.getPointer(0), entry, null) == 0) {
-            ids[i] = entry.getPointer(0).getString(0);
+        String oid;
+        while (i < limit && (oid = nextObject()) != null) {
+            ids[i] = oid;
             i++;
         }
         if (i < limit) {
             // closing it
-            rados.rados_objects_list_close(list.getPointer(0));
+            rados.rados_nobjects_list_close(list.getPointer(0));
             list = null;
         }
         this.size = i;
         return this.size;
     }
+
+    /**
+     * Get a token for the current position, to resume the listing later
+     * with IoCTX.listObjectsPartial(limit, cursor). The position is
+     * approximate: if the current placement group changes before the
+     * listing is resumed, some of its objects are skipped or repeated.
+     *
+     * @return an opaque token
+     */
+    public String getCursor() {
+        if (list == null) {
+            return END;
+        }
+        return Integer.toHexString(pgHash) + ":" + pgOffset;
+    }
+
+    /**
+     * Move to a position returned by getCursor(). Some objects of the
+     * placement group of the position are skipped or repeated if it changed
+     * since, see getCursor().
+     *
+     * @param cursor a token returned by getCursor()
+     * @throws RadosException
+     * @throws IllegalArgumentException if the token is malformed
+     */
+    public void seek(String cursor) throws RadosException {
+        if (END.equals(cursor)) {
+            close();
+            return;
+        }
+        final int hash;
+        final long offset;
+        try {
+            int separator = cursor.indexOf(':');
+            hash = Integer.parseUnsignedInt(cursor.substring(0, separator), 16);
+            offset = Long.parseLong(cursor.substring(separator + 1));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Malformed listing cursor " + cursor, e);
+        }
+        if (list == null) {
+            throw new IllegalStateException("The listing is closed");
+        }
+        pgHash = rados.rados_nobjects_list_seek(list.getPointer(0), hash);
+        pgOffset = 0;
+        if (pgHash != hash) {
+            // the placement group is gone, e.g. after a merge; start at the next one
+            return;
+        }
+        for (long i = 0; i < offset; i++) {
+            String oid = nextObject();
+            if (oid == null) {
+                break;
+            }
+            if (pgHash != hash) {
+                // fewer objects left in the placement group than before. The
+                // object was not returned yet, so it must not count for
+                // getCursor()
+                pending = oid;
+                pgOffset--;
+                break;
+            }
+        }
+    }
+
     /**
      * 
      * @return size of the returned Array
@@ -122,7 +226,7 @@ public class ListCtx {
      */
     public void close() {
         if (list != null) {
-            rados.rados_objects_list_close(list.getPointer(0));
+            rados.rados_nobjects_list_close(list.getPointer(0));
             list = null;
         }
     }
@@ -0,0 +1,118 @@
+/*
+ * RADOS Java - Java bindings for librados
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.ceph.rados;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The watchers a notification reached, with their replies, and the ones
+ * which did not acknowledge it in time.
+ */
+public class NotifyResult {
+
+    /**
+     * A watch on the notified object.
+     */
+    public static class Watcher {
+        private final long notifierId;
+        private final long cookie;
+        private final byte[] reply;
+
+        Watcher(long notifierId, long cookie, byte[] reply) {
+            this.notifierId = notifierId;
+            this.cookie = cookie;
+            this.reply = reply;
+        }
+
+        /**
+         * @return the instance ID of the client holding the watch
+         */
+        public long getNotifierId() { return notifierId; }
+
+        /**
+         * @return the cookie of the watch in that client
+         */
+        public long getCookie() { return cookie; }
+
+        /**
+         * @return the reply of the watcher, empty if it did not reply or
+         *         timed out
+         */
+        public byte[] getReply() { return reply; }
+    }
+
+    private final List<Watcher> acks;
+    private final List<Watcher> timeouts;
+
+    NotifyResult(List<Watcher> acks, List<Watcher> timeouts) {
+        this.acks = Collections.unmodifiableList(acks);
+        this.timeouts = Collections.unmodifiableList(timeouts);
+    }
+
+    /**
+     * @return the watchers which acknowledged the notification
+     */
+    public List<Watcher> getAcks() {
+        return acks;
+    }
+
+    /**
+     * @return the watchers which did not acknowledge it in time
+     */
+    public List<Watcher> getTimeouts() {
+        return timeouts;
+    }
+
+    /**
+     * Decode the reply buffer of rados_notify2: the number of acks as a
+     * 32-bit integer, for each the notifier ID and cookie as 64-bit integers
+     * and the reply as a 32-bit length and the bytes, then the number of
+     * timeouts and for each the notifier ID and cookie, all little endian.
+     *
+     * @param reply the reply buffer, may be empty
+     * @return the decoded result
+     * @throws IllegalArgumentException if the buffer is truncated
+     */
+    static NotifyResult decode(byte[] reply) {
+        final List<Watcher> acks = new ArrayList<>();
+        final List<Watcher> timeouts = new ArrayList<>();
+        if (reply.length == 0) {
+            return new NotifyResult(acks, timeouts);
+        }
+        final ByteBuffer buf = ByteBuffer.wrap(reply).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            for (int n = buf.getInt(); n > 0; n--) {
+                final long notifierId = buf.getLong();
+                final long cookie = buf.getLong();
+                final byte[] data = new byte[buf.getInt()];
+                buf.get(data);
+                acks.add(new Watcher(notifierId, cookie, data));
+            }
+            for (int n = buf.getInt(); n > 0; n--) {
+                timeouts.add(new Watcher(buf.getLong(), buf.getLong(), new byte[0]));
+            }
+        } catch (BufferUnderflowException | NegativeArraySizeException e) {
+            throw new IllegalArgumentException("Truncated notify reply of " + reply.length + " bytes", e);
+        }
+        return new NotifyResult(acks, timeouts);
+    }
+}
@@ -0,0 +1,642 @@
+/*
+ * RADOS Java - Java bindings for librados
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.ceph.rados;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.ceph.rados.exceptions.RadosException;
+import com.ceph.rados.exceptions.RadosNotFoundException;
+import com.ceph.rados.jna.RadosObjectInfo;
+
+/**
+ * A read-through cache of whole objects, for reads which hit a small set of
+ * hot objects over and over.
+ * <p>
+ * The content of an object is kept outside of the Java heap, in a buffer
+ * borrowed from a BufferPool of the cache, and served as a read-only view
+ * of that buffer without a copy. A read returns the view as Content, which
+ * has to be released once done with it. An evicted object stays valid for
+ * the Content still held, and its buffer goes back to the pool once the
+ * last one is released. All buffers, of cached objects, of evicted objects
+ * still held and of loads in flight, count against the byte budget, so the
+ * memory of the cache is bounded by it and not by the garbage collector.
+ * If held Content uses up the budget, objects are read into buffers of
+ * their own without being cached. Objects larger than the maximum object
+ * size are read but not cached either.
+ * <p>
+ * A load reads the size and mtime of an object together with its first
+ * bytes, as many as the smallest buffer for the expected size holds: the
+ * size the object had when last cached, or one buffer of the smallest size
+ * class. Larger objects are read again as a whole into a buffer of their
+ * size, so no buffer is much larger than its object.
+ * <p>
+ * Eviction is a segmented LRU: objects enter a probation segment and move
+ * to a protected segment, of up to 80% of the budget, when they are read
+ * again. Objects read once, like those of a scan, are evicted first and do
+ * not push out the hot ones.
+ * <p>
+ * Once an object has been cached for longer than the validation interval,
+ * the next read stats the object and keeps the content if the size and
+ * mtime did not change. mtime has a resolution of one second, so content
+ * loaded within two seconds of its last modification is read again
+ * instead. Modifications made through the IoCTX of the cache drop the
+ * objects they touch, and a CacheInvalidator does the same for other
+ * clients, so the validation interval can be long.
+ * <p>
+ * An ObjectCache is thread safe. Close it to stop following the
+ * modifications of its IoCTX and to drop everything cached.
+ */
+public class ObjectCache implements ObjectChangeListener, Closeable {
+
+    public static final int DEFAULT_MAX_OBJECT_SIZE = 4 * 1024 * 1024;
+
+    // loads check that their object was not modified while they ran
+    private static final int GENERATION_STRIPES = 64;
+    private static final int PROTECTED_PERCENT = 80;
+    // how many seconds after its mtime the content of an object is trusted
+    private static final long MTIME_RESOLUTION = 2;
+    private static final int MIN_BUFFER_SIZE = 1024;
+
+    /**
+     * The content of an object read through the cache. Release it once done
+     * with the buffer.
+     */
+    public static class Content implements Closeable {
+        private final ObjectCache cache;
+        // null if the buffer is not pooled
+        private final Cached entry;
+        private ByteBuffer buf;
+        // Guarded by cache
+        private boolean released;
+
+        Content(ObjectCache cache, Cached entry, ByteBuffer buf) {
+            this.cache = cache;
+            this.entry = entry;
+            this.buf = buf;
+        }
+
+        /**
+         * @return a read-only view of the content, which must not be used
+         *         after release()
+         */
+        public ByteBuffer getBuffer() { return buf; }
+
+        /**
+         * Let the cache reuse the buffer once the object is evicted. Does
+         * nothing if already released.
+         */
+        public void release() {
+            if (entry != null) {
+                cache.release(this);
+            }
+        }
+
+        @Override
+        public void close() {
+            release();
+        }
+    }
+
+    private static class Cached {
+        // borrowed from the pool, or null if allocated on its own
+        final ByteBuffer slab;
+        final ByteBuffer data;
+        final long size;
+        final long mtime;
+        // false if the object may have been modified within the second of its mtime
+        final boolean mtimeReliable;
+        long validated;
+        boolean isProtected;
+        // the cache and every Content not released yet
+        int refs;
+
+        Cached(ByteBuffer slab, ByteBuffer data, long size, long mtime, boolean mtimeReliable) {
+            this.slab = slab;
+            this.data = data;
+            this.size = size;
+            this.mtime = mtime;
+            this.mtimeReliable = mtimeReliable;
+        }
+    }
+
+    private final IoCTX ioctx;
+    private final long maxBytes;
+    private final long maxProtectedBytes;
+    private final int maxObjectSize;
+    private final long validateAfterNanos;
+    private final BufferPool pool;
+
+    // Guarded by this, least recently used first
+    private final LinkedHashMap<String, Cached> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Cached> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+    private final long[] generations = new long[GENERATION_STRIPES];
+    private long bytes;
+    private long protectedBytes;
+    private long hits;
+    private long misses;
+    private long validations;
+    private long evictions;
+
+    /**
+     * @param ioctx the IO context to read from
+     * @param maxBytes the maximum number of bytes of memory used
+     * @param maxObjectSize the size of the largest object cached
+     * @param validateAfter how long an object is served before it is
+     *                      validated again, 0 to validate it on every read
+     * @param unit the unit of validateAfter
+     */
+    ObjectCache(IoCTX ioctx, long maxBytes, int maxObjectSize, long validateAfter, TimeUnit unit) {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("The maximum number of bytes should be at least one");
+        }
+        if (maxObjectSize < 1) {
+            throw new IllegalArgumentException("The maximum object size should be at least one");
+        }
+        if (validateAfter < 0) {
+            throw new IllegalArgumentException("The validation interval shouldn't be a negative value");
+        }
+        this.ioctx = ioctx;
+        this.maxBytes = maxBytes;
+        this.maxProtectedBytes = (long) (maxBytes * (PROTECTED_PERCENT / 100.0));
+        this.maxObjectSize = (int) Math.min(maxObjectSize, maxBytes);
+        this.validateAfterNanos = unit.toNanos(validateAfter);
+        // size classes up to the largest object, as far as the budget holds one
+        final long maxBufferSize = Math.min(Math.min(Long.highestOneBit(Math.max(1, this.maxObjectSize - 1)) << 1,
+                Long.highestOneBit(maxBytes)), 1 << 30);
+        this.pool = new BufferPool(maxBytes, (int) Math.min(MIN_BUFFER_SIZE, maxBufferSize), (int) maxBufferSize);
+        ioctx.addObjectChangeListener(this);
+    }
+
+    /**
+     * Read a whole object
+     *
+     * @param oid the name of the object
+     * @return the content, from position 0 to the size of the object.
+     *         Release it once done.
+     * @throws RadosException a RadosNotFoundException if the object does not
+     *                        exist, or the failure of the read
+     */
+    public Content get(String oid) throws RadosException {
+        Cached entry;
+        Content held = null;
+        long generation;
+        synchronized (this) {
+            entry = lookup(oid);
+            if (entry != null) {
+                // keeps the buffer from being reused while it is validated
+                held = lease(entry);
+                if (System.nanoTime() - entry.validated < validateAfterNanos) {
+                    hits++;
+                    return held;
+                }
+            }
+            generation = generation(oid);
+        }
+
+        long expectedSize = 0;
+        if (entry != null) {
+            final boolean unchanged;
+            try {
+                unchanged = isUnchanged(oid, entry);
+            } catch (RadosException | RuntimeException e) {
+                held.release();
+                throw e;
+            }
+            if (unchanged) {
+                synchronized (this) {
+                    if (lookup(oid) == entry) {
+                        entry.validated = System.nanoTime();
+                    }
+                    hits++;
+                    validations++;
+                }
+                return held;
+            }
+            held.release();
+            synchronized (this) {
+                if (lookup(oid) == entry) {
+                    remove(oid);
+                }
+                generation = generation(oid);
+            }
+            expectedSize = entry.size;
+        }
+
+        synchronized (this) {
+            misses++;
+        }
+        return load(oid, generation, expectedSize);
+    }
+
+    /**
+     * Read a range of an object
+     *
+     * @param oid the name of the object
+     * @param offset the offset of the range
+     * @param length the length of the range
+     * @return the range, shorter if it reaches past the end of the object.
+     *         Release it once done.
+     * @throws RadosException a RadosNotFoundException if the object does not
+     *                        exist, or the failure of the read
+     */
+    public Content read(String oid, long offset, int length) throws RadosException {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Offset shouldn't be a negative value");
+        }
+        if (length < 0) {
+            throw new IllegalArgumentException("Length shouldn't be a negative value");
+        }
+        final Content content = get(oid);
+        final ByteBuffer data = content.buf;
+        final int from = (int) Math.min(offset, data.limit());
+        data.position(from).limit((int) Math.min((long) from + length, data.limit()));
+        content.buf = data.slice();
+        return content;
+    }
+
+    /**
+     * Drop an object from the cache
+     *
+     * @param oid the name of the object
+     */
+    public synchronized void invalidate(String oid) {
+        generations[stripe(oid)]++;
+        remove(oid);
+    }
+
+    /**
+     * Drop everything cached
+     */
+    public synchronized void invalidateAll() {
+        for (int i = 0; i < generations.length; i++) {
+            generations[i]++;
+        }
+        for (Cached entry : probation.values()) {
+            unref(entry);
+        }
+        for (Cached entry : protectedSegment.values()) {
+            unref(entry);
+        }
+        probation.clear();
+        protectedSegment.clear();
+        bytes = 0;
+        protectedBytes = 0;
+    }
+
+    @Override
+    public void objectChanged(String oid) {
+        invalidate(oid);
+    }
+
+    @Override
+    public void contextChanged() {
+        invalidateAll();
+    }
+
+    /**
+     * @return the number of reads served from the cache, validated or not
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of reads which loaded the object
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of hits which had to stat the object first
+     */
+    public synchronized long getValidations() {
+        return validations;
+    }
+
+    /**
+     * @return the number of objects evicted to stay within the budget
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return the number of bytes cached
+     */
+    public synchronized long getCachedBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return the number of objects cached
+     */
+    public synchronized int getCachedObjects() {
+        return probation.size() + protectedSegment.size();
+    }
+
+    /**
+     * @return the number of bytes of memory used, by cached objects,
+     *         evicted objects still held, loads in flight and buffers kept
+     *         for reuse
+     */
+    public long getAllocatedBytes() {
+        return pool.getAllocatedBytes();
+    }
+
+    /**
+     * Stop following the modifications of the IoCTX and drop everything
+     * cached.
+     */
+    @Override
+    public void close() {
+        ioctx.removeObjectChangeListener(this);
+        invalidateAll();
+    }
+
+    /**
+     * @return the cached object, promoted to the protected segment when
+     *         read again while on probation
+     */
+    private Cached lookup(String oid) {
+        Cached entry = protectedSegment.get(oid);
+        if (entry != null) {
+            return entry;
+        }
+        entry = probation.remove(oid);
+        if (entry == null) {
+            return null;
+        }
+        entry.isProtected = true;
+        protectedSegment.put(oid, entry);
+        protectedBytes += entry.size;
+        // demote the least recently used protected objects
+        final Iterator<Map.Entry<String, Cached>> eldest = protectedSegment.entrySet().iterator();
+        while (protectedBytes > maxProtectedBytes && eldest.hasNext()) {
+            final Map.Entry<String, Cached> demoted = eldest.next();
+            if (demoted.getValue() == entry) {
+                break;
+            }
+            eldest.remove();
+            demoted.getValue().isProtected = false;
+            protectedBytes -= demoted.getValue().size;
+            probation.put(demoted.getKey(), demoted.getValue());
+        }
+        return entry;
+    }
+
+    private void insert(String oid, Cached entry) {
+        remove(oid);
+        entry.validated = System.nanoTime();
+        entry.refs++;
+        probation.put(oid, entry);
+        bytes += entry.size;
+        while (bytes > maxBytes && evictEldest()) {
+            // the pool keeps the buffers within the budget, this only
+            // catches objects larger than their buffer size class
+        }
+    }
+
+    /**
+     * Evict the least recently used object, from probation first, then from
+     * the protected segment.
+     *
+     * @return false if nothing is cached
+     */
+    private boolean evictEldest() {
+        final LinkedHashMap<String, Cached> segment = probation.isEmpty() ? protectedSegment : probation;
+        final Iterator<Cached> eldest = segment.values().iterator();
+        if (!eldest.hasNext()) {
+            return false;
+        }
+        final Cached evicted = eldest.next();
+        eldest.remove();
+        bytes -= evicted.size;
+        if (evicted.isProtected) {
+            protectedBytes -= evicted.size;
+        }
+        evictions++;
+        unref(evicted);
+        return true;
+    }
+
+    private void remove(String oid) {
+        Cached entry = probation.remove(oid);
+        if (entry == null) {
+            entry = protectedSegment.remove(oid);
+            if (entry != null) {
+                protectedBytes -= entry.size;
+            }
+        }
+        if (entry != null) {
+            bytes -= entry.size;
+            unref(entry);
+        }
+    }
+
+    private Content lease(Cached entry) {
+        entry.refs++;
+        return new Content(this, entry, entry.data.duplicate());
+    }
+
+    private synchronized void release(Content content) {
+        if (!content.released) {
+            content.released = true;
+            unref(content.entry);
+        }
+    }
+
+    private void unref(Cached entry) {
+        if (--entry.refs == 0 && entry.slab != null) {
+            pool.release(entry.slab);
+        }
+    }
+
+    /**
+     * Borrow a buffer from the pool, evicting cached objects to make room.
+     *
+     * @return the buffer, or null if held Content uses up the budget
+     */
+    private ByteBuffer borrow(int size) throws RadosException {
+        while (true) {
+            final ByteBuffer buf;
+            try {
+                buf = pool.tryAcquire(size, 0, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RadosException("Interrupted while waiting for a buffer of " + size + " bytes");
+            }
+            if (buf != null) {
+                return buf;
+            }
+            synchronized (this) {
+                if (!evictEldest()) {
+                    return null;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if the size and mtime of the object are still those of
+     *         the cached content
+     */
+    private boolean isUnchanged(String oid, Cached entry) throws RadosException {
+        if (!entry.mtimeReliable) {
+            return false;
+        }
+        final RadosObjectInfo info;
+        try {
+            info = ioctx.stat(oid);
+        } catch (RadosNotFoundException e) {
+            invalidate(oid);
+            throw e;
+        }
+        return info.getSize() == entry.size && info.getMtime() == entry.mtime;
+    }
+
+    /**
+     * Read the size, mtime and content of an object and cache it unless it
+     * was modified meanwhile.
+     *
+     * @param expectedSize the size the object had when last cached, or 0
+     */
+    private Content load(String oid, long generation, long expectedSize) throws RadosException {
+        int want = (int) Math.min(Math.max(expectedSize, 1), maxObjectSize);
+        while (true) {
+            final long now = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+            ByteBuffer slab = borrow(want);
+            final ByteBuffer buf = slab != null ? slab : ByteBuffer.allocateDirect(want);
+            // read as much as the buffer holds
+            buf.clear();
+            if (buf.capacity() > maxObjectSize) {
+                buf.limit(maxObjectSize);
+            }
+            final long size;
+            final long mtime;
+            final int read;
+            try (ReadOp op = ioctx.readOpCreate()) {
+                final ReadOp.StatResult stat = op.queueStat();
+                final ReadOp.ReadResult result = op.queueRead(0, buf);
+                op.operate(oid, Rados.OPERATION_NOFLAG);
+                stat.raiseExceptionOnError("Failed to stat %s", oid);
+                result.raiseExceptionOnError("Failed to read %s", oid);
+                size = stat.getSize();
+                mtime = stat.getMtime();
+                read = (int) result.getBytesRead();
+            } catch (RadosException | RuntimeException e) {
+                if (slab != null) {
+                    pool.release(slab);
+                }
+                throw e;
+            }
+
+            if (size > maxObjectSize) {
+                // not cached, only read what is missing
+                try {
+                    return new Content(this, null, readRest(oid, buf, read, size));
+                } finally {
+                    if (slab != null) {
+                        pool.release(slab);
+                    }
+                }
+            }
+            if (size > read && read == buf.limit()) {
+                // larger than expected, read it again as a whole
+                if (slab != null) {
+                    pool.release(slab);
+                }
+                want = (int) size;
+                continue;
+            }
+
+            if (slab != null) {
+                slab = shrink(slab, read);
+            }
+            final ByteBuffer data = (slab != null ? slab : buf).duplicate();
+            data.position(0).limit(read);
+            final Cached entry = new Cached(slab, data.slice().asReadOnlyBuffer(), read, mtime,
+                    mtime <= now - MTIME_RESOLUTION);
+            synchronized (this) {
+                if (slab != null && generation == generation(oid)) {
+                    insert(oid, entry);
+                }
+                return lease(entry);
+            }
+        }
+    }
+
+    /**
+     * @return a buffer of the smallest size class holding the first length
+     *         bytes of slab, slab itself if there is none
+     */
+    private ByteBuffer shrink(ByteBuffer slab, int length) throws RadosException {
+        final ByteBuffer smaller;
+        try {
+            smaller = pool.tryAcquire(length, 0, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return slab;
+        }
+        if (smaller == null) {
+            return slab;
+        }
+        if (smaller.capacity() >= slab.capacity()) {
+            pool.release(smaller);
+            return slab;
+        }
+        final ByteBuffer src = slab.duplicate();
+        src.position(0).limit(length);
+        smaller.clear();
+        smaller.put(src);
+        pool.release(slab);
+        return smaller;
+    }
+
+    /**
+     * Read an object too large to be cached into a buffer of its own,
+     * starting with the bytes already read.
+     */
+    private ByteBuffer readRest(String oid, ByteBuffer head, int read, long size) throws RadosException {
+        if (size > Integer.MAX_VALUE) {
+            throw new RadosException(String.format("Object %s of %s bytes does not fit in a buffer", oid, size));
+        }
+        final ByteBuffer data = ByteBuffer.allocateDirect((int) size);
+        final ByteBuffer src = head.duplicate();
+        src.position(0).limit(read);
+        data.put(src);
+        int n;
+        while (data.hasRemaining() && (n = ioctx.read(oid, data.position(), data.duplicate())) > 0) {
+            data.position(data.position() + n);
+        }
+        data.flip();
+        return data.asReadOnlyBuffer();
+    }
+
+    private long generation(String oid) {
+        return generations[stripe(oid)];
+    }
+
+    private static int stripe(String oid) {
+        return oid.hashCode() & (GENERATION_STRIPES - 1);
+    }
+}
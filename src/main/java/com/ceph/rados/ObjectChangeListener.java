@@ -0,0 +1,42 @@
+/*
+ * RADOS Java - Java bindings for librados
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.ceph.rados;
+
+/**
+ * Told about the objects an IoCTX modifies, see
+ * IoCTX.addObjectChangeListener.
+ * <p>
+ * Listeners are called on the thread which issued the modification, after
+ * a synchronous call returned, whether it succeeded or not, and when an
+ * asynchronous one is submitted. They should be quick and must not throw.
+ */
+public interface ObjectChangeListener {
+
+    /**
+     * An object may have been modified: written, truncated, removed, or its
+     * extended attributes or omap changed.
+     *
+     * @param oid the name of the object
+     */
+    void objectChanged(String oid);
+
+    /**
+     * The namespace or locator key of the IoCTX changed, so the same names
+     * now refer to other objects.
+     */
+    void contextChanged();
+}
@@ -0,0 +1,99 @@
+/*
+ * RADOS Java - Java bindings for librados
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.ceph.rados;
+
+import static com.ceph.rados.Library.rados;
+
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.ceph.rados.exceptions.ErrorCode;
+
+import com.sun.jna.Pointer;
+import com.sun.jna.ptr.PointerByReference;
+
+/**
+ * Iterates lazily over the object names of a pool with rados_nobjects_list.
+ * <p>
+ * Names are fetched one at a time as the iterator advances, so no more
+ * than one name is held at once. The native list handle is closed when the
+ * end is reached or by close(), so use it in a try-with-resources block if
+ * the iteration may stop early. Errors while listing are thrown as
+ * UncheckedIOException with the RadosException as cause.
+ */
+public class ObjectIterator implements Iterator<String>, AutoCloseable {
+
+    private Pointer list;
+    // reused for every entry, librados points it at its own copy of the name
+    private final PointerByReference entry = new PointerByReference();
+    private String next;
+
+    ObjectIterator(Pointer list) {
+        this.list = list;
+    }
+
+    @Override
+    public synchronized boolean hasNext() {
+        if (next == null && list != null) {
+            int r = rados.rados_nobjects_list_next(list, entry, null, null);
+            if (r == ErrorCode.ENOENT.getErrorCode()) {
+                close();
+            } else if (r < 0) {
+                close();
+                throw new UncheckedIOException(RadosBase.createException(r, "Failed listing objects"));
+            } else {
+                next = entry.getValue().getString(0);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public synchronized String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        String oid = next;
+        next = null;
+        return oid;
+    }
+
+    /**
+     * @return a sequential Stream over the remaining names which closes this
+     *         iterator when it is closed
+     */
+    public Stream<String> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.NONNULL), false)
+                .onClose(this::close);
+    }
+
+    /**
+     * Close the native list handle. The iterator is at its end afterwards.
+     */
+    @Override
+    public synchronized void close() {
+        if (list != null) {
+            rados.rados_nobjects_list_close(list);
+            list = null;
+        }
+    }
+}
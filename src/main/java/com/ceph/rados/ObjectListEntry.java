@@ -0,0 +1,92 @@
+/*
+ * RADOS Java - Java bindings for librados
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.ceph.rados;
+
+import java.util.Objects;
+
+import com.ceph.rados.jna.RadosObjectListItem;
+
+/**
+ * An object returned by a cursor based listing, with the namespace and
+ * locator key it is stored under.
+ * <p>
+ * When listing all namespaces the same name can show up once per
+ * namespace, so the namespace is part of the identity of an entry.
+ */
+public class ObjectListEntry {
+
+    private final String namespace;
+    private final String oid;
+    private final String locator;
+
+    public ObjectListEntry(String namespace, String oid, String locator) {
+        this.namespace = namespace;
+        this.oid = oid;
+        this.locator = locator;
+    }
+
+    static ObjectListEntry from(RadosObjectListItem item) {
+        return new ObjectListEntry(
+                item.nspace_length == 0 ? "" : ObjectListSpliterator.string(item.nspace, item.nspace_length),
+                ObjectListSpliterator.string(item.oid, item.oid_length),
+                item.locator_length == 0 ? null : ObjectListSpliterator.string(item.locator, item.locator_length));
+    }
+
+    /**
+     * @return the namespace of the object, an empty String for the default
+     *         namespace
+     */
+    public String getNamespace() {
+        return namespace;
+    }
+
+    /**
+     * @return the name of the object
+     */
+    public String getOid() {
+        return oid;
+    }
+
+    /**
+     * @return the locator key of the object, or null if it has none
+     */
+    public String getLocator() {
+        return locator;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ObjectListEntry)) {
+            return false;
+        }
+        ObjectListEntry other = (ObjectListEntry) o;
+        return namespace.equals(other.namespace) && oid.equals(other.oid) && Objects.equals(locator, other.locator);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(namespace, oid, locator);
+    }
+
+    @Override
+    public String toString() {
+        return namespace.isEmpty() ? oid : namespace + "/" + oid;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * RADOS Java - Java bindings for librados
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.ceph.rados;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import com.sun.jna.Pointer;
+
+/**
+ * Selects the objects returned by a cursor based listing.
+ * <p>
+ * An extended attribute filter is evaluated by the OSDs, so objects which
+ * do not match never leave the cluster. A name prefix is checked on the
+ * raw names before they are decoded, so objects which do not match are
+ * never turned into Strings. Both can be combined.
+ */
+public class ObjectListFilter {
+
+    private final byte[] serverFilter;
+    private final byte[] prefix;
+
+    private ObjectListFilter(byte[] serverFilter, byte[] prefix) {
+        this.serverFilter = serverFilter;
+        this.prefix = prefix;
+    }
+
+    /**
+     * Only list objects whose extended attribute has exactly this value.
+     * Objects without the attribute are not listed.
+     *
+     * @param xattrName the name of the extended attribute
+     * @param value the value it must have
+     * @return ObjectListFilter
+     */
+    public static ObjectListFilter xattrEquals(String xattrName, byte[] value) {
+        return new ObjectListFilter(plainFilter(xattrName, value), null);
+    }
+
+    /**
+     * Only list objects whose name starts with a prefix.
+     *
+     * @param prefix the prefix of the object names
+     * @return ObjectListFilter
+     */
+    public static ObjectListFilter prefix(String prefix) {
+        return new ObjectListFilter(null, prefix.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param prefix the prefix of the object names
+     * @return a filter which also requires the names to start with prefix
+     */
+    public ObjectListFilter withPrefix(String prefix) {
+        return new ObjectListFilter(serverFilter, prefix.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the filter buffer for rados_object_list, or null
+     */
+    byte[] getServerFilter() {
+        return serverFilter;
+    }
+
+    /**
+     * Check the prefix on a name in native memory, copying no more than
+     * the length of the prefix.
+     */
+    boolean matches(Pointer name, long length) {
+        if (prefix == null) {
+            return true;
+        }
+        return length >= prefix.length && matchesPrefix(name.getByteArray(0, prefix.length));
+    }
+
+    boolean matchesPrefix(byte[] head) {
+        if (head.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (head[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Encode the OSD's "plain" listing filter: the filter type, the on-disk
+     * name of the extended attribute (user attributes are stored with a "_"
+     * prefix) and the value, each as a length prefixed string the way ceph
+     * encodes std::string.
+     */
+    static byte[] plainFilter(String xattrName, byte[] value) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encode(out, "plain".getBytes(StandardCharsets.UTF_8));
+        encode(out, ("_" + xattrName).getBytes(StandardCharsets.UTF_8));
+        encode(out, value);
+        return out.toByteArray();
+    }
+
+    private static void encode(ByteArrayOutputStream out, byte[] data) {
+        int length = data.length;
+        out.write(length);
+        out.write(length >>> 8);
+        out.write(length >>> 16);
+        out.write(length >>> 24);
+        out.write(data, 0, length);
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * RADOS Java - Java bindings for librados
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.ceph.rados;
+
+import static com.ceph.rados.Library.rados;
+
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import com.ceph.rados.jna.RadosObjectListItem;
+
+import com.sun.jna.Pointer;
+import com.sun.jna.ptr.PointerByReference;
+
+/**
+ * Lists the objects of a pool between two rados_object_list cursors, as
+ * names or as ObjectListEntry with their namespace and locator key.
+ * <p>
+ * The range of object hashes is split with rados_object_list_slice, either
+ * up front to hand disjoint slices of a pool to different processes, or by
+ * trySplit() so a parallel Stream lists a pool from many threads.
+ * <p>
+ * The cursors are native memory. They are freed once a spliterator is
+ * exhausted, and close() frees those of the spliterator and of everything
+ * split from it, so close the listing (or the Stream built on it) when done.
+ * Errors while listing are thrown as UncheckedIOException with the
+ * RadosException as cause.
+ * <p>
+ * An ObjectListFilter restricts the listing to matching objects, see there.
+ * <p>
+ * The objects listed are those of the namespace of the IO context, or of
+ * all namespaces if it is set to Rados.ALL_NAMESPACES.
+ *
+ * @param <T> String or ObjectListEntry
+ */
+public class ObjectListSpliterator<T> implements Spliterator<T>, AutoCloseable {
+
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+
+    static final Function<RadosObjectListItem, String> NAMES = item -> string(item.oid, item.oid_length);
+    static final Function<RadosObjectListItem, ObjectListEntry> ENTRIES = ObjectListEntry::from;
+
+    private final Pointer io;
+    private final int batchSize;
+    private final ObjectListFilter filter;
+    private final byte[] serverFilter;
+    private final Function<RadosObjectListItem, T> decoder;
+    // every spliterator of this listing, so close() reaches the split ones too
+    private final Queue<ObjectListSpliterator<T>> listing;
+    private final ArrayDeque<T> batch = new ArrayDeque<>();
+
+    private Pointer cursor;
+    private Pointer end;
+    private Pointer next;
+    private long estimate = Long.MAX_VALUE;
+
+    /**
+     * @param io the IO context of the pool
+     * @param batchSize the number of objects fetched per round trip
+     * @param slice the slice to list, from 0 to slices - 1
+     * @param slices the number of disjoint slices the pool is divided into
+     * @param filter the objects to list, or null for all of them
+     * @param decoder turns a listed item into T, NAMES or ENTRIES
+     */
+    ObjectListSpliterator(Pointer io, int batchSize, int slice, int slices, ObjectListFilter filter,
+            Function<RadosObjectListItem, T> decoder) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size should be at least one");
+        }
+        if (slices < 1 || slice < 0 || slice >= slices) {
+            throw new IllegalArgumentException("Slice should be between 0 and " + (slices - 1));
+        }
+        this.io = io;
+        this.batchSize = batchSize;
+        this.filter = filter;
+        this.serverFilter = filter == null ? null : filter.getServerFilter();
+        this.decoder = decoder;
+        this.listing = new ConcurrentLinkedQueue<>();
+
+        Pointer begin = rados.rados_object_list_begin(io);
+        Pointer finish = rados.rados_object_list_end(io);
+        if (slices == 1) {
+            this.cursor = begin;
+            this.end = finish;
+        } else {
+            Pointer[] range = slice(begin, finish, slice, slices);
+            rados.rados_object_list_cursor_free(io, begin);
+            rados.rados_object_list_cursor_free(io, finish);
+            this.cursor = range[0];
+            this.end = range[1];
+        }
+        this.next = rados.rados_object_list_begin(io);
+        listing.add(this);
+    }
+
+    private ObjectListSpliterator(ObjectListSpliterator<T> parent, Pointer cursor, Pointer end) {
+        this.io = parent.io;
+        this.batchSize = parent.batchSize;
+        this.filter = parent.filter;
+        this.serverFilter = parent.serverFilter;
+        this.decoder = parent.decoder;
+        this.listing = parent.listing;
+        this.cursor = cursor;
+        this.end = end;
+        this.next = rados.rados_object_list_begin(io);
+        listing.add(this);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        T object = poll();
+        if (object == null) {
+            return false;
+        }
+        action.accept(object);
+        return true;
+    }
+
+    private synchronized T poll() {
+        while (batch.isEmpty()) {
+            if (cursor == null) {
+                return null;
+            }
+            if (rados.rados_object_list_cursor_cmp(io, cursor, end) >= 0) {
+                release();
+                return null;
+            }
+            fetch();
+        }
+        return batch.poll();
+    }
+
+    /**
+     * Fetch the next batch of objects and move the cursor past them.
+     */
+    private void fetch() {
+        RadosObjectListItem[] items = (RadosObjectListItem[]) new RadosObjectListItem().toArray(batchSize);
+        PointerByReference nextRef = new PointerByReference(next);
+        int r = rados.rados_object_list(io, cursor, end, batchSize,
+                serverFilter, serverFilter == null ? 0 : serverFilter.length, items, nextRef);
+        if (r < 0) {
+            throw new UncheckedIOException(RadosBase.createException(r, "Failed listing objects"));
+        }
+        try {
+            for (int i = 0; i < r; i++) {
+                if (filter == null || filter.matches(items[i].oid, items[i].oid_length)) {
+                    batch.add(decoder.apply(items[i]));
+                }
+            }
+        } finally {
+            rados.rados_object_list_free(r, items);
+        }
+        // the old cursor becomes the target of the next call
+        Pointer previous = cursor;
+        cursor = next;
+        next = previous;
+    }
+
+    static String string(Pointer ptr, long length) {
+        return new String(ptr.getByteArray(0, (int) length), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Split off the upper half of the remaining hash range.
+     */
+    @Override
+    public synchronized Spliterator<T> trySplit() {
+        if (cursor == null) {
+            return null;
+        }
+        Pointer[] lower = slice(cursor, end, 0, 2);
+        Pointer[] upper = slice(cursor, end, 1, 2);
+        rados.rados_object_list_cursor_free(io, lower[0]);
+        if (rados.rados_object_list_cursor_cmp(io, upper[0], cursor) <= 0
+                || rados.rados_object_list_cursor_cmp(io, upper[0], end) >= 0) {
+            // the range can not be divided any further
+            rados.rados_object_list_cursor_free(io, lower[1]);
+            rados.rados_object_list_cursor_free(io, upper[0]);
+            rados.rados_object_list_cursor_free(io, upper[1]);
+            return null;
+        }
+        rados.rados_object_list_cursor_free(io, end);
+        end = lower[1];
+        // unknown, but halved per split so parallel streams stop splitting
+        estimate >>>= 1;
+        ObjectListSpliterator<T> split = new ObjectListSpliterator<>(this, upper[0], upper[1]);
+        split.estimate = estimate;
+        return split;
+    }
+
+    /**
+     * @return new cursors for slice n of m of the range between start and finish
+     */
+    private Pointer[] slice(Pointer start, Pointer finish, int n, int m) {
+        PointerByReference sliceStart = new PointerByReference(rados.rados_object_list_begin(io));
+        PointerByReference sliceFinish = new PointerByReference(rados.rados_object_list_begin(io));
+        rados.rados_object_list_slice(io, start, finish, n, m, sliceStart, sliceFinish);
+        return new Pointer[] { sliceStart.getValue(), sliceFinish.getValue() };
+    }
+
+    /**
+     * The number of objects is not known, this is Long.MAX_VALUE halved
+     * once per split.
+     */
+    @Override
+    public long estimateSize() {
+        return estimate;
+    }
+
+    @Override
+    public int characteristics() {
+        return NONNULL;
+    }
+
+    /**
+     * Free the cursors of this listing, including all spliterators split
+     * from it.
+     */
+    @Override
+    public void close() {
+        ObjectListSpliterator<T> part;
+        while ((part = listing.poll()) != null) {
+            part.release();
+        }
+    }
+
+    private synchronized void release() {
+        if (cursor != null) {
+            rados.rados_object_list_cursor_free(io, cursor);
+            rados.rados_object_list_cursor_free(io, end);
+            rados.rados_object_list_cursor_free(io, next);
+            cursor = null;
+            end = null;
+            next = null;
+        }
+        batch.clear();
+    }
+}
@@ -0,0 +1,320 @@
+/*
+ * RADOS Java - Java bindings for librados
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.ceph.rados;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.ceph.rados.exceptions.ErrorCode;
+import com.ceph.rados.exceptions.RadosException;
+import com.ceph.rados.exceptions.RadosNotFoundException;
+import com.ceph.rados.jna.RadosObjectInfo;
+import com.sun.jna.Native;
+
+/**
+ * A client side cache of the stat results and extended attributes of
+ * objects, for request paths which look up the same objects over and over.
+ * <p>
+ * Entries expire after a time to live and the least recently used objects
+ * are evicted beyond a maximum number. That an object does not exist is
+ * cached as well, for its own time to live. All extended attributes of an
+ * object are fetched at once and served from the cached map.
+ * <p>
+ * Modifications made through the IoCTX of the cache, including by its
+ * WriteOps, drop the entries of the objects they touch, and switching its
+ * namespace or locator key drops all entries. Asynchronous modifications
+ * drop them when they are submitted, so a lookup racing with one in flight
+ * may cache the previous state until it expires. Modifications made by
+ * other clients are only seen once entries expire.
+ * <p>
+ * An ObjectMetadataCache is thread safe. Close it to stop following the
+ * modifications of its IoCTX.
+ */
+public class ObjectMetadataCache implements ObjectChangeListener, Closeable {
+
+    // loads check that their object was not modified while they ran
+    private static final int GENERATION_STRIPES = 64;
+
+    private static class CachedMetadata {
+        RadosObjectInfo info;
+        long infoExpiry;
+        Map<String, byte[]> xattrs;
+        long xattrsExpiry;
+        // while missing the object is known not to exist
+        boolean missing;
+        long missingExpiry;
+    }
+
+    private final IoCTX ioctx;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    // Guarded by this
+    private final LinkedHashMap<String, CachedMetadata> entries;
+    private final long[] generations = new long[GENERATION_STRIPES];
+    private long hits;
+    private long misses;
+
+    /**
+     * @param ioctx the IO context to look objects up in
+     * @param maxEntries the maximum number of objects cached
+     * @param ttl how long stat results and extended attributes are cached
+     * @param negativeTtl how long a missing object is cached, 0 to not
+     *                    cache missing objects
+     * @param unit the unit of ttl and negativeTtl
+     */
+    ObjectMetadataCache(IoCTX ioctx, final int maxEntries, long ttl, long negativeTtl, TimeUnit unit) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("The maximum number of entries should be at least one");
+        }
+        if (ttl < 0 || negativeTtl < 0) {
+            throw new IllegalArgumentException("Time to live shouldn't be a negative value");
+        }
+        this.ioctx = ioctx;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.negativeTtlNanos = unit.toNanos(negativeTtl);
+        this.entries = new LinkedHashMap<String, CachedMetadata>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedMetadata> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        ioctx.addObjectChangeListener(this);
+    }
+
+    /**
+     * Stat an object
+     *
+     * @param oid the name of the object
+     * @return the size and mtime of the object
+     * @throws RadosException a RadosNotFoundException if the object does not
+     *                        exist, or the failure of the stat
+     */
+    public RadosObjectInfo stat(String oid) throws RadosException {
+        final long generation;
+        synchronized (this) {
+            final long now = System.nanoTime();
+            final CachedMetadata entry = entries.get(oid);
+            if (entry != null && entry.missing && now - entry.missingExpiry < 0) {
+                hits++;
+                throw notFound(oid);
+            }
+            if (entry != null && entry.info != null && now - entry.infoExpiry < 0) {
+                hits++;
+                return entry.info;
+            }
+            misses++;
+            generation = generation(oid);
+        }
+        final RadosObjectInfo info;
+        try {
+            info = ioctx.stat(oid);
+        } catch (RadosNotFoundException e) {
+            cacheMissing(oid, generation);
+            throw e;
+        }
+        synchronized (this) {
+            if (generation == generation(oid)) {
+                final CachedMetadata entry = entry(oid);
+                entry.info = info;
+                entry.infoExpiry = System.nanoTime() + ttlNanos;
+            }
+        }
+        return info;
+    }
+
+    /**
+     * Get all extended attributes of an object
+     *
+     * @param oid the name of the object
+     * @return an unmodifiable map of the extended attributes, the values
+     *         must not be modified
+     * @throws RadosException a RadosNotFoundException if the object does not
+     *                        exist, or the failure of the listing
+     */
+    public Map<String, byte[]> getExtendedAttributes(String oid) throws RadosException {
+        final long generation;
+        synchronized (this) {
+            final long now = System.nanoTime();
+            final CachedMetadata entry = entries.get(oid);
+            if (entry != null && entry.missing && now - entry.missingExpiry < 0) {
+                hits++;
+                throw notFound(oid);
+            }
+            if (entry != null && entry.xattrs != null && now - entry.xattrsExpiry < 0) {
+                hits++;
+                return entry.xattrs;
+            }
+            misses++;
+            generation = generation(oid);
+        }
+        final Map<String, byte[]> xattrs;
+        try {
+            xattrs = Collections.unmodifiableMap(ioctx.getExtendedAttributesBytes(oid));
+        } catch (RadosNotFoundException e) {
+            cacheMissing(oid, generation);
+            throw e;
+        }
+        synchronized (this) {
+            if (generation == generation(oid)) {
+                final CachedMetadata entry = entry(oid);
+                entry.xattrs = xattrs;
+                entry.xattrsExpiry = System.nanoTime() + ttlNanos;
+            }
+        }
+        return xattrs;
+    }
+
+    /**
+     * Get the value of an extended attribute of an object
+     *
+     * @param oid the name of the object
+     * @param xattrName the name of the extended attribute
+     * @return a copy of the value, with its exact length
+     * @throws RadosException on failure -- common error codes:
+     *                        -2 (ENOENT) : no such object
+     *                        -61 (ENODATA) : no such attribute
+     */
+    public byte[] getExtendedAttributeBytes(String oid, String xattrName) throws RadosException {
+        final byte[] value = getExtendedAttributes(oid).get(xattrName);
+        if (value == null) {
+            RadosBase.throwException(ErrorCode.ENODATA.getErrorCode(),
+                    String.format("Failed to get extended attribute %s on %s", xattrName, oid));
+        }
+        return Arrays.copyOf(value, value.length);
+    }
+
+    /**
+     * Get the value of an extended attribute of an object as a string, up
+     * to its first NUL like IoCTX.getExtendedAttribute
+     *
+     * @param oid the name of the object
+     * @param xattrName the name of the extended attribute
+     * @return the value
+     * @throws RadosException on failure -- common error codes:
+     *                        -2 (ENOENT) : no such object
+     *                        -61 (ENODATA) : no such attribute
+     */
+    public String getExtendedAttribute(String oid, String xattrName) throws RadosException {
+        return Native.toString(getExtendedAttributeBytes(oid, xattrName));
+    }
+
+    /**
+     * Drop what is cached about an object
+     *
+     * @param oid the name of the object
+     */
+    public synchronized void invalidate(String oid) {
+        generations[stripe(oid)]++;
+        entries.remove(oid);
+    }
+
+    /**
+     * Drop everything cached
+     */
+    public synchronized void invalidateAll() {
+        for (int i = 0; i < generations.length; i++) {
+            generations[i]++;
+        }
+        entries.clear();
+    }
+
+    @Override
+    public void objectChanged(String oid) {
+        invalidate(oid);
+    }
+
+    @Override
+    public void contextChanged() {
+        invalidateAll();
+    }
+
+    /**
+     * @return the number of lookups served from the cache
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of lookups which went to the cluster
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of objects cached
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Stop following the modifications of the IoCTX and drop everything
+     * cached.
+     */
+    @Override
+    public void close() {
+        ioctx.removeObjectChangeListener(this);
+        invalidateAll();
+    }
+
+    private void cacheMissing(String oid, long generation) {
+        if (negativeTtlNanos == 0) {
+            return;
+        }
+        synchronized (this) {
+            if (generation == generation(oid)) {
+                final CachedMetadata entry = entry(oid);
+                entry.info = null;
+                entry.xattrs = null;
+                entry.missing = true;
+                entry.missingExpiry = System.nanoTime() + negativeTtlNanos;
+            }
+        }
+    }
+
+    /**
+     * @return the entry of an object, existing as far as it is known
+     */
+    private CachedMetadata entry(String oid) {
+        CachedMetadata entry = entries.get(oid);
+        if (entry == null) {
+            entry = new CachedMetadata();
+            entries.put(oid, entry);
+        }
+        entry.missing = false;
+        return entry;
+    }
+
+    private long generation(String oid) {
+        return generations[stripe(oid)];
+    }
+
+    private static int stripe(String oid) {
+        return oid.hashCode() & (GENERATION_STRIPES - 1);
+    }
+
+    private static RadosNotFoundException notFound(String oid) {
+        return (RadosNotFoundException) RadosBase.createException(ErrorCode.ENOENT.getErrorCode(),
+                String.format("Object %s does not exist (cached)", oid));
+    }
+}
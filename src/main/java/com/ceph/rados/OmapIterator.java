@@ -0,0 +1,99 @@
+/*
+ * RADOS Java - Java bindings for librados
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.ceph.rados;
+
+import java.io.UncheckedIOException;
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import com.ceph.rados.exceptions.RadosException;
+
+/**
+ * Iterates over the omap of an object in key order, fetching one page of
+ * keys and values per round trip.
+ * <p>
+ * Failures while fetching a page are thrown as UncheckedIOException with
+ * the RadosException as cause.
+ */
+public class OmapIterator implements Iterator<Map.Entry<String, byte[]>> {
+
+    private final IoCTX ioctx;
+    private final String oid;
+    private final String filterPrefix;
+    private final int pageSize;
+
+    private Iterator<Map.Entry<String, byte[]>> page = Collections.emptyIterator();
+    private String lastKey;
+    private boolean more = true;
+    private int pageCount;
+
+    OmapIterator(IoCTX ioctx, String oid, String startAfter, String filterPrefix, int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size should be at least one");
+        }
+        this.ioctx = ioctx;
+        this.oid = oid;
+        this.lastKey = startAfter;
+        this.filterPrefix = filterPrefix;
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!page.hasNext() && more) {
+            try {
+                fetchPage();
+            } catch (RadosException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return page.hasNext();
+    }
+
+    @Override
+    public Map.Entry<String, byte[]> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Map.Entry<String, byte[]> entry = page.next();
+        lastKey = entry.getKey();
+        return new AbstractMap.SimpleImmutableEntry<>(entry);
+    }
+
+    /**
+     * @return the number of pages fetched so far
+     */
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    private void fetchPage() throws RadosException {
+        Map<String, byte[]> values;
+        try (ReadOp rop = ioctx.readOpCreate()) {
+            ReadOp.OmapResult result = rop.queueOmapGetVals(lastKey, filterPrefix, pageSize);
+            rop.operate(oid, Rados.OPERATION_NOFLAG);
+            result.raiseExceptionOnError("Failed to list the omap of %s after %s", oid, lastKey);
+            values = result.getValues();
+            more = result.isMore() && !values.isEmpty();
+        }
+        pageCount++;
+        page = values.entrySet().iterator();
+    }
+}
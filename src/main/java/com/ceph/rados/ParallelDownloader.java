@@ -0,0 +1,325 @@
+/*
+ * RADOS Java - Java bindings for librados
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.ceph.rados;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+import com.ceph.rados.exceptions.RadosException;
+
+/**
+ * Downloads a large object as ranges read concurrently.
+ * <p>
+ * The object is cut into parts of a fixed size which are read with
+ * pipelined asynchronous reads, bounded by the number of parts in flight.
+ * Into a direct buffer the parts are read in place. Into a file every part
+ * in flight has a staging buffer, and completed parts are written at their
+ * position in the file by the calling thread, in order, while the next
+ * parts are read.
+ * <p>
+ * The size of the object is taken when a download starts. If the object
+ * shrinks meanwhile, the download ends at the first short part. The first
+ * failed part stops the download and is thrown once the parts in flight
+ * are done.
+ * <p>
+ * A downloader keeps its staging buffers for the next download until it is
+ * closed. Every part is read with a one-shot completion: librados
+ * completions can not be reset, so reusing one would still cost a native
+ * release and create per part. It downloads one object at a time.
+ */
+public class ParallelDownloader implements Closeable {
+
+    public static final int DEFAULT_PART_SIZE = 4 * 1024 * 1024;
+    public static final int DEFAULT_PARTS_IN_FLIGHT = 8;
+
+    /**
+     * The outcome of a download.
+     */
+    public static class DownloadResult {
+        private final long bytes;
+        private final long parts;
+        private final long elapsedNanos;
+
+        DownloadResult(long bytes, long parts, long elapsedNanos) {
+            this.bytes = bytes;
+            this.parts = parts;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * @return the number of bytes downloaded
+         */
+        public long getBytes() { return bytes; }
+
+        /**
+         * @return the number of parts read
+         */
+        public long getParts() { return parts; }
+
+        public long getElapsed(TimeUnit unit) { return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS); }
+
+        public double getBytesPerSecond() {
+            return elapsedNanos == 0 ? 0 : bytes * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+        }
+    }
+
+    /**
+     * A part in flight.
+     */
+    private static class Part {
+        // a new one for every read
+        Completion completion;
+        // the buffer of a part downloaded into a file, kept for reuse
+        ByteBuffer staging;
+        // where the part is read to, staging or a slice of the caller's buffer
+        ByteBuffer buf;
+        long offset;
+        int length;
+
+        void closeCompletion() {
+            if (completion != null) {
+                try {
+                    completion.close();
+                } catch (IOException e) {
+                    // rados_aio_release does not fail
+                }
+                completion = null;
+            }
+        }
+    }
+
+    /**
+     * Does something with a part once it is read.
+     */
+    private interface PartSink {
+        void accept(Part part, int read) throws IOException;
+    }
+
+    private final IoCTX ioctx;
+    private final int partSize;
+    private final int partsInFlight;
+    private final ArrayDeque<Part> idle = new ArrayDeque<>();
+    private final ArrayDeque<Part> inFlight = new ArrayDeque<>();
+
+    /**
+     * @param ioctx the IO context to download from
+     * @param partSize the number of bytes per read
+     * @param partsInFlight the maximum number of reads in flight
+     */
+    public ParallelDownloader(IoCTX ioctx, int partSize, int partsInFlight) {
+        if (partSize < 1) {
+            throw new IllegalArgumentException("Part size should be at least one");
+        }
+        if (partsInFlight < 1) {
+            throw new IllegalArgumentException("There should be at least one part in flight");
+        }
+        this.ioctx = ioctx;
+        this.partSize = partSize;
+        this.partsInFlight = partsInFlight;
+    }
+
+    /**
+     * Read a range of an object straight into a direct buffer, up to the
+     * remaining bytes of the buffer or the end of the object. The position
+     * of the buffer is advanced by the number of bytes read.
+     *
+     * @param oid the object to read
+     * @param offset the offset in the object to start at
+     * @param dst a direct ByteBuffer
+     * @return the number of bytes read and the throughput
+     * @throws IOException a RadosException if the object or a part could not
+     *                     be read
+     */
+    public DownloadResult download(String oid, long offset, final ByteBuffer dst) throws IOException {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Offset shouldn't be a negative value");
+        }
+        Buffers.writablePointer(dst);
+        final long start = System.nanoTime();
+        final long length = Math.min(dst.remaining(), Math.max(0, ioctx.stat(oid).getSize() - offset));
+        final int base = dst.position();
+        final long[] result = download(oid, offset, length, null, dst, offset - base);
+        dst.position(base + (int) result[0]);
+        return new DownloadResult(result[0], result[1], System.nanoTime() - start);
+    }
+
+    /**
+     * Download a whole object into a file.
+     *
+     * @param oid the object to read
+     * @param channel the file to write to
+     * @param position the position in the file of the first byte of the object
+     * @return the number of bytes downloaded and the throughput
+     * @throws IOException if the file could not be written, or a
+     *                     RadosException if the object or a part could not be
+     *                     read
+     */
+    public DownloadResult download(String oid, final FileChannel channel, final long position) throws IOException {
+        if (position < 0) {
+            throw new IllegalArgumentException("Position shouldn't be a negative value");
+        }
+        final long start = System.nanoTime();
+        final long size = ioctx.stat(oid).getSize();
+        final long[] result = download(oid, 0, size, new PartSink() {
+            @Override
+            public void accept(Part part, int read) throws IOException {
+                final ByteBuffer buf = part.buf;
+                buf.position(0).limit(read);
+                long at = position + part.offset;
+                while (buf.hasRemaining()) {
+                    at += channel.write(buf, at);
+                }
+            }
+        }, null, 0);
+        return new DownloadResult(result[0], result[1], System.nanoTime() - start);
+    }
+
+    /**
+     * Read the parts of a range of an object.
+     *
+     * @param sink what to do with each part read, or null for nothing
+     * @param dst the buffer to read into in place, or null to use staging
+     *            buffers
+     * @param dstShift the offset in the object minus the index in dst
+     * @return the number of contiguous bytes read and the number of parts
+     */
+    private long[] download(String oid, long offset, long length, PartSink sink, ByteBuffer dst, long dstShift)
+            throws IOException {
+        final long end = offset + length;
+        long next = offset;
+        long bytes = 0;
+        long parts = 0;
+        boolean shortPart = false;
+        IOException failure = null;
+        try {
+            while (next < end && failure == null && !shortPart) {
+                final Part part = part();
+                part.offset = next;
+                part.length = (int) Math.min(partSize, end - next);
+                if (dst == null) {
+                    if (part.staging == null) {
+                        part.staging = ByteBuffer.allocateDirect(partSize);
+                    }
+                    part.staging.clear().limit(part.length);
+                    part.buf = part.staging;
+                } else {
+                    final ByteBuffer slice = dst.duplicate();
+                    final int index = (int) (next - dstShift);
+                    slice.limit(index + part.length).position(index);
+                    part.buf = slice;
+                }
+                try {
+                    ioctx.aioRead(oid, part.completion, part.buf, part.offset);
+                } catch (RadosException e) {
+                    part.closeCompletion();
+                    idle.add(part);
+                    failure = e;
+                    break;
+                }
+                inFlight.add(part);
+                next += part.length;
+                while (inFlight.size() >= partsInFlight && failure == null && !shortPart) {
+                    final Part done = inFlight.poll();
+                    try {
+                        final int read = complete(oid, done, sink);
+                        bytes += read;
+                        parts++;
+                        shortPart = read < done.length;
+                    } catch (IOException e) {
+                        failure = e;
+                    }
+                }
+            }
+        } finally {
+            // wait for every read in flight, librados still writes into the buffers
+            Part done;
+            while ((done = inFlight.poll()) != null) {
+                try {
+                    final boolean wanted = failure == null && !shortPart;
+                    final int read = complete(oid, done, wanted ? sink : null);
+                    if (wanted) {
+                        bytes += read;
+                        parts++;
+                        shortPart = read < done.length;
+                    }
+                } catch (IOException e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return new long[] { bytes, parts };
+    }
+
+    /**
+     * Wait for a part, hand it to the sink and make it idle.
+     *
+     * @param sink the sink, or null to only wait
+     * @return the number of bytes read
+     */
+    private int complete(String oid, Part part, PartSink sink) throws IOException {
+        try {
+            part.completion.waitForComplete();
+            final int read = part.completion.getReturnValue();
+            if (read < 0) {
+                throw RadosBase.createException(read,
+                        String.format("Failed to read %s bytes at offset %s of %s", part.length, part.offset, oid));
+            }
+            if (sink != null) {
+                sink.accept(part, read);
+            }
+            return read;
+        } finally {
+            part.closeCompletion();
+            part.buf = null;
+            idle.add(part);
+        }
+    }
+
+    /**
+     * @return an idle part with a new completion
+     */
+    private Part part() throws RadosException {
+        Part part = idle.poll();
+        if (part == null) {
+            part = new Part();
+        }
+        try {
+            part.completion = new Completion(false, false);
+        } catch (RadosException e) {
+            idle.add(part);
+            throw e;
+        }
+        return part;
+    }
+
+    /**
+     * Release the staging buffers kept for reuse.
+     */
+    @Override
+    public void close() {
+        idle.clear();
+    }
+}
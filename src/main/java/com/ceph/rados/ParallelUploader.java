@@ -0,0 +1,395 @@
+/*
+ * RADOS Java - Java bindings for librados
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.ceph.rados;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.ceph.rados.exceptions.RadosException;
+
+/**
+ * Uploads a large object as parts written concurrently at their offsets.
+ * <p>
+ * The source is cut into parts of a fixed size which are written with
+ * pipelined asynchronous writes, bounded by the number of parts in flight.
+ * Sources can be longer than an int: files and streams are read one part
+ * at a time. librados copies the data of a write, so a single staging
+ * buffer is enough however many parts are in flight.
+ * <p>
+ * Once all parts are written, the size of the object and its extended
+ * attributes are set by one WriteOp, so a smaller previous version is not
+ * left behind the new content. If a part fails no further parts are
+ * written, the object is not finalized and the failure is thrown.
+ * <p>
+ * An uploader keeps its completions for the next upload until it is closed.
+ * It uploads one object at a time.
+ */
+public class ParallelUploader implements Closeable {
+
+    public static final int DEFAULT_PART_SIZE = 4 * 1024 * 1024;
+    public static final int DEFAULT_PARTS_IN_FLIGHT = 8;
+
+    /**
+     * The outcome of an upload.
+     */
+    public static class UploadResult {
+        private final long bytes;
+        private final long parts;
+        private final long elapsedNanos;
+
+        UploadResult(long bytes, long parts, long elapsedNanos) {
+            this.bytes = bytes;
+            this.parts = parts;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * @return the size of the uploaded object
+         */
+        public long getBytes() { return bytes; }
+
+        /**
+         * @return the number of parts written
+         */
+        public long getParts() { return parts; }
+
+        public long getElapsed(TimeUnit unit) { return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS); }
+
+        public double getBytesPerSecond() {
+            return elapsedNanos == 0 ? 0 : bytes * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+        }
+    }
+
+    /**
+     * Provides the content part by part.
+     */
+    private interface PartSource {
+        /**
+         * @return the next part, shorter than a part only at the end of the
+         *         source, or null at the end
+         */
+        ByteBuffer next() throws IOException;
+    }
+
+    /**
+     * A pooled completion which carries the part it is used for.
+     */
+    private class PartCompletion extends Completion {
+        long offset;
+        int length;
+
+        PartCompletion() throws RadosException {
+            super(true, false);
+        }
+
+        @Override
+        public void onComplete() {
+            final int returnValue = getReturnValue();
+            final long offset = this.offset;
+            final int length = this.length;
+            completions.release(this);
+            finished(returnValue < 0
+                    ? createException(returnValue, String.format("Failed to write %s bytes at offset %s of %s", length, offset, oid))
+                    : null);
+        }
+    }
+
+    private final IoCTX ioctx;
+    private final int partSize;
+    private final int partsInFlight;
+    private final CompletionHandlePool completions;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition windowChanged = lock.newCondition();
+    // Guarded by lock
+    private int inFlight;
+    private RadosException failure;
+
+    private ByteBuffer staging;
+    private volatile String oid;
+
+    /**
+     * @param ioctx the IO context to upload to
+     * @param partSize the number of bytes per write
+     * @param partsInFlight the maximum number of writes in flight
+     */
+    public ParallelUploader(IoCTX ioctx, int partSize, int partsInFlight) {
+        if (partSize < 1) {
+            throw new IllegalArgumentException("Part size should be at least one");
+        }
+        if (partsInFlight < 1) {
+            throw new IllegalArgumentException("There should be at least one part in flight");
+        }
+        this.ioctx = ioctx;
+        this.partSize = partSize;
+        this.partsInFlight = partsInFlight;
+        this.completions = new CompletionHandlePool(partsInFlight, new CompletionHandlePool.Factory() {
+            @Override
+            public Completion create() throws RadosException {
+                return new PartCompletion();
+            }
+        });
+    }
+
+    /**
+     * Upload the remaining bytes of a buffer. A direct buffer is written
+     * without copying it first. The position of the buffer is advanced to
+     * its limit.
+     *
+     * @param oid the object to write, its content is replaced
+     * @param src the content
+     * @param xattrs extended attributes to set on the object, may be empty
+     * @return the size of the object and the throughput
+     * @throws IOException a RadosException if a part or the finalization
+     *                     failed
+     * @throws InterruptedException if interrupted while waiting for the window.
+     *                              Parts in flight are waited for first.
+     */
+    public UploadResult upload(String oid, final ByteBuffer src, Map<String, byte[]> xattrs)
+            throws IOException, InterruptedException {
+        final boolean direct = src.isDirect();
+        return upload(oid, new PartSource() {
+            @Override
+            public ByteBuffer next() {
+                if (!src.hasRemaining()) {
+                    return null;
+                }
+                final ByteBuffer part = src.duplicate();
+                part.limit(part.position() + Math.min(partSize, part.remaining()));
+                src.position(part.limit());
+                if (direct) {
+                    return part;
+                }
+                final ByteBuffer buf = staging();
+                buf.put(part);
+                buf.flip();
+                return buf;
+            }
+        }, xattrs);
+    }
+
+    /**
+     * Upload a file.
+     *
+     * @param oid the object to write, its content is replaced
+     * @param file the file to upload
+     * @param xattrs extended attributes to set on the object, may be empty
+     * @return the size of the object and the throughput
+     * @throws IOException if the file could not be read, or a RadosException
+     *                     if a part or the finalization failed
+     * @throws InterruptedException if interrupted while waiting for the window
+     */
+    public UploadResult upload(String oid, Path file, Map<String, byte[]> xattrs) throws IOException, InterruptedException {
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return upload(oid, new PartSource() {
+                @Override
+                public ByteBuffer next() throws IOException {
+                    final ByteBuffer buf = staging();
+                    while (buf.hasRemaining() && channel.read(buf) >= 0) {
+                        // read until the part is full or the file ends
+                    }
+                    buf.flip();
+                    return buf.hasRemaining() ? buf : null;
+                }
+            }, xattrs);
+        }
+    }
+
+    /**
+     * Upload everything a stream provides. The stream is not closed.
+     *
+     * @param oid the object to write, its content is replaced
+     * @param in the content
+     * @param xattrs extended attributes to set on the object, may be empty
+     * @return the size of the object and the throughput
+     * @throws IOException if the stream could not be read, or a
+     *                     RadosException if a part or the finalization failed
+     * @throws InterruptedException if interrupted while waiting for the window
+     */
+    public UploadResult upload(String oid, final InputStream in, Map<String, byte[]> xattrs) throws IOException, InterruptedException {
+        final byte[] chunk = new byte[Math.min(partSize, 64 * 1024)];
+        return upload(oid, new PartSource() {
+            @Override
+            public ByteBuffer next() throws IOException {
+                final ByteBuffer buf = staging();
+                int n;
+                while (buf.hasRemaining() && (n = in.read(chunk, 0, Math.min(chunk.length, buf.remaining()))) >= 0) {
+                    buf.put(chunk, 0, n);
+                }
+                buf.flip();
+                return buf.hasRemaining() ? buf : null;
+            }
+        }, xattrs);
+    }
+
+    /**
+     * @return the cleared staging buffer, librados has copied what was in it
+     */
+    private ByteBuffer staging() {
+        if (staging == null) {
+            staging = ByteBuffer.allocateDirect(partSize);
+        }
+        staging.clear();
+        return staging;
+    }
+
+    private UploadResult upload(String oid, PartSource source, Map<String, byte[]> xattrs)
+            throws IOException, InterruptedException {
+        final long start = System.nanoTime();
+        this.oid = oid;
+        lock.lock();
+        try {
+            failure = null;
+        } finally {
+            lock.unlock();
+        }
+
+        long offset = 0;
+        long parts = 0;
+        try {
+            ByteBuffer part;
+            while ((part = source.next()) != null) {
+                final int length = part.remaining();
+                if (!submit(part, offset)) {
+                    break;
+                }
+                offset += length;
+                parts++;
+            }
+        } finally {
+            awaitEmptyWindow();
+        }
+
+        lock.lock();
+        try {
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        finalizeObject(oid, offset, xattrs == null ? Collections.<String, byte[]>emptyMap() : xattrs);
+        return new UploadResult(offset, parts, System.nanoTime() - start);
+    }
+
+    /**
+     * Set the size and extended attributes of the object at once.
+     */
+    private void finalizeObject(String oid, long size, Map<String, byte[]> xattrs) throws RadosException {
+        try (WriteOp op = ioctx.writeOpCreate()) {
+            op.queueCreate(false);
+            op.queueTruncate(size);
+            for (Map.Entry<String, byte[]> xattr : xattrs.entrySet()) {
+                op.queueSetXattr(xattr.getKey(), xattr.getValue());
+            }
+            op.operate(oid, Rados.OPERATION_NOFLAG);
+        }
+    }
+
+    /**
+     * Start writing a part once the window has room.
+     *
+     * @return false if an earlier part failed
+     */
+    private boolean submit(ByteBuffer part, long offset) throws InterruptedException {
+        lock.lock();
+        try {
+            while (inFlight >= partsInFlight && failure == null) {
+                windowChanged.await();
+            }
+            if (failure != null) {
+                return false;
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+
+        final int length = part.remaining();
+        PartCompletion completion;
+        try {
+            completion = (PartCompletion) completions.acquire();
+        } catch (RadosException e) {
+            finished(e);
+            return false;
+        }
+        completion.offset = offset;
+        completion.length = length;
+        try {
+            ioctx.aioWrite(oid, completion, part, offset);
+        } catch (RadosException e) {
+            completions.release(completion);
+            finished(e);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Record the outcome of a part and make room in the window.
+     */
+    private void finished(RadosException e) {
+        lock.lock();
+        try {
+            if (e != null && failure == null) {
+                failure = e;
+            }
+            inFlight--;
+            windowChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void awaitEmptyWindow() throws InterruptedException {
+        boolean interrupted = false;
+        lock.lock();
+        try {
+            while (inFlight > 0) {
+                try {
+                    windowChanged.await();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (interrupted) {
+            throw new InterruptedException();
+        }
+    }
+
+    /**
+     * Release the completions kept for reuse.
+     */
+    @Override
+    public void close() {
+        completions.close();
+    }
+}
@@ -34,7 +34,7 @@ import static com.ceph.rados.Library.rados;
 
 public class Rados extends RadosBase {
     /**
-     * flags for ReadOp.operate and (maybe later) WriteOp.operate
+     * flags for ReadOp.operate and WriteOp.operate
      * See librados operate flags for more information
      */
     public static final int OPERATION_NOFLAG             = 0;
@@ -46,6 +46,21 @@ public class Rados extends RadosBase {
     public static final int OPERATION_IGNORE_OVERLAY     = 32;
     public static final int OPERATION_FULL_TRY           = 64;
 
+    /**
+     * comparison operators for ReadOp.queueCmpXattr
+     */
+    public static final byte CMPXATTR_OP_EQ  = 1;
+    public static final byte CMPXATTR_OP_NE  = 2;
+    public static final byte CMPXATTR_OP_GT  = 3;
+    public static final byte CMPXATTR_OP_GTE = 4;
+    public static final byte CMPXATTR_OP_LT  = 5;
+    public static final byte CMPXATTR_OP_LTE = 6;
+
+    /**
+     * Namespace which makes object listings of an IoCTX cover all namespaces
+     */
+    public static final String ALL_NAMESPACES = "\001";
+
     protected Pointer clusterPtr;
     private boolean connected;
 
@@ -390,6 +405,22 @@ public class Rados extends RadosBase {
         return rados.rados_get_instance_id(this.clusterPtr);
     }
 
+    /**
+     * Wait for the watch callbacks in flight to return, e.g. before
+     * shutting down after the watches were closed
+     *
+     * @throws RadosException
+     */
+    public void watchFlush() throws RadosException {
+        this.verifyConnected(true);
+        handleReturnCode(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return rados.rados_watch_flush(clusterPtr);
+            }
+        }, "Failed to flush the watch callbacks");
+    }
+
     /**
      * Get the librados version
      *
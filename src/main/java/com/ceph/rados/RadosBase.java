@@ -28,8 +28,15 @@ import com.ceph.rados.exceptions.RadosPermissionException;
 import com.ceph.rados.exceptions.RadosReadOnlyException;
 import com.ceph.rados.exceptions.RadosTimeoutException;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.Callable;
 
+import com.sun.jna.Pointer;
+import com.sun.jna.ptr.LongByReference;
+import com.sun.jna.ptr.PointerByReference;
+
 /**
  * Base class for doing all the exception handling.
  */
@@ -64,33 +71,136 @@ public class RadosBase {
         return result;
     }
 
+    private static final int XATTR_SCRATCH_SIZE = 4096;
+    private static final int XATTR_SCRATCH_MAX_SIZE = 64 * 1024;
+
+    // reused by the extended attribute getters instead of a new buffer per call
+    private static final ThreadLocal<byte[]> xattrScratch = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[XATTR_SCRATCH_SIZE];
+        }
+    };
+
+    /**
+     * Reads an extended attribute into a buffer like rados_getxattr: returns
+     * the length of the value, -ERANGE if it does not fit or another
+     * negative error code.
+     */
+    protected interface XattrGetter {
+        int get(byte[] buf, long len);
+    }
+
+    /**
+     * Steps through the extended attributes of an object like
+     * rados_getxattrs_next.
+     */
+    protected interface XattrIterator {
+        int next(PointerByReference name, PointerByReference value, LongByReference len);
+    }
+
+    /**
+     * Get the value of an extended attribute through a thread local scratch
+     * buffer. A value which does not fit is taken from the listing of all
+     * extended attributes, which carries the exact lengths, and the scratch
+     * buffer of the thread grows to fit it next time, up to 64 KiB.
+     *
+     * @param getter reads the value
+     * @param listAll lists all extended attributes of the object
+     * @param xattrName the name of the extended attribute
+     * @return the value with its exact length
+     * @throws RadosException if the value can not be read
+     */
+    protected final byte[] getXattr(final XattrGetter getter, Callable<Map<String, byte[]>> listAll,
+            String xattrName, String errorMsg, Object... errorMsgArgs) throws RadosException {
+        final byte[] scratch = xattrScratch.get();
+        final int r = call(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return getter.get(scratch, scratch.length);
+            }
+        });
+        if (r >= 0) {
+            return Arrays.copyOf(scratch, r);
+        }
+        if (r != ErrorCode.ERANGE.getErrorCode()) {
+            throwException(r, String.format(errorMsg, errorMsgArgs));
+        }
+
+        final Map<String, byte[]> xattrs;
+        try {
+            xattrs = listAll.call();
+        } catch (RadosException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RadosException(String.format(errorMsg, errorMsgArgs), e);
+        }
+        final byte[] value = xattrs.get(xattrName);
+        if (value == null) {
+            // removed in between
+            throwException(ErrorCode.ENODATA.getErrorCode(), String.format(errorMsg, errorMsgArgs));
+        }
+        if (value.length <= XATTR_SCRATCH_MAX_SIZE) {
+            xattrScratch.set(new byte[Math.max(scratch.length, Integer.highestOneBit(value.length - 1) << 1)]);
+        }
+        return value;
+    }
+
+    /**
+     * Collect the extended attributes of an iterator with the exact lengths
+     * of their values.
+     */
+    protected static Map<String, byte[]> readXattrs(XattrIterator iterator) {
+        final Map<String, byte[]> xattrs = new HashMap<>();
+        final PointerByReference name = new PointerByReference();
+        final PointerByReference value = new PointerByReference();
+        final LongByReference len = new LongByReference();
+        while (iterator.next(name, value, len) == 0 && name.getValue() != null) {
+            final Pointer data = value.getValue();
+            final int length = (int) len.getValue();
+            xattrs.put(name.getValue().getString(0), data == null || length == 0 ? new byte[0] : data.getByteArray(0, length));
+        }
+        return xattrs;
+    }
+
     public static void throwException(int errorCode, String msg) throws RadosException {
+        throw createException(errorCode, msg);
+    }
+
+    /**
+     * Map a native error code to the matching RadosException without throwing it.
+     *
+     * @param errorCode the negative return value of a rados_ call
+     * @param msg the error message
+     * @return the exception throwException would throw
+     */
+    public static RadosException createException(int errorCode, String msg) {
         String exceptionMessage;
         ErrorCode errorCodeEnum = ErrorCode.getEnum(errorCode);
         if (errorCodeEnum != null) {
             exceptionMessage = String.format("%s; %s: %s", msg, errorCodeEnum.name(), errorCodeEnum.getErrorMessage());
             switch (errorCodeEnum) {
                 case EPERM:
-                    throw new RadosPermissionException(exceptionMessage, errorCode);
+                    return new RadosPermissionException(exceptionMessage, errorCode);
                 case ENOENT:
-                    throw new RadosNotFoundException(exceptionMessage, errorCode);
+                    return new RadosNotFoundException(exceptionMessage, errorCode);
                 case EINVAL:
-                    throw new RadosInvalidArgumentException(exceptionMessage, errorCode);
+                    return new RadosInvalidArgumentException(exceptionMessage, errorCode);
                 case EROFS:
-                    throw new RadosReadOnlyException(exceptionMessage, errorCode);
+                    return new RadosReadOnlyException(exceptionMessage, errorCode);
                 case EDOM:
-                    throw new RadosArgumentOutOfDomainException(exceptionMessage, errorCode);
+                    return new RadosArgumentOutOfDomainException(exceptionMessage, errorCode);
                 case EISCONN:
-                    throw new RadosAlreadyConnectedException(exceptionMessage, errorCode);
+                    return new RadosAlreadyConnectedException(exceptionMessage, errorCode);
                 case ETIMEDOUT:
-                    throw new RadosTimeoutException(exceptionMessage, errorCode);
+                    return new RadosTimeoutException(exceptionMessage, errorCode);
                 case EINPROGRESS:
-                    throw new RadosOperationInProgressException(exceptionMessage, errorCode);
+                    return new RadosOperationInProgressException(exceptionMessage, errorCode);
             }
         } else {
             exceptionMessage = String.format("%s; error code: %d", msg, errorCode);
         }
 
-        throw new RadosException(exceptionMessage, errorCode);
+        return new RadosException(exceptionMessage, errorCode);
     }
 }
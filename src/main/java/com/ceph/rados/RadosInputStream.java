@@ -0,0 +1,268 @@
+/*
+ * RADOS Java - Java bindings for librados
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.ceph.rados;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+import com.ceph.rados.exceptions.RadosException;
+
+/**
+ * Reads an object sequentially, keeping asynchronous reads of the next
+ * chunks in flight while the current one is consumed.
+ * <p>
+ * The object is read in chunks which start at multiples of the chunk size,
+ * so with the chunk size set to the object or stripe size of the data no
+ * read crosses a boundary. A stream holds readAhead + 1 direct buffers of
+ * the chunk size.
+ * <p>
+ * The size of the object is taken when the stream is opened. A RadosInputStream
+ * is not thread safe.
+ */
+public class RadosInputStream extends InputStream {
+
+    public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+    public static final int DEFAULT_READ_AHEAD = 2;
+
+    /**
+     * A buffer with the read filling it.
+     */
+    private static class Chunk {
+        final ByteBuffer buf;
+        Completion completion;
+        long offset;
+
+        Chunk(int size) {
+            this.buf = ByteBuffer.allocateDirect(size);
+        }
+    }
+
+    private final IoCTX ioctx;
+    private final String oid;
+    private final int chunkSize;
+    private final ArrayDeque<Chunk> inFlight = new ArrayDeque<>();
+    private final ArrayDeque<Chunk> spare = new ArrayDeque<>();
+
+    private long size;
+    private long nextOffset;
+    // the chunk being consumed, its buffer position is the read position
+    private Chunk current;
+    private boolean closed;
+
+    /**
+     * @param ioctx the IO context of the pool
+     * @param oid the object to read
+     * @param chunkSize the number of bytes per read
+     * @param readAhead the number of chunks read ahead of the current one
+     * @throws RadosException if the object can not be read
+     */
+    RadosInputStream(IoCTX ioctx, String oid, int chunkSize, int readAhead) throws RadosException {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size should be at least one");
+        }
+        if (readAhead < 0) {
+            throw new IllegalArgumentException("Read ahead shouldn't be a negative value");
+        }
+        this.ioctx = ioctx;
+        this.oid = oid;
+        this.size = ioctx.stat(oid).getSize();
+        this.chunkSize = (int) Math.min(chunkSize, Math.max(size, 1));
+        for (int i = 0; i <= readAhead; i++) {
+            spare.add(new Chunk(this.chunkSize));
+        }
+        try {
+            fill();
+        } catch (RadosException | RuntimeException e) {
+            // closes the completions of the reads already submitted
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureAvailable()) {
+            return -1;
+        }
+        return current.buf.get() & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureAvailable()) {
+            return -1;
+        }
+        final int n = Math.min(len, current.buf.remaining());
+        current.buf.get(b, off, n);
+        return n;
+    }
+
+    /**
+     * Skip within the current chunk, or else drop the chunks in flight and
+     * continue reading at the target.
+     */
+    @Override
+    public long skip(long n) throws IOException {
+        ensureOpen();
+        if (n <= 0) {
+            return 0;
+        }
+        final long position = getPosition();
+        final long target = Math.min(size, position + n);
+        if (current != null && target - position <= current.buf.remaining()) {
+            current.buf.position(current.buf.position() + (int) (target - position));
+            return target - position;
+        }
+        drain();
+        if (target == size) {
+            nextOffset = size;
+            return target - position;
+        }
+        nextOffset = target - target % chunkSize;
+        fill();
+        if (ensureAvailable()) {
+            current.buf.position((int) (target - current.offset));
+        }
+        return target - position;
+    }
+
+    @Override
+    public int available() throws IOException {
+        ensureOpen();
+        return current == null ? 0 : current.buf.remaining();
+    }
+
+    /**
+     * @return the offset in the object of the next byte read
+     */
+    public long getPosition() {
+        if (current == null) {
+            return inFlight.isEmpty() ? Math.min(nextOffset, size) : inFlight.peek().offset;
+        }
+        return current.offset + current.buf.position();
+    }
+
+    /**
+     * Wait for the reads in flight and drop the buffers.
+     */
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            drain();
+            spare.clear();
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    /**
+     * Move on to the next chunk when the current one is consumed.
+     *
+     * @return false at the end of the object
+     */
+    private boolean ensureAvailable() throws IOException {
+        ensureOpen();
+        while (current == null || !current.buf.hasRemaining()) {
+            if (current != null) {
+                spare.add(current);
+                current = null;
+                fill();
+            }
+            final Chunk next = inFlight.poll();
+            if (next == null) {
+                return false;
+            }
+            next.completion.waitForComplete();
+            final int r = next.completion.getReturnValue();
+            if (r < 0) {
+                spare.add(next);
+                throw RadosBase.createException(r, String.format("Failed to read %s at offset %s", oid, next.offset));
+            }
+            final int requested = next.buf.limit();
+            next.buf.position(0).limit(r);
+            current = next;
+            if (r < requested) {
+                // the object shrank since it was opened
+                size = next.offset + r;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Start reads into the spare buffers, up to the end of the object.
+     */
+    private void fill() throws RadosException {
+        while (!spare.isEmpty() && nextOffset < size) {
+            final Chunk chunk = spare.peek();
+            if (chunk.completion == null) {
+                chunk.completion = new Completion(false, false);
+            } else {
+                chunk.completion.recycle();
+            }
+            chunk.offset = nextOffset;
+            chunk.buf.clear().limit((int) Math.min(chunkSize, size - nextOffset));
+            ioctx.aioRead(oid, chunk.completion, chunk.buf, nextOffset);
+            spare.poll();
+            inFlight.add(chunk);
+            nextOffset += chunk.buf.limit();
+        }
+    }
+
+    /**
+     * Wait for the reads in flight and make all buffers spare.
+     */
+    private void drain() {
+        if (current != null) {
+            spare.add(current);
+            current = null;
+        }
+        Chunk chunk;
+        while ((chunk = inFlight.poll()) != null) {
+            try {
+                chunk.completion.waitForComplete();
+            } catch (RadosException e) {
+                // rados_aio_wait_for_complete does not fail
+            }
+            spare.add(chunk);
+        }
+        if (closed) {
+            for (Chunk c : spare) {
+                if (c.completion != null) {
+                    try {
+                        c.completion.close();
+                    } catch (IOException e) {
+                        // rados_aio_release does not fail
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * RADOS Java - Java bindings for librados
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.ceph.rados;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import com.ceph.rados.exceptions.RadosException;
+import com.ceph.rados.exceptions.RadosNotFoundException;
+
+/**
+ * A SeekableByteChannel over an object, for code which reads and writes at
+ * arbitrary positions.
+ * <p>
+ * Reads smaller than a block are served from a small LRU cache of aligned
+ * blocks, so many small reads near the same offset, like those of footer
+ * and index lookups in columnar files, take one round trip. Larger reads
+ * go to the object directly, straight into the buffer if it is direct.
+ * Writes and truncate() drop the cached blocks they touch.
+ * <p>
+ * The size of the object is taken when the channel is opened and only
+ * follows the writes made through the channel, as does the cache. A
+ * missing object is opened as empty and created by the first write.
+ */
+public class RadosObjectChannel implements SeekableByteChannel {
+
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+    public static final int DEFAULT_CACHED_BLOCKS = 16;
+
+    private final IoCTX ioctx;
+    private final String oid;
+    private final int blockSize;
+    private final int cachedBlocks;
+    // block index to block, least recently used first
+    private final LinkedHashMap<Long, ByteBuffer> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long position;
+    private long size;
+    private long cacheHits;
+    private long cacheMisses;
+    private boolean open = true;
+
+    /**
+     * @param ioctx the IO context of the pool
+     * @param oid the object
+     * @param blockSize the size of a cached block
+     * @param cachedBlocks the number of blocks cached, 0 to disable the cache
+     * @throws RadosException if the object can not be stat'ed
+     */
+    RadosObjectChannel(IoCTX ioctx, String oid, int blockSize, int cachedBlocks) throws RadosException {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size should be at least one");
+        }
+        if (cachedBlocks < 0) {
+            throw new IllegalArgumentException("The number of cached blocks shouldn't be a negative value");
+        }
+        this.ioctx = ioctx;
+        this.oid = oid;
+        this.blockSize = blockSize;
+        this.cachedBlocks = cachedBlocks;
+        try {
+            this.size = ioctx.stat(oid).getSize();
+        } catch (RadosNotFoundException e) {
+            this.size = 0;
+        }
+    }
+
+    @Override
+    public synchronized int read(ByteBuffer dst) throws IOException {
+        ensureOpen();
+        if (position >= size) {
+            return -1;
+        }
+        final int want = (int) Math.min(dst.remaining(), size - position);
+        if (want == 0) {
+            return 0;
+        }
+        int n;
+        if (want >= blockSize || cachedBlocks == 0) {
+            n = readDirect(dst, want);
+        } else {
+            n = readCached(dst, want);
+        }
+        if (n == 0) {
+            // the object shrank since it was opened
+            size = position;
+            return -1;
+        }
+        position += n;
+        return n;
+    }
+
+    private int readDirect(ByteBuffer dst, int want) throws RadosException {
+        if (dst.isDirect()) {
+            final ByteBuffer target = dst.duplicate();
+            target.limit(target.position() + want);
+            final int n = ioctx.read(oid, position, target);
+            dst.position(dst.position() + n);
+            return n;
+        }
+        final byte[] buf = new byte[want];
+        final int n = ioctx.read(oid, want, position, buf);
+        dst.put(buf, 0, n);
+        return n;
+    }
+
+    private int readCached(ByteBuffer dst, int want) throws RadosException {
+        int n = 0;
+        while (n < want) {
+            final long offset = position + n;
+            final ByteBuffer block = block(offset / blockSize);
+            final int inBlock = (int) (offset % blockSize);
+            if (inBlock >= block.limit()) {
+                break;
+            }
+            final int count = Math.min(want - n, block.limit() - inBlock);
+            final ByteBuffer src = block.duplicate();
+            src.position(inBlock).limit(inBlock + count);
+            dst.put(src);
+            n += count;
+        }
+        return n;
+    }
+
+    /**
+     * Get a block from the cache, reading it into the least recently used
+     * block if it is not cached.
+     */
+    private ByteBuffer block(long index) throws RadosException {
+        ByteBuffer block = cache.get(index);
+        if (block != null) {
+            cacheHits++;
+            return block;
+        }
+        cacheMisses++;
+        if (cache.size() >= cachedBlocks) {
+            final Iterator<ByteBuffer> eldest = cache.values().iterator();
+            block = eldest.next();
+            eldest.remove();
+            block.clear();
+        } else {
+            block = ByteBuffer.allocateDirect(blockSize);
+        }
+        ioctx.read(oid, index * blockSize, block);
+        block.flip();
+        cache.put(index, block);
+        return block;
+    }
+
+    @Override
+    public synchronized int write(ByteBuffer src) throws IOException {
+        ensureOpen();
+        final int n = src.remaining();
+        if (n == 0) {
+            return 0;
+        }
+        if (src.isDirect()) {
+            ioctx.write(oid, src, position);
+        } else {
+            final byte[] buf = new byte[n];
+            src.get(buf);
+            ioctx.write(oid, buf, position);
+        }
+        // writing past the end also zero fills the gap
+        final long from = Math.min(position, size);
+        invalidate(from, position + n);
+        position += n;
+        size = Math.max(size, position);
+        return n;
+    }
+
+    @Override
+    public synchronized long position() throws IOException {
+        ensureOpen();
+        return position;
+    }
+
+    @Override
+    public synchronized SeekableByteChannel position(long newPosition) throws IOException {
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("Position shouldn't be a negative value");
+        }
+        ensureOpen();
+        position = newPosition;
+        return this;
+    }
+
+    @Override
+    public synchronized long size() throws IOException {
+        ensureOpen();
+        return size;
+    }
+
+    @Override
+    public synchronized SeekableByteChannel truncate(long newSize) throws IOException {
+        if (newSize < 0) {
+            throw new IllegalArgumentException("Size shouldn't be a negative value");
+        }
+        ensureOpen();
+        if (newSize < size) {
+            ioctx.truncate(oid, newSize);
+            invalidate(newSize, size);
+            size = newSize;
+        }
+        position = Math.min(position, newSize);
+        return this;
+    }
+
+    /**
+     * Drop the cached blocks overlapping a range of the object.
+     */
+    private void invalidate(long from, long to) {
+        if (cache.isEmpty() || from >= to) {
+            return;
+        }
+        final long first = from / blockSize;
+        final long last = (to - 1) / blockSize;
+        cache.keySet().removeIf(index -> index >= first && index <= last);
+    }
+
+    /**
+     * @return the number of block reads served from the cache
+     */
+    public synchronized long getCacheHits() {
+        return cacheHits;
+    }
+
+    /**
+     * @return the number of blocks read from the object into the cache
+     */
+    public synchronized long getCacheMisses() {
+        return cacheMisses;
+    }
+
+    @Override
+    public synchronized boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public synchronized void close() {
+        open = false;
+        cache.clear();
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * RADOS Java - Java bindings for librados
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.ceph.rados;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+import com.ceph.rados.exceptions.RadosException;
+
+/**
+ * Writes an object sequentially, buffering a chunk at a time and keeping
+ * several asynchronous writes of full chunks in flight.
+ * <p>
+ * The stream replaces the content of the object: the first chunk is written
+ * with write_full and the following ones at their offsets, which librados
+ * applies in order. Chunks end at multiples of the chunk size, also after
+ * flush() wrote out a partial one.
+ * <p>
+ * In a pool which requires alignment, flush() only writes out whole
+ * multiples of the alignment and keeps the rest buffered until more bytes
+ * arrive or close() writes it, so every write but the last one is aligned.
+ * IoCTX.openOutputStream rounds the chunk size up to the alignment.
+ * <p>
+ * A failed write is thrown from the next write(), flush() or close(). The
+ * object is only complete once close() returned. A RadosOutputStream is not
+ * thread safe.
+ */
+public class RadosOutputStream extends OutputStream {
+
+    public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 4;
+
+    private final IoCTX ioctx;
+    private final String oid;
+    private final int chunkSize;
+    private final int alignment;
+    private final int maxInFlight;
+    // librados copies the data of a write, so one buffer is enough
+    private final ByteBuffer buf;
+    private final ArrayDeque<Completion> inFlight = new ArrayDeque<>();
+    private final ArrayDeque<Completion> spare = new ArrayDeque<>();
+
+    // the offset in the object of the first byte in buf
+    private long offset;
+    private boolean started;
+    private RadosException failure;
+    private boolean closed;
+
+    /**
+     * @param ioctx the IO context of the pool
+     * @param oid the object to write
+     * @param chunkSize the number of bytes per write
+     * @param maxInFlight the maximum number of writes in flight
+     */
+    RadosOutputStream(IoCTX ioctx, String oid, int chunkSize, int maxInFlight) {
+        this(ioctx, oid, chunkSize, 0, maxInFlight);
+    }
+
+    /**
+     * @param ioctx the IO context of the pool
+     * @param oid the object to write
+     * @param chunkSize the number of bytes per write, a multiple of alignment
+     * @param alignment the alignment the pool requires, or 0
+     * @param maxInFlight the maximum number of writes in flight
+     */
+    RadosOutputStream(IoCTX ioctx, String oid, int chunkSize, int alignment, int maxInFlight) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size should be at least one");
+        }
+        if (alignment < 0 || (alignment > 0 && chunkSize % alignment != 0)) {
+            throw new IllegalArgumentException("Chunk size should be a multiple of the alignment");
+        }
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("The number of writes in flight should be at least one");
+        }
+        this.ioctx = ioctx;
+        this.oid = oid;
+        this.chunkSize = chunkSize;
+        this.alignment = alignment;
+        this.maxInFlight = maxInFlight;
+        this.buf = ByteBuffer.allocateDirect(chunkSize);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        buf.put((byte) b);
+        if (!buf.hasRemaining()) {
+            submit(buf.position());
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        ensureOpen();
+        while (len > 0) {
+            final int n = Math.min(len, buf.remaining());
+            buf.put(b, off, n);
+            off += n;
+            len -= n;
+            if (!buf.hasRemaining()) {
+                submit(buf.position());
+            }
+        }
+    }
+
+    /**
+     * Write out the buffered bytes and wait for all writes in flight. In a
+     * pool which requires alignment, less than one alignment worth of bytes
+     * may stay buffered.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        final int buffered = buf.position();
+        submit(alignment > 0 ? buffered - buffered % alignment : buffered);
+        while (!inFlight.isEmpty()) {
+            await(inFlight.poll());
+        }
+        throwFailure();
+    }
+
+    /**
+     * @return the number of bytes written to the stream
+     */
+    public long getPosition() {
+        return offset + buf.position();
+    }
+
+    /**
+     * Write out the buffered bytes, wait for all writes and release the
+     * completions.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            if (failure == null) {
+                submit(buf.position());
+                if (!started) {
+                    // nothing was written, the object is still replaced
+                    ioctx.writeFull(oid, new byte[0], 0);
+                }
+            }
+        } finally {
+            closed = true;
+            while (!inFlight.isEmpty()) {
+                await(inFlight.poll());
+            }
+            for (Completion completion : spare) {
+                completion.close();
+            }
+            spare.clear();
+        }
+        throwFailure();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        throwFailure();
+    }
+
+    private void throwFailure() throws RadosException {
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Start an asynchronous write of the first length buffered bytes, keep
+     * the rest buffered and wait for the oldest write if too many are in
+     * flight.
+     */
+    private void submit(int length) throws RadosException {
+        if (length == 0) {
+            return;
+        }
+        final Completion completion = spare.isEmpty() ? new Completion(false, false) : spare.poll();
+        final int buffered = buf.position();
+        buf.flip();
+        buf.limit(length);
+        try {
+            if (started) {
+                ioctx.aioWrite(oid, completion, buf, offset);
+            } else {
+                ioctx.aioWriteFull(oid, completion, buf);
+            }
+        } catch (RadosException e) {
+            spare.add(completion);
+            buf.limit((int) (chunkSize - offset % chunkSize)).position(buffered);
+            throw e;
+        }
+        started = true;
+        inFlight.add(completion);
+        offset += length;
+        // librados copied the data, move the unwritten tail to the front
+        buf.limit(buffered).position(length);
+        buf.compact();
+        // end the next chunk at a chunk boundary
+        buf.limit((int) (chunkSize - offset % chunkSize));
+        while (inFlight.size() > maxInFlight) {
+            await(inFlight.poll());
+        }
+        throwFailure();
+    }
+
+    /**
+     * Wait for a write, record its failure and keep its completion for the
+     * next write.
+     */
+    private void await(Completion completion) throws RadosException {
+        completion.waitForComplete();
+        final int r = completion.getReturnValue();
+        if (r < 0 && failure == null) {
+            failure = RadosBase.createException(r, String.format("Failed to write %s", oid));
+        }
+        if (closed) {
+            try {
+                completion.close();
+            } catch (IOException e) {
+                // rados_aio_release does not fail
+            }
+        } else {
+            completion.recycle();
+            spare.add(completion);
+        }
+    }
+}
@@ -17,6 +17,7 @@
  * * history *
  * ***********
  * 2014-08-15 - initial implementation supporting ranged reads only
+ * 2026-10-17 - stat, xattrs, omap, assert_exists and cmpxattr; aioOperate
  */
 
 package com.ceph.rados;
@@ -24,31 +25,31 @@ package com.ceph.rados;
 import static com.ceph.rados.Library.rados;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 
 import com.ceph.rados.exceptions.RadosException;
 
 import com.sun.jna.Pointer;
+import com.sun.jna.ptr.ByteByReference;
 import com.sun.jna.ptr.IntByReference;
 import com.sun.jna.ptr.LongByReference;
+import com.sun.jna.ptr.PointerByReference;
 
 public class ReadOp extends RadosBase implements AutoCloseable {
 
-    public static class ReadResult {
-        private final ByteBuffer buf;
-        final LongByReference bytesread;
-        final IntByReference rval;
-        ReadResult(long buflen) throws RadosException {
-            if ( buflen > Integer.MAX_VALUE ) {
-                throw new RadosException("rados_read_op_read Java byte[] buffer cannot be longer than "+Integer.MAX_VALUE);
-            }
-            buf = ByteBuffer.allocateDirect((int) buflen);
-            bytesread = new LongByReference();
-            rval = new IntByReference();
-        }
-        public ByteBuffer getBuffer() { return buf; }
-        public long getBytesRead() { return bytesread.getValue(); }
-        public int  getRVal() { return rval.getValue(); }
+    /**
+     * The outcome of one queued operation, available after operate()
+     */
+    public abstract static class OperationResult {
+        final IntByReference rval = new IntByReference();
+
+        public int getRVal() { return rval.getValue(); }
 
         /**
          * Use this method if you do error handling with exceptions.
@@ -74,8 +75,227 @@ public class ReadOp extends RadosBase implements AutoCloseable {
         }
     }
 
+    public static class ReadResult extends OperationResult {
+        private final ByteBuffer buf;
+        private BufferPool pool;
+        final LongByReference bytesread;
+        ReadResult(long buflen) throws RadosException {
+            checkLength(buflen);
+            buf = ByteBuffer.allocateDirect((int) buflen);
+            bytesread = new LongByReference();
+        }
+        ReadResult(long buflen, BufferPool pool) throws RadosException {
+            checkLength(buflen);
+            buf = Buffers.borrow(pool, (int) buflen);
+            this.pool = pool;
+            bytesread = new LongByReference();
+        }
+        ReadResult(ByteBuffer buf) {
+            this.buf = buf;
+            bytesread = new LongByReference();
+        }
+        private static void checkLength(long buflen) throws RadosException {
+            if ( buflen > Integer.MAX_VALUE ) {
+                throw new RadosException("rados_read_op_read Java byte[] buffer cannot be longer than "+Integer.MAX_VALUE);
+            }
+        }
+        public ByteBuffer getBuffer() { return buf; }
+        public long getBytesRead() { return bytesread.getValue(); }
+
+        /**
+         * Hand the buffer back to the pool it was borrowed from. The buffer
+         * must not be used afterwards. Does nothing if the buffer is not
+         * pooled or already released.
+         */
+        public synchronized void release() {
+            if (pool != null) {
+                pool.release(buf);
+                pool = null;
+            }
+        }
+    }
+
+    public static class StatResult extends OperationResult {
+        final LongByReference size = new LongByReference();
+        final LongByReference mtime = new LongByReference();
+
+        public long getSize() { return size.getValue(); }
+
+        /**
+         * @return the modification time in seconds since the epoch
+         */
+        public long getMtime() { return mtime.getValue(); }
+    }
+
+    /**
+     * A result librados hands over as an iterator. The iterator is decoded
+     * on first access after operate(), or when the ReadOp is closed, and
+     * then released.
+     */
+    abstract static class IteratorResult<T> extends OperationResult {
+        final PointerByReference iter = new PointerByReference();
+        private volatile boolean operated;
+        private volatile Completion pending;
+        private boolean released;
+        private T value;
+
+        abstract T decode(Pointer iterator);
+
+        abstract void end(Pointer iterator);
+
+        void setOperated() {
+            operated = true;
+        }
+
+        /**
+         * The operation was submitted asynchronously with this completion.
+         */
+        void setPending(Completion completion) {
+            pending = completion;
+        }
+
+        private boolean isOperated() {
+            if (!operated) {
+                Completion completion = pending;
+                if (completion != null && completion.isDone()) {
+                    operated = true;
+                }
+            }
+            return operated;
+        }
+
+        synchronized T get() {
+            if (!isOperated()) {
+                throw new IllegalStateException("The operation has not been executed yet");
+            }
+            release();
+            return value;
+        }
+
+        /**
+         * Decode the iterator if the operation was executed and release it.
+         */
+        synchronized void release() {
+            if (released) {
+                return;
+            }
+            released = true;
+            Pointer iterator = iter.getValue();
+            if (iterator == null) {
+                return;
+            }
+            try {
+                if (isOperated()) {
+                    value = decode(iterator);
+                }
+            } finally {
+                end(iterator);
+            }
+        }
+    }
+
+    public static class XattrsResult extends IteratorResult<Map<String, byte[]>> {
+
+        /**
+         * @return all extended attributes of the object
+         */
+        public Map<String, byte[]> getXattrs() { return get(); }
+
+        /**
+         * @param name the name of the extended attribute
+         * @return the value of the extended attribute or null if it is not set
+         */
+        public byte[] getXattr(String name) { return get().get(name); }
+
+        @Override
+        Map<String, byte[]> decode(Pointer iterator) {
+            Map<String, byte[]> xattrs = new HashMap<>();
+            PointerByReference name = new PointerByReference();
+            PointerByReference value = new PointerByReference();
+            LongByReference len = new LongByReference();
+            while (rados.rados_getxattrs_next(iterator, name, value, len) == 0 && name.getValue() != null) {
+                xattrs.put(name.getValue().getString(0), bytes(value.getValue(), len.getValue()));
+            }
+            return Collections.unmodifiableMap(xattrs);
+        }
+
+        @Override
+        void end(Pointer iterator) {
+            rados.rados_getxattrs_end(iterator);
+        }
+    }
+
+    public static class OmapResult extends IteratorResult<Map<String, byte[]>> {
+        final ByteByReference more = new ByteByReference();
+
+        /**
+         * @return the omap keys found and their values, in key order
+         */
+        public Map<String, byte[]> getValues() { return get(); }
+
+        /**
+         * @return true if there are more values than were returned. Always
+         *         false for values fetched by key.
+         */
+        public boolean isMore() { return more.getValue() != 0; }
+
+        @Override
+        Map<String, byte[]> decode(Pointer iterator) {
+            Map<String, byte[]> values = new LinkedHashMap<>();
+            PointerByReference key = new PointerByReference();
+            PointerByReference value = new PointerByReference();
+            LongByReference len = new LongByReference();
+            while (rados.rados_omap_get_next(iterator, key, value, len) == 0 && key.getValue() != null) {
+                values.put(key.getValue().getString(0), bytes(value.getValue(), len.getValue()));
+            }
+            return Collections.unmodifiableMap(values);
+        }
+
+        @Override
+        void end(Pointer iterator) {
+            rados.rados_omap_get_end(iterator);
+        }
+    }
+
+    public static class OmapKeysResult extends IteratorResult<List<String>> {
+        final ByteByReference more = new ByteByReference();
+
+        /**
+         * @return the omap keys, in key order
+         */
+        public List<String> getKeys() { return get(); }
+
+        /**
+         * @return true if there are more keys than were returned
+         */
+        public boolean isMore() { return more.getValue() != 0; }
+
+        @Override
+        List<String> decode(Pointer iterator) {
+            List<String> keys = new ArrayList<>();
+            PointerByReference key = new PointerByReference();
+            PointerByReference value = new PointerByReference();
+            LongByReference len = new LongByReference();
+            while (rados.rados_omap_get_next(iterator, key, value, len) == 0 && key.getValue() != null) {
+                keys.add(key.getValue().getString(0));
+            }
+            return Collections.unmodifiableList(keys);
+        }
+
+        @Override
+        void end(Pointer iterator) {
+            rados.rados_omap_get_end(iterator);
+        }
+    }
+
+    private static byte[] bytes(Pointer value, long len) {
+        return len == 0 ? new byte[0] : value.getByteArray(0, (int) len);
+    }
+
     private final Pointer ioctxPtr;
     private Pointer readOpPtr;
+    // Everything librados writes results into, reachable while an operation is in flight
+    private final List<OperationResult> results = new ArrayList<>();
 
     /**
      * Create a new read_op object.
@@ -105,9 +325,126 @@ public class ReadOp extends RadosBase implements AutoCloseable {
     public ReadResult queueRead(long offset, long len) throws RadosException {
         ReadResult r = new ReadResult(len);
         rados.rados_read_op_read(readOpPtr, offset, len, r.getBuffer(), r.bytesread, r.rval);
+        results.add(r);
+        return r;
+    }
+
+    /**
+     * Same as {@link #queueRead(long, long)}, but with a buffer borrowed from
+     * a pool. Call ReadResult.release() once done with the buffer.
+     *
+     * @param offset starting offset into the object
+     * @param len length of the read
+     * @param pool the pool to borrow the buffer from, waiting if its budget is used up
+     * @return Java object which will hold results of the requested read after operate() is called
+     * @throws RadosException
+     */
+    public ReadResult queueRead(long offset, long len, BufferPool pool) throws RadosException {
+        ReadResult r = new ReadResult(len, pool);
+        rados.rados_read_op_read(readOpPtr, offset, len, r.getBuffer(), r.bytesread, r.rval);
+        results.add(r);
+        return r;
+    }
+
+    /**
+     * Read into the remaining bytes of a direct buffer owned by the caller,
+     * starting at its position. The position is not advanced, see
+     * ReadResult.getBytesRead().
+     */
+    ReadResult queueRead(long offset, ByteBuffer buf) {
+        ReadResult r = new ReadResult(buf);
+        rados.rados_read_op_read(readOpPtr, offset, buf.remaining(), Buffers.writablePointer(buf), r.bytesread, r.rval);
+        results.add(r);
         return r;
     }
 
+    /**
+     * Get the size and modification time of the object
+     *
+     * @return Java object which will hold the stat result after operate() is called
+     */
+    public StatResult queueStat() {
+        StatResult r = new StatResult();
+        rados.rados_read_op_stat(readOpPtr, r.size, r.mtime, r.rval);
+        results.add(r);
+        return r;
+    }
+
+    /**
+     * Get all extended attributes of the object. librados has no read
+     * operation for a single extended attribute, use XattrsResult.getXattr
+     *
+     * @return Java object which will hold the extended attributes after operate() is called
+     */
+    public XattrsResult queueGetXattrs() {
+        XattrsResult r = new XattrsResult();
+        rados.rados_read_op_getxattrs(readOpPtr, r.iter, r.rval);
+        results.add(r);
+        return r;
+    }
+
+    /**
+     * Get the values of some omap keys. Keys which are not set are left out
+     * of the result.
+     *
+     * @param keys the omap keys to get
+     * @return Java object which will hold the keys and values after operate() is called
+     */
+    public OmapResult queueOmapGetValsByKeys(String... keys) {
+        OmapResult r = new OmapResult();
+        rados.rados_read_op_omap_get_vals_by_keys(readOpPtr, keys, keys.length, r.iter, r.rval);
+        results.add(r);
+        return r;
+    }
+
+    /**
+     * Get omap values in key order
+     *
+     * @param startAfter list values after this key, or null to start at the beginning
+     * @param filterPrefix only list keys starting with this prefix, or null for all keys
+     * @param maxReturn the maximum number of values to return
+     * @return Java object which will hold the keys and values after operate() is called
+     */
+    public OmapResult queueOmapGetVals(String startAfter, String filterPrefix, long maxReturn) {
+        OmapResult r = new OmapResult();
+        rados.rados_read_op_omap_get_vals2(readOpPtr, startAfter, filterPrefix, maxReturn, r.iter, r.more, r.rval);
+        results.add(r);
+        return r;
+    }
+
+    /**
+     * Get omap keys in key order
+     *
+     * @param startAfter list keys after this one, or null to start at the beginning
+     * @param maxReturn the maximum number of keys to return
+     * @return Java object which will hold the keys after operate() is called
+     */
+    public OmapKeysResult queueOmapGetKeys(String startAfter, long maxReturn) {
+        OmapKeysResult r = new OmapKeysResult();
+        rados.rados_read_op_omap_get_keys2(readOpPtr, startAfter, maxReturn, r.iter, r.more, r.rval);
+        results.add(r);
+        return r;
+    }
+
+    /**
+     * Make the whole operation fail with ENOENT if the object does not exist
+     */
+    public void queueAssertExists() {
+        rados.rados_read_op_assert_exists(readOpPtr);
+    }
+
+    /**
+     * Make the whole operation fail with ECANCELED unless the extended
+     * attribute compares to the value as requested
+     *
+     * @param name the name of the extended attribute
+     * @param comparisonOperator one of the Rados.CMPXATTR_OP_* constants
+     * @param value the value to compare with
+     */
+    public void queueCmpXattr(String name, byte comparisonOperator, byte[] value) {
+        rados.rados_read_op_cmpxattr(readOpPtr, name, comparisonOperator, value, value.length);
+    }
+
     /**
      * Executes operations added to the rados_read_op_t.
      * 
@@ -117,16 +454,65 @@ public class ReadOp extends RadosBase implements AutoCloseable {
      * @see librados operation flags
      */
     public void operate(final String oid, final int flags) throws RadosException {
+        try {
+            handleReturnCode(new Callable<Number>() {
+                @Override
+                public Number call() throws Exception {
+                    return rados.rados_read_op_operate(readOpPtr, ioctxPtr, oid, flags);
+                }
+            }, "ReadOp.operate(%s, %d)", oid, flags);
+        } finally {
+            setOperated();
+        }
+    }
+
+    /**
+     * Executes operations added to the rados_read_op_t asynchronously.
+     * <p>
+     * The results are filled in once the completion is complete. The ReadOp
+     * must not be closed before that.
+     *
+     * @param oid the name of the object to operate on
+     * @param completion the completion of the operation
+     * @param flags the flags for the operation
+     * @throws RadosException if the operation could not be submitted
+     * @see librados operation flags
+     */
+    public void aioOperate(final String oid, final Completion completion, final int flags) throws RadosException {
+        for (OperationResult r : results) {
+            if (r instanceof IteratorResult) {
+                ((IteratorResult<?>) r).setPending(completion);
+            }
+        }
+        completion.attach(this);
         handleReturnCode(new Callable<Number>() {
             @Override
             public Number call() throws Exception {
-                return rados.rados_read_op_operate(readOpPtr, ioctxPtr, oid, flags);
+                return rados.rados_aio_read_op_operate(readOpPtr, ioctxPtr, completion.getPointer(), oid, flags);
             }
-        }, "ReadOp.operate(%s, %d)", oid, flags);
+        }, "ReadOp.aioOperate(%s, %d)", oid, flags);
     }
 
+    private void setOperated() {
+        for (OperationResult r : results) {
+            if (r instanceof IteratorResult) {
+                ((IteratorResult<?>) r).setOperated();
+            }
+        }
+    }
+
+    /**
+     * Release the read operation. Results of an executed operation which
+     * were not read yet are decoded first, so they stay usable afterwards.
+     */
     @Override
     public void close() {
+        for (OperationResult r : results) {
+            if (r instanceof IteratorResult) {
+                ((IteratorResult<?>) r).release();
+            }
+        }
+        results.clear();
         if (readOpPtr != null) {
             rados.rados_release_read_op(readOpPtr);
             readOpPtr = null;
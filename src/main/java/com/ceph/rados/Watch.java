@@ -0,0 +1,288 @@
+/*
+ * RADOS Java - Java bindings for librados
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.ceph.rados;
+
+import static com.ceph.rados.Library.rados;
+
+import java.io.Closeable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.ceph.rados.exceptions.RadosException;
+import com.ceph.rados.jna.Rados.WatchCallback;
+import com.ceph.rados.jna.Rados.WatchErrorCallback;
+import com.sun.jna.Pointer;
+import com.sun.jna.ptr.LongByReference;
+
+/**
+ * A watch on an object, receiving the notifications sent to it by any
+ * client, see IoCTX.watch and IoCTX.notify.
+ * <p>
+ * The librados callback only copies the notification and hands it to the
+ * executor of the watch, so listeners may block and call back into librados.
+ * If the executor rejects it, it is handed to a shared dispatcher thread, a
+ * listener never runs on the librados callback thread.
+ * With more than one thread in the executor, notifications may be handled
+ * out of order. A notification which the listener did not acknowledge is
+ * acknowledged once the listener returned, as the notifier waits for all
+ * watchers.
+ * <p>
+ * A watch fails when the client loses its session with the OSD, which is
+ * reported to Listener.onError. Notifications sent meanwhile are lost, so
+ * close the watch and establish a new one.
+ */
+public class Watch extends RadosBase implements Closeable {
+
+    /**
+     * Receives the notifications and failures of a watch.
+     */
+    public interface Listener {
+        /**
+         * A notification arrived.
+         *
+         * @param notification the notification, acknowledged after this
+         *                     method returns unless it was already
+         */
+        void onNotify(Notification notification);
+
+        /**
+         * The watch failed, or acknowledging a notification failed.
+         *
+         * @param watch the watch
+         * @param e the failure, common error codes:
+         *          -107 (ENOTCONN) : the watch was lost and has to be
+         *          established again
+         */
+        void onError(Watch watch, RadosException e);
+    }
+
+    /**
+     * A notification received by a watch.
+     */
+    public static class Notification {
+        private final Watch watch;
+        private final long notifyId;
+        private final long cookie;
+        private final long notifierId;
+        private final byte[] payload;
+        private final AtomicBoolean acked = new AtomicBoolean();
+
+        Notification(Watch watch, long notifyId, long cookie, long notifierId, byte[] payload) {
+            this.watch = watch;
+            this.notifyId = notifyId;
+            this.cookie = cookie;
+            this.notifierId = notifierId;
+            this.payload = payload;
+        }
+
+        public Watch getWatch() { return watch; }
+
+        public long getNotifyId() { return notifyId; }
+
+        /**
+         * @return the instance ID of the client which sent the notification
+         */
+        public long getNotifierId() { return notifierId; }
+
+        /**
+         * @return the payload sent by the notifier
+         */
+        public byte[] getPayload() { return payload; }
+
+        /**
+         * Acknowledge the notification without a reply.
+         *
+         * @throws RadosException if the acknowledgement could not be sent
+         */
+        public void ack() throws RadosException {
+            ack(new byte[0]);
+        }
+
+        /**
+         * Acknowledge the notification with a reply the notifier receives
+         * in its NotifyResult. Only the first acknowledgement is sent.
+         *
+         * @param reply the reply, or null for none
+         * @throws RadosException if the acknowledgement could not be sent
+         */
+        public void ack(byte[] reply) throws RadosException {
+            if (acked.compareAndSet(false, true)) {
+                watch.ioctx.notifyAck(watch.oid, notifyId, cookie, reply);
+            }
+        }
+
+        boolean isAcked() {
+            return acked.get();
+        }
+    }
+
+    private static final CompletionRegistry<Watch> watchMap = new CompletionRegistry<>();
+    private static CallbackDispatcher defaultDispatcher;
+
+    // Kept in static fields so they are never garbage collected while
+    // librados may call them
+    private static final WatchCallback watchCallback = new WatchCallback() {
+        @Override
+        public void callback(Pointer arg, long notifyId, long cookie, long notifierId, Pointer data, long dataLen) {
+            final Watch watch = watchMap.get((int) Pointer.nativeValue(arg));
+            if (watch != null) {
+                final byte[] payload = data == null || dataLen == 0 ? new byte[0] : data.getByteArray(0, (int) dataLen);
+                watch.dispatchNotify(new Notification(watch, notifyId, cookie, notifierId, payload));
+            }
+        }
+    };
+    private static final WatchErrorCallback errorCallback = new WatchErrorCallback() {
+        @Override
+        public void callback(Pointer arg, long cookie, int err) {
+            final Watch watch = watchMap.get((int) Pointer.nativeValue(arg));
+            if (watch != null) {
+                watch.dispatchError(createException(err, String.format("Watch on %s failed", watch.oid)));
+            }
+        }
+    };
+
+    private final IoCTX ioctx;
+    private final String oid;
+    private final Listener listener;
+    private final Executor executor;
+    private final int id;
+    private final long cookie;
+    private boolean closed;
+
+    /**
+     * Created by IoCTX.watch
+     */
+    Watch(final IoCTX ioctx, final String oid, Listener listener, Executor executor) throws RadosException {
+        this.ioctx = ioctx;
+        this.oid = oid;
+        this.listener = listener;
+        this.executor = executor;
+        // registered first, notifications may arrive before rados_watch2 returns
+        this.id = watchMap.register(this);
+        final LongByReference cookieRef = new LongByReference();
+        try {
+            handleReturnCode(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    return rados.rados_watch2(ioctx.getPointer(), oid, cookieRef, watchCallback, errorCallback,
+                            Pointer.createConstant((long) id));
+                }
+            }, "Failed to watch %s", oid);
+        } catch (RadosException e) {
+            watchMap.unregister(id);
+            throw e;
+        }
+        this.cookie = cookieRef.getValue();
+    }
+
+    /**
+     * @return a shared dispatcher with a single thread, so notifications
+     *         are handled in order
+     */
+    static synchronized Executor defaultDispatcher() {
+        if (defaultDispatcher == null) {
+            defaultDispatcher = new CallbackDispatcher(1, 1024);
+        }
+        return defaultDispatcher;
+    }
+
+    public String getOid() {
+        return oid;
+    }
+
+    public long getCookie() {
+        return cookie;
+    }
+
+    /**
+     * Check that the watch is still established.
+     *
+     * @return the number of milliseconds since the watch was last confirmed
+     * @throws RadosException if the watch failed, common error codes:
+     *                        -107 (ENOTCONN) : the watch was lost
+     */
+    public long check() throws RadosException {
+        return handleReturnCode(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return rados.rados_watch_check(ioctx.getPointer(), cookie);
+            }
+        }, "Failed to check the watch on %s", oid);
+    }
+
+    /**
+     * Remove the watch. Notifications already handed to the executor are
+     * still delivered.
+     *
+     * @throws RadosException if the watch could not be removed
+     */
+    @Override
+    public synchronized void close() throws RadosException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            handleReturnCode(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    return rados.rados_unwatch2(ioctx.getPointer(), cookie);
+                }
+            }, "Failed to unwatch %s", oid);
+        } finally {
+            watchMap.unregister(id);
+        }
+    }
+
+    private void dispatchNotify(final Notification notification) {
+        dispatch(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    listener.onNotify(notification);
+                } finally {
+                    if (!notification.isAcked()) {
+                        try {
+                            notification.ack();
+                        } catch (RadosException e) {
+                            listener.onError(Watch.this, e);
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    private void dispatchError(final RadosException e) {
+        dispatch(new Runnable() {
+            @Override
+            public void run() {
+                listener.onError(Watch.this, e);
+            }
+        });
+    }
+
+    private void dispatch(Runnable handler) {
+        try {
+            executor.execute(handler);
+        } catch (RejectedExecutionException e) {
+            CallbackDispatcher.fallback().execute(handler);
+        }
+    }
+}
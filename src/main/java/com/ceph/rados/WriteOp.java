@@ -0,0 +1,270 @@
+/*
+ * RADOS Java - Java bindings for librados
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.ceph.rados;
+
+import static com.ceph.rados.Library.rados;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import com.ceph.rados.exceptions.RadosException;
+
+import com.sun.jna.Memory;
+import com.sun.jna.Pointer;
+
+/**
+ * A compound write operation: all queued mutations are applied atomically
+ * to one object in a single round trip, or none of them is.
+ * <p>
+ * librados copies the data of every queued mutation, so buffers may be
+ * reused as soon as a queue method returns.
+ */
+public class WriteOp extends RadosBase implements AutoCloseable {
+
+    private final IoCTX ioctx;
+    private final Pointer ioctxPtr;
+    private Pointer writeOpPtr;
+
+    /**
+     * Create a new write_op object.
+     *
+     * This constructor should never be called, WriteOp
+     * objects are created by the IoCTX class and returned
+     * when creating a WriteOp there.
+     */
+    WriteOp(IoCTX ioctx, Pointer writeop_p) {
+        this.ioctx = ioctx;
+        this.ioctxPtr = ioctx.getPointer();
+        this.writeOpPtr = writeop_p;
+    }
+
+    Pointer getPointer() {
+        return writeOpPtr;
+    }
+
+    /**
+     * Create the object
+     *
+     * @param exclusive if true, the operation fails with EEXIST if the object exists
+     */
+    public void queueCreate(boolean exclusive) {
+        rados.rados_write_op_create(writeOpPtr, exclusive ? 1 : 0, null);
+    }
+
+    /**
+     * Write data at an offset
+     *
+     * @param buf the data to write
+     * @param offset the offset in the object
+     */
+    public void queueWrite(byte[] buf, long offset) {
+        rados.rados_write_op_write(writeOpPtr, buf, buf.length, offset);
+    }
+
+    /**
+     * Write the remaining bytes of a direct buffer at an offset. The position
+     * of the buffer is advanced to its limit.
+     *
+     * @param buf a direct ByteBuffer
+     * @param offset the offset in the object
+     */
+    public void queueWrite(ByteBuffer buf, long offset) {
+        rados.rados_write_op_write(writeOpPtr, Buffers.pointer(buf), buf.remaining(), offset);
+        buf.position(buf.limit());
+    }
+
+    /**
+     * Replace the content of the object
+     *
+     * @param buf the new content
+     */
+    public void queueWriteFull(byte[] buf) {
+        rados.rados_write_op_write_full(writeOpPtr, buf, buf.length);
+    }
+
+    /**
+     * Replace the content of the object with the remaining bytes of a direct
+     * buffer. The position of the buffer is advanced to its limit.
+     *
+     * @param buf a direct ByteBuffer
+     */
+    public void queueWriteFull(ByteBuffer buf) {
+        rados.rados_write_op_write_full(writeOpPtr, Buffers.pointer(buf), buf.remaining());
+        buf.position(buf.limit());
+    }
+
+    /**
+     * Append data to the object
+     *
+     * @param buf the data to append
+     */
+    public void queueAppend(byte[] buf) {
+        rados.rados_write_op_append(writeOpPtr, buf, buf.length);
+    }
+
+    /**
+     * Append the remaining bytes of a direct buffer to the object. The
+     * position of the buffer is advanced to its limit.
+     *
+     * @param buf a direct ByteBuffer
+     */
+    public void queueAppend(ByteBuffer buf) {
+        rados.rados_write_op_append(writeOpPtr, Buffers.pointer(buf), buf.remaining());
+        buf.position(buf.limit());
+    }
+
+    /**
+     * Remove the object
+     */
+    public void queueRemove() {
+        rados.rados_write_op_remove(writeOpPtr);
+    }
+
+    /**
+     * Resize the object
+     *
+     * @param size the new size of the object
+     */
+    public void queueTruncate(long size) {
+        rados.rados_write_op_truncate(writeOpPtr, size);
+    }
+
+    /**
+     * Zero a range of the object
+     *
+     * @param offset the start of the range
+     * @param len the length of the range
+     */
+    public void queueZero(long offset, long len) {
+        rados.rados_write_op_zero(writeOpPtr, offset, len);
+    }
+
+    /**
+     * Set an extended attribute
+     *
+     * @param name the name of the extended attribute
+     * @param value the value of the extended attribute
+     */
+    public void queueSetXattr(String name, byte[] value) {
+        rados.rados_write_op_setxattr(writeOpPtr, name, value, value.length);
+    }
+
+    /**
+     * Remove an extended attribute
+     *
+     * @param name the name of the extended attribute
+     */
+    public void queueRmXattr(String name) {
+        rados.rados_write_op_rmxattr(writeOpPtr, name);
+    }
+
+    /**
+     * Set omap keys
+     *
+     * @param values the keys and their values
+     */
+    public void queueOmapSet(Map<String, byte[]> values) {
+        final int num = values.size();
+        final String[] keys = new String[num];
+        final Pointer[] vals = new Pointer[num];
+        final long[] lens = new long[num];
+        int i = 0;
+        for (Map.Entry<String, byte[]> entry : values.entrySet()) {
+            byte[] value = entry.getValue();
+            keys[i] = entry.getKey();
+            lens[i] = value.length;
+            if (value.length > 0) {
+                Memory memory = new Memory(value.length);
+                memory.write(0, value, 0, value.length);
+                vals[i] = memory;
+            }
+            i++;
+        }
+        rados.rados_write_op_omap_set(writeOpPtr, keys, vals, lens, num);
+    }
+
+    /**
+     * Remove omap keys
+     *
+     * @param keys the keys to remove
+     */
+    public void queueOmapRemove(String... keys) {
+        rados.rados_write_op_omap_rm_keys(writeOpPtr, keys, keys.length);
+    }
+
+    /**
+     * Remove all omap keys
+     */
+    public void queueOmapClear() {
+        rados.rados_write_op_omap_clear(writeOpPtr);
+    }
+
+    /**
+     * Executes the operations added to the rados_write_op_t.
+     *
+     * @param oid the name of the object to operate on
+     * @param flags the flags for the operation
+     * @throws RadosException if any of the operations failed, in which case
+     *                        none of them was applied
+     * @see librados operation flags
+     */
+    public void operate(final String oid, final int flags) throws RadosException {
+        try {
+            handleReturnCode(new Callable<Number>() {
+                @Override
+                public Number call() throws Exception {
+                    return rados.rados_write_op_operate(writeOpPtr, ioctxPtr, oid, null, flags);
+                }
+            }, "WriteOp.operate(%s, %d)", oid, flags);
+        } finally {
+            ioctx.objectChanged(oid);
+        }
+    }
+
+    /**
+     * Executes the operations added to the rados_write_op_t asynchronously.
+     * The WriteOp must not be closed before the completion is complete.
+     *
+     * @param oid the name of the object to operate on
+     * @param completion the completion of the operation
+     * @param flags the flags for the operation
+     * @throws RadosException if the operation could not be submitted
+     * @see librados operation flags
+     */
+    public void aioOperate(final String oid, final Completion completion, final int flags) throws RadosException {
+        completion.attach(this);
+        try {
+            handleReturnCode(new Callable<Number>() {
+                @Override
+                public Number call() throws Exception {
+                    return rados.rados_aio_write_op_operate(writeOpPtr, ioctxPtr, completion.getPointer(), oid, null, flags);
+                }
+            }, "WriteOp.aioOperate(%s, %d)", oid, flags);
+        } finally {
+            ioctx.objectChanged(oid);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (writeOpPtr != null) {
+            rados.rados_release_write_op(writeOpPtr);
+            writeOpPtr = null;
+        }
+    }
+}
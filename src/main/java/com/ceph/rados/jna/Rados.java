@@ -24,6 +24,7 @@ import com.sun.jna.Callback;
 import com.sun.jna.Library;
 import com.sun.jna.Native;
 import com.sun.jna.Pointer;
+import com.sun.jna.ptr.ByteByReference;
 import com.sun.jna.ptr.IntByReference;
 import com.sun.jna.ptr.LongByReference;
 import com.sun.jna.ptr.PointerByReference;
@@ -32,6 +33,22 @@ public interface Rados extends Library {
 
     Rados INSTANCE = (Rados) Native.loadLibrary("rados", Rados.class);
 
+    /**
+     * rados_watchcb2_t: a notification arrived on a watched object. The data
+     * is only valid during the call.
+     */
+    interface WatchCallback extends Callback {
+        void callback(Pointer arg, long notify_id, long cookie, long notifier_id, Pointer data, long data_len);
+    }
+
+    /**
+     * rados_watcherrcb_t: a watch failed, e.g. with -ENOTCONN after the
+     * client lost its session with the OSD, and has to be established again.
+     */
+    interface WatchErrorCallback extends Callback {
+        void callback(Pointer arg, long cookie, int err);
+    }
+
     void rados_version(IntByReference major, IntByReference minor, IntByReference extra);
     int rados_create(PointerByReference cluster, String id);
     int rados_create2(PointerByReference cluster, String clustername, String name, long flags);
@@ -54,6 +71,8 @@ public interface Rados extends Library {
     int rados_ioctx_create(Pointer cluster, String pool, Pointer ioctx);
     void rados_ioctx_destroy(Pointer ioctx);
     void rados_ioctx_set_namespace(Pointer ioctx, String namespace);
+    int rados_ioctx_pool_requires_alignment2(Pointer ioctx, IntByReference requires);
+    int rados_ioctx_pool_required_alignment2(Pointer ioctx, LongByReference alignment);
     long rados_ioctx_get_id(Pointer ioctx);
     int rados_ioctx_pool_set_auid(Pointer ioctx, long auid);
     int rados_ioctx_pool_get_auid(Pointer ioctx, LongByReference auid);
@@ -68,10 +87,27 @@ public interface Rados extends Library {
     int rados_objects_list_open(Pointer ioctx, Pointer list);
     int rados_objects_list_next(Pointer list, Pointer entry, byte[] key);
     void rados_objects_list_close(Pointer list);
+    int rados_nobjects_list_open(Pointer ioctx, PointerByReference list);
+    int rados_nobjects_list_next(Pointer list, PointerByReference entry, PointerByReference key, PointerByReference nspace);
+    void rados_nobjects_list_close(Pointer list);
+    int rados_nobjects_list_get_pg_hash_position(Pointer list);
+    int rados_nobjects_list_seek(Pointer list, int pos);
+    Pointer rados_object_list_begin(Pointer ioctx);
+    Pointer rados_object_list_end(Pointer ioctx);
+    int rados_object_list_is_end(Pointer ioctx, Pointer cursor);
+    void rados_object_list_cursor_free(Pointer ioctx, Pointer cursor);
+    int rados_object_list_cursor_cmp(Pointer ioctx, Pointer lhs, Pointer rhs);
+    int rados_object_list(Pointer ioctx, Pointer start, Pointer finish, long result_size, byte[] filter_buf, long filter_buf_len, RadosObjectListItem[] results, PointerByReference next);
+    void rados_object_list_free(long result_size, RadosObjectListItem[] results);
+    void rados_object_list_slice(Pointer ioctx, Pointer start, Pointer finish, long n, long m, PointerByReference split_start, PointerByReference split_finish);
     int rados_write(Pointer ioctx, String oid, byte[] buf, int len, long off);
     int rados_write_full(Pointer ioctx, String oid, byte[] buf, int len);
     int rados_append(Pointer ioctx, String oid, byte[] buf, int len);
     int rados_read(Pointer ioctx, String oid, byte[] buf, int len, long off);
+    int rados_write(Pointer ioctx, String oid, Pointer buf, long len, long off);
+    int rados_write_full(Pointer ioctx, String oid, Pointer buf, long len);
+    int rados_append(Pointer ioctx, String oid, Pointer buf, long len);
+    int rados_read(Pointer ioctx, String oid, Pointer buf, long len, long off);
     int rados_remove(Pointer ioctx, String oid);
     int rados_trunc(Pointer ioctx, String oid, long size);
     int rados_clone_range(Pointer ioctx, String dst, long dst_off, String src, long src_off, long len);
@@ -79,7 +115,33 @@ public interface Rados extends Library {
     Pointer rados_create_read_op();
     void rados_release_read_op(Pointer read_op);
     void rados_read_op_read(Pointer read_op, long offset, long len, ByteBuffer direct_buffer, LongByReference bytes_read, IntByReference prval);
+    void rados_read_op_read(Pointer read_op, long offset, long len, Pointer buffer, LongByReference bytes_read, IntByReference prval);
+    void rados_read_op_stat(Pointer read_op, LongByReference psize, LongByReference pmtime, IntByReference prval);
+    void rados_read_op_assert_exists(Pointer read_op);
+    void rados_read_op_cmpxattr(Pointer read_op, String name, byte comparison_operator, byte[] value, long value_len);
+    void rados_read_op_getxattrs(Pointer read_op, PointerByReference iter, IntByReference prval);
+    void rados_read_op_omap_get_vals_by_keys(Pointer read_op, String[] keys, long keys_len, PointerByReference iter, IntByReference prval);
+    void rados_read_op_omap_get_vals2(Pointer read_op, String start_after, String filter_prefix, long max_return, PointerByReference iter, ByteByReference pmore, IntByReference prval);
+    void rados_read_op_omap_get_keys2(Pointer read_op, String start_after, long max_return, PointerByReference iter, ByteByReference pmore, IntByReference prval);
     int rados_read_op_operate(Pointer read_op, Pointer ioctx, String oid, int flags);
+    Pointer rados_create_write_op();
+    void rados_release_write_op(Pointer write_op);
+    void rados_write_op_create(Pointer write_op, int exclusive, String category);
+    void rados_write_op_write(Pointer write_op, byte[] buffer, long len, long offset);
+    void rados_write_op_write(Pointer write_op, Pointer buffer, long len, long offset);
+    void rados_write_op_write_full(Pointer write_op, byte[] buffer, long len);
+    void rados_write_op_write_full(Pointer write_op, Pointer buffer, long len);
+    void rados_write_op_append(Pointer write_op, byte[] buffer, long len);
+    void rados_write_op_append(Pointer write_op, Pointer buffer, long len);
+    void rados_write_op_remove(Pointer write_op);
+    void rados_write_op_truncate(Pointer write_op, long offset);
+    void rados_write_op_zero(Pointer write_op, long offset, long len);
+    void rados_write_op_setxattr(Pointer write_op, String name, byte[] value, long value_len);
+    void rados_write_op_rmxattr(Pointer write_op, String name);
+    void rados_write_op_omap_set(Pointer write_op, String[] keys, Pointer[] vals, long[] lens, long num);
+    void rados_write_op_omap_rm_keys(Pointer write_op, String[] keys, long keys_len);
+    void rados_write_op_omap_clear(Pointer write_op);
+    int rados_write_op_operate(Pointer write_op, Pointer ioctx, String oid, LongByReference mtime, int flags);
     int rados_shutdown(Pointer cluster);
 
     // Asynchronous I/O
@@ -88,16 +150,45 @@ public interface Rados extends Library {
     int rados_aio_flush(Pointer completion);
     int rados_aio_write(Pointer ioctx, String oid, Pointer completion, byte[] buffer, int length, long offset);
     int rados_aio_write_full(Pointer ioctx, String oid, Pointer completion, byte[] buffer, int length);
+    int rados_aio_write(Pointer ioctx, String oid, Pointer completion, Pointer buffer, long length, long offset);
+    int rados_aio_write_full(Pointer ioctx, String oid, Pointer completion, Pointer buffer, long length);
     int rados_aio_wait_for_complete(Pointer completion);
+    int rados_aio_wait_for_safe(Pointer completion);
+    int rados_aio_is_complete(Pointer completion);
+    int rados_aio_is_complete_and_cb(Pointer completion);
+    int rados_aio_get_return_value(Pointer completion);
+    int rados_aio_read(Pointer ioctx, String oid, Pointer completion, Pointer buffer, long length, long offset);
+    int rados_aio_append(Pointer ioctx, String oid, Pointer completion, byte[] buffer, int length);
+    int rados_aio_append(Pointer ioctx, String oid, Pointer completion, Pointer buffer, long length);
+    int rados_aio_remove(Pointer ioctx, String oid, Pointer completion);
+    int rados_aio_stat(Pointer ioctx, String oid, Pointer completion, LongByReference size, LongByReference mtime);
+    int rados_aio_read_op_operate(Pointer read_op, Pointer ioctx, Pointer completion, String oid, int flags);
+    int rados_aio_write_op_operate(Pointer write_op, Pointer ioctx, Pointer completion, String oid, LongByReference mtime, int flags);
     
     // read, write, remove, iterate extended attributes
     int rados_getxattr(Pointer ioctx, String oid, String xattrName, byte[] buf, long len);
     int rados_setxattr(Pointer ioctx, String oid, String xattrName, byte[] buf, long len);
+    int rados_getxattr(Pointer ioctx, String oid, String xattrName, Pointer buf, long len);
+    int rados_setxattr(Pointer ioctx, String oid, String xattrName, Pointer buf, long len);
     int rados_rmxattr(Pointer ioctx, String oid, String xattrName);
     int rados_getxattrs(Pointer ioctx, String oid, Pointer iterator);
     int rados_getxattrs_next(Pointer iterator, PointerByReference attr_name, PointerByReference attr_value, IntByReference len);
+    int rados_getxattrs_next(Pointer iterator, PointerByReference attr_name, PointerByReference attr_value, LongByReference len);
     int rados_getxattrs_end(Pointer iterator);
 
+    // watch and notify
+    int rados_watch2(Pointer ioctx, String oid, LongByReference cookie, WatchCallback watchcb, WatchErrorCallback watcherrcb, Pointer arg);
+    int rados_watch_check(Pointer ioctx, long cookie);
+    int rados_unwatch2(Pointer ioctx, long cookie);
+    int rados_watch_flush(Pointer cluster);
+    int rados_notify2(Pointer ioctx, String oid, byte[] buf, int buf_len, long timeout_ms, PointerByReference reply_buffer, LongByReference reply_buffer_len);
+    int rados_notify_ack(Pointer ioctx, String oid, long notify_id, long cookie, byte[] buf, int buf_len);
+    void rados_buffer_free(Pointer buf);
+
+    // iterate omap results
+    int rados_omap_get_next(Pointer iterator, PointerByReference key, PointerByReference val, LongByReference len);
+    void rados_omap_get_end(Pointer iterator);
+
     // Rados commands
     int rados_mon_command(Pointer cluster, String[] cmd, int cmdLen, String inbuf, int inbufLen, PointerByReference outBuf, IntByReference outBufLen, PointerByReference statusBuf, IntByReference statusBufLen);
     int rados_mon_command_target(Pointer cluster, String target, String[] cmd, int cmdLen, String inbuf, int inbufLen, PointerByReference outBuf, IntByReference outBufLen, PointerByReference statusBuf, IntByReference statusBufLen);
@@ -0,0 +1,39 @@
+/*
+ * RADOS Java - Java bindings for librados
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.ceph.rados.jna;
+
+import com.sun.jna.Pointer;
+import com.sun.jna.Structure;
+import java.util.List;
+import java.util.Arrays;
+
+/**
+ * An entry returned by rados_object_list. The strings are not NUL
+ * terminated, use the lengths.
+ */
+public class RadosObjectListItem extends Structure {
+    public long oid_length;
+    public Pointer oid;
+    public long nspace_length;
+    public Pointer nspace;
+    public long locator_length;
+    public Pointer locator;
+
+    protected List getFieldOrder() {
+        return Arrays.asList("oid_length", "oid", "nspace_length", "nspace", "locator_length", "locator");
+    }
+}
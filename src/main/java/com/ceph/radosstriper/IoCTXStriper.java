@@ -18,13 +18,18 @@
 package com.ceph.radosstriper;
 
 
+import com.ceph.rados.Buffers;
 import com.ceph.rados.RadosBase;
 import com.ceph.rados.exceptions.RadosException;
 import com.ceph.rados.jna.RadosObjectInfo;
 import com.sun.jna.Native;
 import com.sun.jna.Pointer;
 import com.sun.jna.ptr.LongByReference;
+import com.sun.jna.ptr.PointerByReference;
 
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.Callable;
 
 import static com.ceph.radosstriper.Library.rados;
@@ -313,15 +318,102 @@ public class IoCTXStriper extends RadosBase {
      *                        -61 (ENODATA) :   no such attribute
      */
     public String getExtendedAttribute(final String oid, final String xattrName) throws RadosException {
-        final byte[] buf = new byte[EXT_ATTR_MAX_LEN];
-        handleReturnCode(new Callable<Integer>() {
+        return Native.toString(getExtendedAttributeBytes(oid, xattrName));
+    }
+
+    /**
+     * Get the value of an extended attribute on an object as bytes. The value
+     * is read into a buffer kept per thread, larger values are fetched with
+     * their exact size.
+     *
+     * @param oid       The name of the object
+     * @param xattrName The name of the extended attribute
+     * @return The value of the extended attribute, with its exact length
+     * @throws RadosException on failure -- common error codes:
+     *                        -61 (ENODATA) :   no such attribute
+     */
+    public byte[] getExtendedAttributeBytes(final String oid, final String xattrName) throws RadosException {
+        return getXattr(new XattrGetter() {
+            @Override
+            public int get(byte[] buf, long len) {
+                return rados.rados_striper_getxattr(getPointer(), oid, xattrName, buf, len);
+            }
+        }, new Callable<Map<String, byte[]>>() {
+            @Override
+            public Map<String, byte[]> call() throws Exception {
+                return getExtendedAttributesBytes(oid);
+            }
+        }, xattrName, "Failed to get extended attribute %s on %s", xattrName, oid);
+    }
+
+    /**
+     * Get the value of an extended attribute on an object into a direct
+     * buffer. The value is written at the position of the buffer, which is
+     * advanced by its length.
+     *
+     * @param oid       The name of the object
+     * @param xattrName The name of the extended attribute
+     * @param buf       A direct ByteBuffer
+     * @return The length of the value
+     * @throws RadosException on failure -- common error codes:
+     *                        -34 (ERANGE)  :   value exceeds the remaining bytes of the buffer
+     *                        -61 (ENODATA) :   no such attribute
+     */
+    public int getExtendedAttribute(final String oid, final String xattrName, final ByteBuffer buf) throws RadosException {
+        final Pointer ptr = Buffers.writablePointer(buf);
+        final int len = buf.remaining();
+        final int length = handleReturnCode(new Callable<Integer>() {
             @Override
             public Integer call() throws Exception {
-                return rados.rados_striper_getxattr(getPointer(), oid, xattrName, buf, buf.length);
+                return rados.rados_striper_getxattr(getPointer(), oid, xattrName, ptr, len);
             }
         }, "Failed to get extended attribute %s on %s", xattrName, oid);
-        // else...
-        return Native.toString(buf);
+        buf.position(buf.position() + length);
+        return length;
+    }
+
+    /**
+     * Get all extended attributes on an object.
+     *
+     * @param oid The name of the object
+     * @return The map of the extended attributes, up to the first NUL of each value
+     * @throws RadosException on failure
+     */
+    public Map<String, String> getExtendedAttributes(final String oid) throws RadosException {
+        Map<String, String> attrs = new HashMap<>();
+        for (Map.Entry<String, byte[]> attr : getExtendedAttributesBytes(oid).entrySet()) {
+            attrs.put(attr.getKey(), Native.toString(attr.getValue()));
+        }
+        return attrs;
+    }
+
+    /**
+     * Get all extended attributes on an object with their binary values.
+     *
+     * @param oid The name of the object
+     * @return The map of the extended attributes, with values of their exact length
+     * @throws RadosException on failure
+     */
+    public Map<String, byte[]> getExtendedAttributesBytes(final String oid) throws RadosException {
+        final PointerByReference iterator = new PointerByReference();
+        handleReturnCode(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return rados.rados_striper_getxattrs(getPointer(), oid, iterator);
+            }
+        }, "Failed starting to list all extended attributes of %s", oid);
+
+        final Pointer iter = iterator.getValue();
+        try {
+            return readXattrs(new XattrIterator() {
+                @Override
+                public int next(PointerByReference name, PointerByReference value, LongByReference len) {
+                    return rados.rados_striper_getxattrs_next(iter, name, value, len);
+                }
+            });
+        } finally {
+            rados.rados_striper_getxattrs_end(iter);
+        }
     }
 
     /**
@@ -347,6 +439,45 @@ public class IoCTXStriper extends RadosBase {
         }, "Failed to set extended attribute %s on %s", xattrName, oid);
     }
 
+    /**
+     * Set an extended attribute on an object to a binary value.
+     *
+     * @param oid       The name of the object
+     * @param xattrName The name of the extended attribute
+     * @param val       The value of the extended attribute
+     * @throws RadosException on failure
+     */
+    public void setExtendedAttribute(final String oid, final String xattrName, final byte[] val) throws RadosException {
+        handleReturnCode(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return rados.rados_striper_setxattr(getPointer(), oid, xattrName, val, val.length);
+            }
+        }, "Failed to set extended attribute %s on %s", xattrName, oid);
+    }
+
+    /**
+     * Set an extended attribute on an object to the remaining bytes of a
+     * direct buffer. On success the position of the buffer is advanced to
+     * its limit.
+     *
+     * @param oid       The name of the object
+     * @param xattrName The name of the extended attribute
+     * @param val       A direct ByteBuffer holding the value of the extended attribute
+     * @throws RadosException on failure
+     */
+    public void setExtendedAttribute(final String oid, final String xattrName, final ByteBuffer val) throws RadosException {
+        final Pointer ptr = Buffers.pointer(val);
+        final int len = val.remaining();
+        handleReturnCode(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return rados.rados_striper_setxattr(getPointer(), oid, xattrName, ptr, len);
+            }
+        }, "Failed to set extended attribute %s on %s", xattrName, oid);
+        val.position(val.limit());
+    }
+
     /**
      * Delete an extended attribute from an object.
      *
@@ -21,6 +21,7 @@ import com.sun.jna.Library;
 import com.sun.jna.Native;
 import com.sun.jna.Pointer;
 import com.sun.jna.ptr.LongByReference;
+import com.sun.jna.ptr.PointerByReference;
 
 public interface RadosStriper extends Library {
 
@@ -55,6 +56,16 @@ public interface RadosStriper extends Library {
 
     int rados_striper_rmxattr(Pointer striper, String oid, String xattrName);
 
+    int rados_striper_getxattr(Pointer striper, String oid, String xattrName, Pointer buf, long len);
+
+    int rados_striper_setxattr(Pointer striper, String oid, String xattrName, Pointer buf, long len);
+
+    int rados_striper_getxattrs(Pointer striper, String oid, PointerByReference iter);
+
+    int rados_striper_getxattrs_next(Pointer iter, PointerByReference name, PointerByReference val, LongByReference len);
+
+    void rados_striper_getxattrs_end(Pointer iter);
+
     int rados_striper_stat(Pointer striper, String oi, LongByReference size, LongByReference mtime);
 
 }
@@ -18,6 +18,8 @@
 
 package com.ceph.rbd;
 
+import com.ceph.rados.BufferPool;
+import com.ceph.rados.Buffers;
 import com.ceph.rbd.jna.RbdImageInfo;
 import com.ceph.rbd.jna.RbdSnapInfo;
 import com.sun.jna.Pointer;
@@ -26,6 +28,7 @@ import com.sun.jna.Native;
 import com.sun.jna.ptr.IntByReference;
 import com.sun.jna.ptr.LongByReference;
 import com.sun.jna.ptr.PointerByReference;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Arrays;
@@ -295,6 +298,86 @@ public class RbdImage {
         return rbd.rbd_read(this.getPointer(), offset, length, buffer);
     }
 
+    /**
+     * Write the remaining bytes of a direct buffer to an RBD image
+     *
+     * The position of the buffer is advanced to its limit.
+     *
+     * @param offset
+     *         Where to start writing
+     * @param buffer
+     *         A direct ByteBuffer holding the data
+     * @throws RbdException
+     */
+    public void write(long offset, ByteBuffer buffer) throws RbdException {
+        final int length = buffer.remaining();
+        if (length < 1) {
+            throw new RbdException("There should be at least one byte to write");
+        }
+
+        int r = rbd.rbd_write(this.getPointer(), offset, length, Buffers.pointer(buffer));
+        if (r < 0) {
+            throw new RbdException("Failed writing " + length + " bytes starting at offset " + offset, r);
+        }
+        buffer.position(buffer.limit());
+    }
+
+    /**
+     * Read from an RBD image into a direct buffer
+     *
+     * Up to buffer.remaining() bytes are read into the buffer starting at its
+     * position, which is advanced by the number of bytes read.
+     *
+     * @param offset
+     *         Where to start reading
+     * @param buffer
+     *         A direct ByteBuffer to store the result
+     * @return int
+     *          The amount of bytes read
+     * @throws RbdException
+     */
+    public int read(long offset, ByteBuffer buffer) throws RbdException {
+        final int length = buffer.remaining();
+        int r = rbd.rbd_read(this.getPointer(), offset, length, Buffers.writablePointer(buffer));
+        if (r < 0) {
+            throw new RbdException("Failed reading " + length + " bytes starting at offset " + offset, r);
+        }
+        buffer.position(buffer.position() + r);
+        return r;
+    }
+
+    /**
+     * Read from an RBD image into a buffer borrowed from a pool
+     *
+     * @param offset
+     *         Where to start reading
+     * @param length
+     *         The amount of bytes to read
+     * @param pool
+     *         The pool to borrow the buffer from, waiting if its budget is used up
+     * @return ByteBuffer
+     *          The bytes read between position and limit. Hand the buffer
+     *          back with pool.release() once done.
+     * @throws RbdException
+     */
+    public ByteBuffer read(long offset, int length, BufferPool pool) throws RbdException {
+        final ByteBuffer buffer;
+        try {
+            buffer = pool.acquire(length);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RbdException("Interrupted while waiting for a buffer of " + length + " bytes");
+        }
+        try {
+            read(offset, buffer);
+        } catch (RbdException | RuntimeException e) {
+            pool.release(buffer);
+            throw e;
+        }
+        buffer.flip();
+        return buffer;
+    }
+
     /**
      * Resize an RBD image
      *
@@ -55,6 +55,8 @@ public interface Rbd extends Library {
     void rbd_snap_list_end(RbdSnapInfo[] snaps);
     int rbd_write(Pointer image, long offset, int len, byte[] buf);
     int rbd_read(Pointer image, long offset, int length, byte[] buffer);
+    int rbd_write(Pointer image, long offset, long len, Pointer buf);
+    int rbd_read(Pointer image, long offset, long length, Pointer buffer);
     int rbd_copy2(Pointer source_image, Pointer dest_image);
     int rbd_resize(Pointer source_image, long size);
     int rbd_flatten(Pointer image);
@@ -0,0 +1,145 @@
+/*
+ * RADOS Java - Java bindings for librados
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package com.ceph.rados;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BufferPoolTest {
+
+    private static final int KB = 1024;
+
+    @Test
+    public void testSizeClassesAndReuse() throws Exception {
+        BufferPool pool = new BufferPool(64 * KB, 4 * KB, 16 * KB);
+
+        ByteBuffer small = pool.acquire(100);
+        assertTrue(small.isDirect());
+        assertEquals(0, small.position());
+        assertEquals(100, small.limit());
+        assertEquals(4 * KB, small.capacity());
+
+        ByteBuffer medium = pool.acquire(5 * KB);
+        assertEquals(8 * KB, medium.capacity());
+        assertEquals(12 * KB, pool.getAllocatedBytes());
+        assertEquals(2, pool.getBorrowedCount());
+
+        small.put((byte) 1);
+        pool.release(small);
+        assertEquals(4 * KB, pool.getIdleBytes());
+
+        ByteBuffer again = pool.acquire(4 * KB);
+        assertSame(small, again);
+        assertEquals(0, again.position());
+        assertEquals(4 * KB, again.limit());
+        assertEquals(1, pool.getReuseCount());
+        assertEquals(2, pool.getAllocationCount());
+        assertEquals(3, pool.getAcquireCount());
+
+        pool.release(again);
+        pool.release(medium);
+        assertEquals(0, pool.getBorrowedCount());
+        assertEquals(pool.getAllocatedBytes(), pool.getIdleBytes());
+    }
+
+    @Test
+    public void testReleaseOfForeignBuffer() throws Exception {
+        BufferPool pool = new BufferPool(64 * KB, 4 * KB, 16 * KB);
+        try {
+            pool.release(ByteBuffer.allocateDirect(4 * KB));
+            fail("a buffer not borrowed from the pool should be rejected");
+        } catch (IllegalArgumentException e) {
+            // this is expected
+        }
+
+        ByteBuffer buf = pool.acquire(KB);
+        pool.release(buf);
+        try {
+            pool.release(buf);
+            fail("releasing a buffer twice should be rejected");
+        } catch (IllegalArgumentException e) {
+            // this is expected
+        }
+    }
+
+    @Test
+    public void testOversizedBuffersAreNotKept() throws Exception {
+        BufferPool pool = new BufferPool(64 * KB, 4 * KB, 16 * KB);
+        ByteBuffer big = pool.acquire(20 * KB);
+        assertEquals(20 * KB, big.capacity());
+        assertEquals(20 * KB, pool.getAllocatedBytes());
+
+        pool.release(big);
+        assertEquals(0, pool.getAllocatedBytes());
+        assertEquals(0, pool.getIdleBytes());
+    }
+
+    /**
+     * Idle buffers of other size classes make room for a new allocation.
+     */
+    @Test
+    public void testIdleBuffersAreEvictedForBudget() throws Exception {
+        BufferPool pool = new BufferPool(32 * KB, 4 * KB, 16 * KB);
+        ByteBuffer a = pool.acquire(16 * KB);
+        ByteBuffer b = pool.acquire(16 * KB);
+        pool.release(a);
+        pool.release(b);
+        assertEquals(32 * KB, pool.getIdleBytes());
+
+        ByteBuffer c = pool.acquire(8 * KB);
+        assertEquals(8 * KB, c.capacity());
+        assertEquals(1, pool.getEvictionCount());
+        assertEquals(24 * KB, pool.getAllocatedBytes());
+        assertEquals(16 * KB, pool.getIdleBytes());
+        pool.release(c);
+    }
+
+    @Test
+    public void testBackpressureWhenBudgetIsUsedUp() throws Exception {
+        final BufferPool pool = new BufferPool(16 * KB, 4 * KB, 16 * KB);
+        final ByteBuffer all = pool.acquire(16 * KB);
+
+        assertNull(pool.tryAcquire(KB, 10, TimeUnit.MILLISECONDS));
+        assertEquals(1, pool.getWaitCount());
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<ByteBuffer> waiting = executor.submit(() -> pool.acquire(8 * KB));
+            Thread.sleep(50);
+            assertFalse(waiting.isDone());
+
+            pool.release(all);
+            ByteBuffer buf = waiting.get(10, TimeUnit.SECONDS);
+            assertEquals(8 * KB, buf.capacity());
+            assertTrue(pool.getAllocatedBytes() <= pool.getCapacity());
+            pool.release(buf);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
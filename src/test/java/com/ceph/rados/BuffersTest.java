@@ -0,0 +1,68 @@
+/*
+ * RADOS Java - Java bindings for librados
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package com.ceph.rados;
+
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class BuffersTest {
+
+    /**
+     * The pointer handed to librados must alias the buffer itself, otherwise
+     * data would still be staged through a copy.
+     */
+    @Test
+    public void testPointerAliasesBuffer() throws Exception {
+        ByteBuffer buf = ByteBuffer.allocateDirect(64);
+        buf.position(16);
+
+        Pointer ptr = Buffers.pointer(buf);
+        assertEquals(Pointer.nativeValue(Native.getDirectBufferPointer(buf)) + 16, Pointer.nativeValue(ptr));
+
+        ptr.setByte(0, (byte) 42);
+        assertEquals(42, buf.get(16));
+
+        buf.put(17, (byte) 7);
+        assertEquals(7, ptr.getByte(1));
+    }
+
+    @Test
+    public void testPointerOfSlice() throws Exception {
+        ByteBuffer buf = ByteBuffer.allocateDirect(64);
+        buf.position(8);
+        ByteBuffer slice = buf.slice();
+
+        Buffers.pointer(slice).setByte(0, (byte) 1);
+        assertEquals(1, buf.get(8));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testHeapBufferRejected() throws Exception {
+        Buffers.pointer(ByteBuffer.allocate(16));
+    }
+
+    @Test(expected = ReadOnlyBufferException.class)
+    public void testReadOnlyBufferNotWritable() throws Exception {
+        Buffers.writablePointer(ByteBuffer.allocateDirect(16).asReadOnlyBuffer());
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * RADOS Java - Java bindings for librados
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package com.ceph.rados;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CallbackDispatcherTest {
+
+    @Test
+    public void testHandlersRunOffTheCallingThread() throws Exception {
+        try (CallbackDispatcher dispatcher = new CallbackDispatcher(2, 16)) {
+            final AtomicReference<Thread> ranOn = new AtomicReference<>();
+            final CountDownLatch done = new CountDownLatch(1);
+            dispatcher.execute(new Runnable() {
+                @Override
+                public void run() {
+                    ranOn.set(Thread.currentThread());
+                    done.countDown();
+                }
+            });
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            assertNotSame(Thread.currentThread(), ranOn.get());
+            assertTrue(ranOn.get().getName().startsWith("rados-callback-"));
+            assertTrue(ranOn.get().isDaemon());
+        }
+    }
+
+    /**
+     * A full queue must neither block the calling thread, drop handlers nor
+     * run them on the calling thread, they are queued beyond the capacity.
+     */
+    @Test
+    public void testFullQueueOverflowsWithoutWaiting() throws Exception {
+        try (CallbackDispatcher dispatcher = new CallbackDispatcher(1, 1)) {
+            final CountDownLatch release = new CountDownLatch(1);
+            final CountDownLatch started = new CountDownLatch(1);
+            Runnable blocker = new Runnable() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            };
+            dispatcher.execute(blocker);
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            final List<Integer> order = new CopyOnWriteArrayList<>();
+            // occupies the only queue slot
+            dispatcher.execute(new Runnable() {
+                @Override
+                public void run() {
+                    order.add(1);
+                }
+            });
+
+            final AtomicReference<Thread> ranOn = new AtomicReference<>();
+            final CountDownLatch done = new CountDownLatch(1);
+            dispatcher.execute(new Runnable() {
+                @Override
+                public void run() {
+                    ranOn.set(Thread.currentThread());
+                    order.add(2);
+                    done.countDown();
+                }
+            });
+            assertNull(ranOn.get());
+            assertEquals(1, dispatcher.getOverflowCount());
+
+            release.countDown();
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            assertNotSame(Thread.currentThread(), ranOn.get());
+            assertEquals(Arrays.asList(1, 2), order);
+        }
+    }
+
+    @Test
+    public void testExecuteAfterCloseIsRejected() throws Exception {
+        CallbackDispatcher dispatcher = new CallbackDispatcher(1, 4);
+        dispatcher.close();
+        assertTrue(dispatcher.awaitTermination(10, TimeUnit.SECONDS));
+
+        final int[] runs = new int[1];
+        try {
+            dispatcher.execute(new Runnable() {
+                @Override
+                public void run() {
+                    runs[0]++;
+                }
+            });
+            fail("Expected the handler to be rejected");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+        assertEquals(0, runs[0]);
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * RADOS Java - Java bindings for librados
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package com.ceph.rados;
+
+import static com.ceph.rados.Library.rados;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.sun.jna.ptr.PointerByReference;
+
+/**
+ * Measures what CompletionHandlePool saves per operation. Not part of the
+ * unit tests. It needs librados, but not a cluster. Run it on an otherwise
+ * idle machine with:
+ *
+ * <pre>
+ * mvn package -Dcom.ceph.rados.skipTests=true
+ * java -cp target/classes:target/test-classes:target/dependencies/* com.ceph.rados.CompletionHandlePoolBenchmark [operations] [threads...]
+ * </pre>
+ *
+ * Three ways of getting a completion with a callback are compared:
+ * <ul>
+ * <li>new: a new Completion which is closed again, as without the pool</li>
+ * <li>reuse: Completion.recycle(), what the pool does on every reuse</li>
+ * <li>native: rados_aio_create_completion and rados_aio_release alone,
+ *     which every reuse still pays</li>
+ * </ul>
+ * The pool saves the difference between new and reuse. Every variant runs
+ * for several rounds after a warm-up, and the median is reported.
+ */
+public class CompletionHandlePoolBenchmark {
+
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int ROUNDS = 7;
+
+    private interface Variant {
+        void run(int operations) throws Exception;
+    }
+
+    private static final Variant NEW = new Variant() {
+        @Override
+        public void run(int operations) throws Exception {
+            for (int i = 0; i < operations; i++) {
+                new Completion(true, false).close();
+            }
+        }
+
+        @Override
+        public String toString() { return "new"; }
+    };
+
+    private static final Variant REUSE = new Variant() {
+        @Override
+        public void run(int operations) throws Exception {
+            final Completion completion = new Completion(true, false);
+            try {
+                for (int i = 0; i < operations; i++) {
+                    completion.recycle();
+                }
+            } finally {
+                completion.close();
+            }
+        }
+
+        @Override
+        public String toString() { return "reuse"; }
+    };
+
+    private static final Variant NATIVE = new Variant() {
+        @Override
+        public void run(int operations) throws Exception {
+            final PointerByReference completion = new PointerByReference();
+            for (int i = 0; i < operations; i++) {
+                if (rados.rados_aio_create_completion(null, null, null, completion) < 0) {
+                    throw new IllegalStateException("Failed to create completion");
+                }
+                rados.rados_aio_release(completion.getValue());
+            }
+        }
+
+        @Override
+        public String toString() { return "native"; }
+    };
+
+    public static void main(String[] args) throws Exception {
+        final int operations = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        List<Integer> threadCounts = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            threadCounts.add(Integer.parseInt(args[i]));
+        }
+        if (threadCounts.isEmpty()) {
+            threadCounts.addAll(Arrays.asList(1, 4, 16));
+        }
+
+        final Variant[] variants = { NEW, REUSE, NATIVE };
+        System.out.println(String.format("%d operations per thread, %d rounds", operations, ROUNDS));
+        for (int threads : threadCounts) {
+            final double[][] results = new double[variants.length][ROUNDS];
+            for (int round = -WARMUP_ROUNDS; round < ROUNDS; round++) {
+                for (int v = 0; v < variants.length; v++) {
+                    final double nanos = run(variants[v], threads, operations);
+                    if (round >= 0) {
+                        results[v][round] = nanos;
+                    }
+                }
+            }
+            final StringBuilder line = new StringBuilder(String.format("%3d threads:", threads));
+            for (int v = 0; v < variants.length; v++) {
+                line.append(String.format(" %-6s %8.1f ns/op |", variants[v], median(results[v])));
+            }
+            line.append(String.format(" saved %.1f ns/op", median(results[0]) - median(results[1])));
+            System.out.println(line);
+        }
+    }
+
+    /**
+     * @return the wall clock nanoseconds per operation of one thread
+     */
+    private static double run(final Variant variant, int threads, final int operations) throws Exception {
+        final CountDownLatch ready = new CountDownLatch(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                results.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        ready.countDown();
+                        start.await();
+                        variant.run(operations);
+                        return null;
+                    }
+                }));
+            }
+            ready.await();
+            final long begin = System.nanoTime();
+            start.countDown();
+            for (Future<Void> result : results) {
+                result.get();
+            }
+            return (double) (System.nanoTime() - begin) / operations;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * RADOS Java - Java bindings for librados
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package com.ceph.rados;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the throughput of CompletionRegistry with the synchronized
+ * HashMap Completion used before it. Not part of the unit tests, run it on
+ * an otherwise idle machine with:
+ *
+ * <pre>
+ * mvn test-compile
+ * java -cp target/classes:target/test-classes com.ceph.rados.CompletionRegistryBenchmark [operations] [threads...]
+ * </pre>
+ *
+ * Every thread keeps a window of registered entries in flight and, like a
+ * submitting thread followed by a librados callback thread, registers a
+ * new entry, looks up the oldest one and unregisters it. Both
+ * implementations run alternately for several rounds after a warm-up and
+ * the median of the rounds is reported.
+ */
+public class CompletionRegistryBenchmark {
+
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int ROUNDS = 7;
+    private static final int WINDOW = 128;
+
+    private interface Registry {
+        int register(Object entry);
+        Object get(int id);
+        void unregister(int id);
+    }
+
+    private static class LockFree implements Registry {
+        private final CompletionRegistry<Object> registry = new CompletionRegistry<>();
+
+        @Override
+        public int register(Object entry) { return registry.register(entry); }
+
+        @Override
+        public Object get(int id) { return registry.get(id); }
+
+        @Override
+        public void unregister(int id) { registry.unregister(id); }
+
+        @Override
+        public String toString() { return "CompletionRegistry"; }
+    }
+
+    /**
+     * The registration scheme of Completion before CompletionRegistry.
+     */
+    private static class SynchronizedMap implements Registry {
+        private final Map<Integer, Object> map = new HashMap<>();
+        private int nextId = 1;
+
+        @Override
+        public int register(Object entry) {
+            synchronized (map) {
+                int id = nextId++;
+                if (id <= 0) {
+                    id = 1;
+                    nextId = 2;
+                }
+                map.put(id, entry);
+                return id;
+            }
+        }
+
+        @Override
+        public Object get(int id) {
+            synchronized (map) {
+                return map.get(id);
+            }
+        }
+
+        @Override
+        public void unregister(int id) {
+            synchronized (map) {
+                map.remove(id);
+            }
+        }
+
+        @Override
+        public String toString() { return "synchronized HashMap"; }
+    }
+
+    public static void main(String[] args) throws Exception {
+        final int operations = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        List<Integer> threadCounts = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            threadCounts.add(Integer.parseInt(args[i]));
+        }
+        if (threadCounts.isEmpty()) {
+            threadCounts.addAll(Arrays.asList(1, 2, 4, 8, 16));
+        }
+
+        System.out.println(String.format("%d operations per thread, %d rounds, window of %d", operations, ROUNDS, WINDOW));
+        for (int threads : threadCounts) {
+            double[] lockFree = new double[ROUNDS];
+            double[] synchronizedMap = new double[ROUNDS];
+            for (int round = -WARMUP_ROUNDS; round < ROUNDS; round++) {
+                double a = run(new LockFree(), threads, operations);
+                double b = run(new SynchronizedMap(), threads, operations);
+                if (round >= 0) {
+                    lockFree[round] = a;
+                    synchronizedMap[round] = b;
+                }
+            }
+            double a = median(lockFree);
+            double b = median(synchronizedMap);
+            System.out.println(String.format("%3d threads: %-20s %,14.0f ops/s | %-20s %,14.0f ops/s | %.2fx",
+                    threads, new LockFree(), a, new SynchronizedMap(), b, a / b));
+        }
+    }
+
+    /**
+     * @return register/get/unregister operations per second over all threads
+     */
+    private static double run(final Registry registry, int threads, final int operations) throws Exception {
+        final CountDownLatch ready = new CountDownLatch(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                results.add(executor.submit(() -> {
+                    final Object entry = new Object();
+                    final int[] window = new int[WINDOW];
+                    for (int i = 0; i < WINDOW; i++) {
+                        window[i] = registry.register(entry);
+                    }
+                    ready.countDown();
+                    start.await();
+                    int misses = 0;
+                    for (int i = 0; i < operations; i++) {
+                        final int slot = i % WINDOW;
+                        final int oldest = window[slot];
+                        window[slot] = registry.register(entry);
+                        if (registry.get(oldest) != entry) {
+                            misses++;
+                        }
+                        registry.unregister(oldest);
+                    }
+                    for (int id : window) {
+                        registry.unregister(id);
+                    }
+                    return misses;
+                }));
+            }
+            ready.await();
+            final long begin = System.nanoTime();
+            start.countDown();
+            for (Future<Integer> result : results) {
+                if (result.get() != 0) {
+                    throw new IllegalStateException(registry + " lost entries");
+                }
+            }
+            final long elapsed = System.nanoTime() - begin;
+            return threads * (double) operations / elapsed * TimeUnit.SECONDS.toNanos(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
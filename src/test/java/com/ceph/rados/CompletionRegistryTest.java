@@ -0,0 +1,103 @@
+/*
+ * RADOS Java - Java bindings for librados
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package com.ceph.rados;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CompletionRegistryTest {
+
+    private static final int THREADS = 8;
+    private static final int OPERATIONS = 100000;
+
+    @Test
+    public void testRegisterGetUnregister() throws Exception {
+        CompletionRegistry<Object> registry = new CompletionRegistry<>();
+        Object entry = new Object();
+
+        int id = registry.register(entry);
+        assertTrue(id > 0);
+        assertSame(entry, registry.get(id));
+        assertEquals(1, registry.size());
+
+        registry.unregister(id);
+        assertNull(registry.get(id));
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    public void testNextIdSkipsRegisteredIds() throws Exception {
+        CompletionRegistry<Object> registry = new CompletionRegistry<>();
+        int id = registry.register(new Object());
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(registry.nextId() != id);
+        }
+    }
+
+    /**
+     * Register, look up and unregister from many threads at once, the way
+     * submitting threads and librados callback threads use the registry.
+     * See CompletionRegistryBenchmark for the throughput comparison.
+     */
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        final CompletionRegistry<Object> registry = new CompletionRegistry<>();
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                results.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        start.await();
+                        int mismatches = 0;
+                        for (int i = 0; i < OPERATIONS; i++) {
+                            Object entry = new Object();
+                            int id = registry.register(entry);
+                            if (registry.get(id) != entry) {
+                                mismatches++;
+                            }
+                            registry.unregister(id);
+                        }
+                        return mismatches;
+                    }
+                }));
+            }
+
+            start.countDown();
+            for (Future<Integer> result : results) {
+                assertEquals(0, result.get(60, TimeUnit.SECONDS).intValue());
+            }
+            assertEquals(0, registry.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
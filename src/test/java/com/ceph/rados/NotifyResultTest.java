@@ -0,0 +1,63 @@
+/*
+ * RADOS Java - Java bindings for librados
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package com.ceph.rados;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NotifyResultTest {
+
+    @Test
+    public void testDecodeAcksAndTimeouts() {
+        ByteBuffer buf = ByteBuffer.allocate(128).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(2);
+        buf.putLong(4100).putLong(1).putInt(3).put(new byte[] { 'o', 'k', 0 });
+        buf.putLong(4200).putLong(7).putInt(0);
+        buf.putInt(1);
+        buf.putLong(4300).putLong(9);
+
+        NotifyResult result = NotifyResult.decode(Arrays.copyOf(buf.array(), buf.position()));
+        assertEquals(2, result.getAcks().size());
+        assertEquals(4100, result.getAcks().get(0).getNotifierId());
+        assertEquals(1, result.getAcks().get(0).getCookie());
+        assertArrayEquals(new byte[] { 'o', 'k', 0 }, result.getAcks().get(0).getReply());
+        assertEquals(0, result.getAcks().get(1).getReply().length);
+        assertEquals(1, result.getTimeouts().size());
+        assertEquals(4300, result.getTimeouts().get(0).getNotifierId());
+        assertEquals(9, result.getTimeouts().get(0).getCookie());
+    }
+
+    @Test
+    public void testDecodeEmptyReply() {
+        NotifyResult result = NotifyResult.decode(new byte[0]);
+        assertTrue(result.getAcks().isEmpty());
+        assertTrue(result.getTimeouts().isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecodeTruncatedReply() {
+        ByteBuffer buf = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(1).putLong(4100);
+        NotifyResult.decode(buf.array());
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * RADOS Java - Java bindings for librados
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package com.ceph.rados;
+
+import java.nio.charset.StandardCharsets;
+
+import com.ceph.rados.jna.RadosObjectListItem;
+import com.sun.jna.Memory;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+public class ObjectListEntryTest {
+
+    @Test
+    public void testDecodeItemWithNamespaceAndLocator() {
+        RadosObjectListItem item = new RadosObjectListItem();
+        // the strings are not NUL terminated, only the lengths count
+        item.oid = memory("objectXX");
+        item.oid_length = 6;
+        item.nspace = memory("ns1");
+        item.nspace_length = 3;
+        item.locator = memory("key");
+        item.locator_length = 3;
+
+        ObjectListEntry entry = ObjectListEntry.from(item);
+        assertEquals("object", entry.getOid());
+        assertEquals("ns1", entry.getNamespace());
+        assertEquals("key", entry.getLocator());
+        assertEquals("ns1/object", entry.toString());
+    }
+
+    @Test
+    public void testDecodeItemInDefaultNamespace() {
+        RadosObjectListItem item = new RadosObjectListItem();
+        item.oid = memory("object");
+        item.oid_length = 6;
+
+        ObjectListEntry entry = ObjectListEntry.from(item);
+        assertEquals("", entry.getNamespace());
+        assertNull(entry.getLocator());
+        assertEquals(new ObjectListEntry("", "object", null), entry);
+        assertNotEquals(new ObjectListEntry("ns1", "object", null), entry);
+    }
+
+    private static Memory memory(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        Memory memory = new Memory(bytes.length);
+        memory.write(0, bytes, 0, bytes.length);
+        return memory;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * RADOS Java - Java bindings for librados
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package com.ceph.rados;
+
+import java.nio.charset.StandardCharsets;
+
+import com.sun.jna.Memory;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ObjectListFilterTest {
+
+    @Test
+    public void testPlainFilterEncoding() {
+        byte[] filter = ObjectListFilter.xattrEquals("tag", new byte[] { 7, 8 }).getServerFilter();
+        byte[] expected = {
+            5, 0, 0, 0, 'p', 'l', 'a', 'i', 'n',
+            4, 0, 0, 0, '_', 't', 'a', 'g',
+            2, 0, 0, 0, 7, 8
+        };
+        assertArrayEquals(expected, filter);
+    }
+
+    @Test
+    public void testPrefixMatchesRawNames() {
+        ObjectListFilter filter = ObjectListFilter.prefix("abc");
+        assertNull(filter.getServerFilter());
+        assertTrue(filter.matches(memory("abcdef"), 6));
+        assertTrue(filter.matches(memory("abc"), 3));
+        assertFalse(filter.matches(memory("abx"), 3));
+        assertFalse(filter.matches(memory("ab"), 2));
+    }
+
+    @Test
+    public void testCombinedFilterKeepsServerFilter() {
+        ObjectListFilter filter = ObjectListFilter.xattrEquals("tag", new byte[] { 1 }).withPrefix("a");
+        assertArrayEquals(ObjectListFilter.plainFilter("tag", new byte[] { 1 }), filter.getServerFilter());
+        assertFalse(filter.matches(memory("b"), 1));
+    }
+
+    private static Memory memory(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        Memory memory = new Memory(bytes.length + 1);
+        memory.write(0, bytes, 0, bytes.length);
+        memory.setByte(bytes.length, (byte) 0);
+        return memory;
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * RADOS Java - Java bindings for librados
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package com.ceph.rados;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.ceph.rados.exceptions.ErrorCode;
+import com.ceph.rados.exceptions.RadosException;
+import com.ceph.rados.exceptions.RadosNotFoundException;
+import com.ceph.rados.jna.RadosObjectInfo;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ObjectMetadataCacheTest {
+
+    /**
+     * Serves objects from a map and counts the lookups, without a cluster.
+     */
+    private static class FakeIoCTX extends IoCTX {
+        final Map<String, RadosObjectInfo> objects = new HashMap<>();
+        final Map<String, Map<String, byte[]>> xattrs = new HashMap<>();
+        int stats;
+        int listings;
+
+        FakeIoCTX() {
+            super(null);
+        }
+
+        @Override
+        public RadosObjectInfo stat(String oid) throws RadosException {
+            stats++;
+            final RadosObjectInfo info = objects.get(oid);
+            if (info == null) {
+                throw new RadosNotFoundException(oid, ErrorCode.ENOENT.getErrorCode());
+            }
+            return info;
+        }
+
+        @Override
+        public Map<String, byte[]> getExtendedAttributesBytes(String oid) throws RadosException {
+            listings++;
+            if (!objects.containsKey(oid)) {
+                throw new RadosNotFoundException(oid, ErrorCode.ENOENT.getErrorCode());
+            }
+            final Map<String, byte[]> values = xattrs.get(oid);
+            return values == null ? new HashMap<String, byte[]>() : new HashMap<>(values);
+        }
+    }
+
+    @Test
+    public void testStatIsCachedUntilModified() throws Exception {
+        FakeIoCTX ioctx = new FakeIoCTX();
+        ioctx.objects.put("a", new RadosObjectInfo("a", 10, 1));
+        try (ObjectMetadataCache cache = ioctx.createMetadataCache(16, 1, TimeUnit.HOURS)) {
+            assertEquals(10, cache.stat("a").getSize());
+            assertEquals(10, cache.stat("a").getSize());
+            assertEquals(1, ioctx.stats);
+            assertEquals(1, cache.getHits());
+            assertEquals(1, cache.getMisses());
+
+            ioctx.objects.put("a", new RadosObjectInfo("a", 20, 2));
+            ioctx.objectChanged("a");
+            assertEquals(20, cache.stat("a").getSize());
+            assertEquals(2, ioctx.stats);
+        }
+    }
+
+    @Test
+    public void testMissingObjectIsCached() throws Exception {
+        FakeIoCTX ioctx = new FakeIoCTX();
+        try (ObjectMetadataCache cache = ioctx.createMetadataCache(16, 1, TimeUnit.HOURS)) {
+            for (int i = 0; i < 2; i++) {
+                try {
+                    cache.stat("missing");
+                    fail("Expected a RadosNotFoundException");
+                } catch (RadosNotFoundException e) {
+                    assertEquals(ErrorCode.ENOENT.getErrorCode(), e.getReturnValue());
+                }
+            }
+            try {
+                cache.getExtendedAttributes("missing");
+                fail("Expected a RadosNotFoundException");
+            } catch (RadosNotFoundException e) {
+                // served from the negative entry
+            }
+            assertEquals(1, ioctx.stats);
+            assertEquals(0, ioctx.listings);
+
+            ioctx.objects.put("missing", new RadosObjectInfo("missing", 1, 1));
+            ioctx.objectChanged("missing");
+            assertEquals(1, cache.stat("missing").getSize());
+        }
+    }
+
+    @Test
+    public void testNegativeCachingCanBeDisabled() throws Exception {
+        FakeIoCTX ioctx = new FakeIoCTX();
+        try (ObjectMetadataCache cache = ioctx.createMetadataCache(16, 1, 0, TimeUnit.HOURS)) {
+            for (int i = 0; i < 2; i++) {
+                try {
+                    cache.stat("missing");
+                    fail("Expected a RadosNotFoundException");
+                } catch (RadosNotFoundException e) {
+                    // not cached
+                }
+            }
+            assertEquals(2, ioctx.stats);
+        }
+    }
+
+    @Test
+    public void testExtendedAttributesAreListedOnce() throws Exception {
+        FakeIoCTX ioctx = new FakeIoCTX();
+        ioctx.objects.put("a", new RadosObjectInfo("a", 0, 1));
+        Map<String, byte[]> values = new HashMap<>();
+        values.put("key", new byte[] { 1, 0, 2 });
+        ioctx.xattrs.put("a", values);
+        try (ObjectMetadataCache cache = ioctx.createMetadataCache(16, 1, TimeUnit.HOURS)) {
+            byte[] value = cache.getExtendedAttributeBytes("a", "key");
+            assertArrayEquals(new byte[] { 1, 0, 2 }, value);
+            // a copy is returned, the cached value is untouched
+            value[0] = 9;
+            assertArrayEquals(new byte[] { 1, 0, 2 }, cache.getExtendedAttributeBytes("a", "key"));
+            try {
+                cache.getExtendedAttributeBytes("a", "other");
+                fail("Expected ENODATA");
+            } catch (RadosException e) {
+                assertEquals(ErrorCode.ENODATA.getErrorCode(), e.getReturnValue());
+            }
+            assertEquals(1, ioctx.listings);
+            assertEquals(2, cache.getHits());
+        }
+    }
+
+    @Test
+    public void testEntriesExpire() throws Exception {
+        FakeIoCTX ioctx = new FakeIoCTX();
+        ioctx.objects.put("a", new RadosObjectInfo("a", 10, 1));
+        try (ObjectMetadataCache cache = ioctx.createMetadataCache(16, 1, TimeUnit.MILLISECONDS)) {
+            cache.stat("a");
+            Thread.sleep(10);
+            cache.stat("a");
+            assertEquals(2, ioctx.stats);
+        }
+    }
+
+    @Test
+    public void testLeastRecentlyUsedObjectIsEvicted() throws Exception {
+        FakeIoCTX ioctx = new FakeIoCTX();
+        for (String oid : new String[] { "a", "b", "c" }) {
+            ioctx.objects.put(oid, new RadosObjectInfo(oid, 1, 1));
+        }
+        try (ObjectMetadataCache cache = ioctx.createMetadataCache(2, 1, TimeUnit.HOURS)) {
+            cache.stat("a");
+            cache.stat("b");
+            cache.stat("a");
+            cache.stat("c");
+            assertEquals(2, cache.size());
+            assertEquals(3, ioctx.stats);
+            cache.stat("a");
+            assertEquals(3, ioctx.stats);
+            cache.stat("b");
+            assertEquals(4, ioctx.stats);
+        }
+    }
+
+    @Test
+    public void testClosedCacheStopsListening() throws Exception {
+        FakeIoCTX ioctx = new FakeIoCTX();
+        ioctx.objects.put("a", new RadosObjectInfo("a", 10, 1));
+        ObjectMetadataCache cache = ioctx.createMetadataCache(16, 1, TimeUnit.HOURS);
+        cache.stat("a");
+        cache.close();
+        assertEquals(0, cache.size());
+        cache.stat("a");
+        ioctx.objectChanged("a");
+        assertEquals(1, cache.size());
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * RADOS Java - Java bindings for librados
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package com.ceph.rados;
+
+import com.sun.jna.Memory;
+import com.sun.jna.Pointer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class ReadOpResultTest {
+
+    /**
+     * Counts decode and end calls instead of calling librados.
+     */
+    private static class CountingResult extends ReadOp.IteratorResult<String> {
+        int decoded;
+        int ended;
+
+        CountingResult() {
+            iter.setValue(new Memory(8));
+        }
+
+        @Override
+        String decode(Pointer iterator) {
+            decoded++;
+            return "value";
+        }
+
+        @Override
+        void end(Pointer iterator) {
+            ended++;
+        }
+    }
+
+    @Test
+    public void testDecodedOnceOnFirstAccess() throws Exception {
+        CountingResult result = new CountingResult();
+        result.setOperated();
+        assertEquals(0, result.decoded);
+
+        assertEquals("value", result.get());
+        assertEquals("value", result.get());
+        result.release();
+        assertEquals(1, result.decoded);
+        assertEquals(1, result.ended);
+    }
+
+    @Test
+    public void testReleasedWithoutDecodingIfNotExecuted() throws Exception {
+        CountingResult result = new CountingResult();
+        try {
+            result.get();
+            fail("reading a result before operate() should fail");
+        } catch (IllegalStateException e) {
+            // this is expected
+        }
+
+        result.release();
+        assertEquals(0, result.decoded);
+        assertEquals(1, result.ended);
+
+        // executed after all, but the iterator is gone
+        result.setOperated();
+        assertNull(result.get());
+        assertEquals(1, result.ended);
+    }
+}
@@ -27,11 +27,30 @@ import com.ceph.rados.jna.RadosPoolInfo;
 import com.ceph.rados.exceptions.ErrorCode;
 import com.ceph.rados.exceptions.RadosException;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import com.sun.jna.Pointer;
 
@@ -267,6 +286,281 @@ public final class TestRados {
         }
     }
 
+    /**
+     * Write, append and read an object through direct ByteBuffers
+     */
+    @Test
+    public void testIoCtxDirectBuffers() throws Exception {
+        String oid = "rados-java_directBuffers";
+        byte[] content = "junit wrote this".getBytes();
+
+        try {
+            ByteBuffer buf = ByteBuffer.allocateDirect(content.length);
+            buf.put(content).flip();
+            ioctx.writeFull(oid, buf);
+            assertEquals("The buffer should have been consumed", 0, buf.remaining());
+
+            buf.rewind();
+            ioctx.append(oid, buf);
+            assertEquals("The size doesn't match after the append", content.length * 2, ioctx.stat(oid).getSize());
+
+            // overwrite the first 4 bytes with a slice of the content
+            buf.position(content.length - 4);
+            ioctx.write(oid, buf, 0);
+
+            ByteBuffer readBuf = ByteBuffer.allocateDirect(content.length * 2);
+            int len = ioctx.read(oid, 0, readBuf);
+            assertEquals(content.length * 2, len);
+            assertEquals(len, readBuf.position());
+
+            readBuf.flip();
+            byte[] result = new byte[len];
+            readBuf.get(result);
+            assertTrue(Arrays.equals(Arrays.copyOfRange(content, content.length - 4, content.length), Arrays.copyOf(result, 4)));
+            assertTrue(Arrays.equals(Arrays.copyOfRange(content, 4, content.length), Arrays.copyOfRange(result, 4, content.length)));
+            assertTrue(Arrays.equals(content, Arrays.copyOfRange(result, content.length, len)));
+        } finally {
+            cleanupObject(rados, ioctx, oid);
+        }
+    }
+
+    /**
+     * Append, stat, read and remove an object using only asynchronous operations
+     */
+    @Test
+    public void testIoCtxAioReadAppendStatRemove() throws Exception {
+        String oid = "rados-java_aio";
+        byte[] content = "junit wrote this".getBytes();
+
+        try {
+            try (Completion completion = new Completion(false, false)) {
+                ioctx.aioAppend(oid, completion, content);
+                completion.waitForComplete();
+                assertEquals(0, completion.getReturnValue());
+            }
+
+            try (Completion completion = new Completion(false, false)) {
+                IoCTX.StatResult stat = ioctx.aioStat(oid, completion);
+                completion.waitForComplete();
+                assertEquals(0, completion.getReturnValue());
+                assertEquals(content.length, stat.getSize());
+                assertEquals(oid, stat.getObjectInfo().getOid());
+            }
+
+            try (Completion completion = new Completion(false, false)) {
+                ByteBuffer buf = ByteBuffer.allocateDirect(content.length + 10);
+                ioctx.aioRead(oid, completion, buf, 0);
+                completion.waitForComplete();
+                assertEquals(content.length, completion.getReturnValue());
+
+                byte[] result = new byte[content.length];
+                buf.get(result);
+                assertTrue(Arrays.equals(content, result));
+            }
+
+            try (Completion completion = new Completion(false, false)) {
+                ioctx.aioRemove(oid, completion);
+                completion.waitForComplete();
+                assertEquals(0, completion.getReturnValue());
+            }
+
+            try (Completion completion = new Completion(false, false)) {
+                ioctx.aioStat(oid, completion);
+                completion.waitForComplete();
+                assertEquals(ErrorCode.ENOENT.getErrorCode(), completion.getReturnValue());
+            }
+        } finally {
+            try {
+                cleanupObject(rados, ioctx, oid);
+            } catch (RadosNotFoundException e) {
+                // already removed by the test
+            }
+        }
+    }
+
+    /**
+     * Chain asynchronous operations through the CompletableFuture based API
+     */
+    @Test
+    public void testAsyncIoCtxFutures() throws Exception {
+        final String oid = "rados-java_futures";
+        final byte[] content = "junit wrote this".getBytes();
+        final AsyncIoCTX async = ioctx.async();
+
+        try {
+            RadosObjectInfo info = async.writeFull(oid, content)
+                    .thenCompose(v -> async.append(oid, content))
+                    .thenCompose(v -> async.stat(oid))
+                    .get(30, TimeUnit.SECONDS);
+            assertEquals(content.length * 2, info.getSize());
+
+            byte[] data = async.read(oid, content.length, content.length).get(30, TimeUnit.SECONDS);
+            assertTrue(Arrays.equals(content, data));
+
+            async.remove(oid).get(30, TimeUnit.SECONDS);
+
+            try {
+                async.stat(oid).get(30, TimeUnit.SECONDS);
+                fail("stat of a removed object should fail");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof RadosNotFoundException);
+            }
+        } finally {
+            try {
+                cleanupObject(rados, ioctx, oid);
+            } catch (RadosNotFoundException e) {
+                // already removed by the test
+            }
+        }
+    }
+
+    /**
+     * Futures of an AsyncIoCTX with an executor complete on the executor's threads
+     */
+    @Test
+    public void testAsyncIoCtxWithDispatcher() throws Exception {
+        final String oid = "rados-java_dispatcher";
+        final byte[] content = "junit wrote this".getBytes();
+
+        CallbackDispatcher dispatcher = new CallbackDispatcher(2, 64);
+        try {
+            AsyncIoCTX async = ioctx.async(dispatcher);
+            async.writeFull(oid, content).get(30, TimeUnit.SECONDS);
+            assertEquals(content.length, async.stat(oid).get(30, TimeUnit.SECONDS).getSize());
+
+            dispatcher.close();
+            assertTrue(dispatcher.awaitTermination(30, TimeUnit.SECONDS));
+            assertEquals("Both completions should have been handled by the dispatcher", 2, dispatcher.getCompletedCount());
+        } finally {
+            dispatcher.close();
+            cleanupObject(rados, ioctx, oid);
+        }
+    }
+
+    /**
+     * Completions released to a CompletionHandlePool are reused, unreleased ones are reported as leaks
+     */
+    @Test
+    public void testCompletionPool() throws Exception {
+        final String oid = "rados-java_completionPool";
+        final byte[] content = "junit wrote this".getBytes();
+
+        try (CompletionHandlePool pool = new CompletionHandlePool(4, new CompletionHandlePool.Factory() {
+            @Override
+            public Completion create() throws RadosException {
+                return new Completion(false, false);
+            }
+        }, true)) {
+            for (int i = 0; i < 10; i++) {
+                Completion completion = pool.acquire();
+                ioctx.aioWrite(oid, completion, content, i * content.length);
+                completion.waitForComplete();
+                assertEquals(0, completion.getReturnValue());
+                pool.release(completion);
+            }
+            assertEquals(1, pool.getCreatedCount());
+            assertEquals(9, pool.getReusedCount());
+            assertEquals(content.length * 10, ioctx.stat(oid).getSize());
+
+            Completion leaked = pool.acquire();
+            List<CompletionHandlePool.Leak> leaks = pool.findLeaks(0, TimeUnit.MILLISECONDS);
+            assertEquals(1, leaks.size());
+            assertEquals(leaked, leaks.get(0).getCompletion());
+            assertNotNull(leaks.get(0).getAcquireSite());
+
+            // never used, so it is not reused
+            pool.release(leaked);
+            assertEquals(1, pool.getDiscardedCount());
+            assertEquals(0, pool.getOutstandingCount());
+        } finally {
+            cleanupObject(rados, ioctx, oid);
+        }
+    }
+
+    /**
+     * A completion released while its handler is still queued is not reused
+     * until the handler finished, and the handler still sees its own result
+     */
+    @Test
+    public void testCompletionPoolWaitsForHandlers() throws Exception {
+        final String oid = "rados-java_completionPoolHandlers";
+        final byte[] content = "junit wrote this".getBytes();
+        final CallbackDispatcher dispatcher = new CallbackDispatcher(1, 16);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final BlockingQueue<Integer> returnValues = new LinkedBlockingQueue<>();
+
+        try (CompletionHandlePool pool = new CompletionHandlePool(4, new CompletionHandlePool.Factory() {
+            @Override
+            public Completion create() throws RadosException {
+                return new Completion(true, false, dispatcher) {
+                    @Override
+                    public void onComplete() {
+                        returnValues.add(getReturnValue());
+                    }
+                };
+            }
+        })) {
+            // keeps the dispatcher thread busy, so the handler stays queued
+            dispatcher.execute(new Runnable() {
+                @Override
+                public void run() {
+                    blocked.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            assertTrue(blocked.await(10, TimeUnit.SECONDS));
+
+            Completion first = pool.acquire();
+            ioctx.aioWrite(oid, first, content, 0);
+            first.waitForComplete();
+            pool.release(first);
+
+            Completion second = pool.acquire();
+            assertFalse("A completion with a queued handler should not be reused", first == second);
+            assertEquals(2, pool.getCreatedCount());
+            pool.release(second);
+
+            release.countDown();
+            assertEquals(0, returnValues.poll(30, TimeUnit.SECONDS).intValue());
+        } finally {
+            release.countDown();
+            dispatcher.close();
+            cleanupObject(rados, ioctx, oid);
+        }
+    }
+
+    @Test
+    public void testBulkWriteAll() throws Exception {
+        final String prefix = "rados-java_bulk-";
+        final byte[] content = "junit wrote this".getBytes();
+        Map<String, byte[]> objects = new HashMap<>();
+        for (int i = 0; i < 64; i++) {
+            objects.put(prefix + i, content);
+        }
+
+        try {
+            // a byte window of three objects limits the writes in flight below the op window
+            BulkWriter.BulkWriteResult result = ioctx.writeAll(objects.entrySet().iterator(), 8, content.length * 3);
+            assertEquals(objects.size(), result.getWritten());
+            assertEquals(objects.size() * content.length, result.getBytesWritten());
+            assertTrue(result.getFailures().isEmpty());
+            assertTrue(result.getObjectsPerSecond() > 0);
+
+            for (String oid : objects.keySet()) {
+                verifyDocument(oid, content);
+            }
+        } finally {
+            for (String oid : objects.keySet()) {
+                cleanupObject(rados, ioctx, oid);
+            }
+        }
+    }
+
     private void verifyDocument(String oid, byte[] content) throws RadosException {
         byte[] buf = new byte[content.length];
         int len = ioctx.read(oid, content.length, 0, buf);
@@ -400,6 +694,729 @@ public final class TestRados {
         }
     }
 
+    @Test
+    public void testReadOpMetadataAndData() throws Exception {
+        final String oid = "rados-java_readOpMetadata";
+        final String content = "The quick brown fox jumped over the lazy dog.";
+
+        try {
+            try (WriteOp wop = ioctx.writeOpCreate()) {
+                wop.queueWriteFull(content.getBytes());
+                wop.queueSetXattr("color", "brown".getBytes());
+                wop.queueSetXattr("empty", new byte[0]);
+                Map<String, byte[]> omap = new HashMap<>();
+                omap.put("a", "1".getBytes());
+                omap.put("b", "2".getBytes());
+                omap.put("c", "3".getBytes());
+                wop.queueOmapSet(omap);
+                wop.operate(oid, Rados.OPERATION_NOFLAG);
+            }
+
+            ReadOp.XattrsResult xattrs;
+            try (ReadOp rop = ioctx.readOpCreate()) {
+                rop.queueAssertExists();
+                rop.queueCmpXattr("color", Rados.CMPXATTR_OP_EQ, "brown".getBytes());
+                ReadOp.StatResult stat = rop.queueStat();
+                xattrs = rop.queueGetXattrs();
+                ReadOp.OmapResult omap = rop.queueOmapGetValsByKeys("a", "c", "missing");
+                ReadOp.OmapKeysResult keys = rop.queueOmapGetKeys("a", 1);
+                ReadResult data = rop.queueRead(0, content.length());
+                rop.operate(oid, Rados.OPERATION_NOFLAG);
+
+                stat.raiseExceptionOnError("stat %s", oid);
+                assertEquals(content.length(), stat.getSize());
+                assertTrue(stat.getMtime() > 0);
+
+                assertEquals(2, omap.getValues().size());
+                assertEquals("1", new String(omap.getValues().get("a")));
+                assertEquals("3", new String(omap.getValues().get("c")));
+
+                assertEquals(Arrays.asList("b"), keys.getKeys());
+                assertTrue(keys.isMore());
+
+                assertEquals(content.length(), data.getBytesRead());
+            }
+            // decoded on close, so still usable
+            assertEquals("brown", new String(xattrs.getXattr("color")));
+            assertEquals(0, xattrs.getXattr("empty").length);
+            assertEquals(null, xattrs.getXattr("missing"));
+
+            try (ReadOp rop = ioctx.readOpCreate()) {
+                rop.queueCmpXattr("color", Rados.CMPXATTR_OP_EQ, "red".getBytes());
+                rop.queueStat();
+                rop.operate(oid, Rados.OPERATION_NOFLAG);
+                fail("the xattr comparison should have failed");
+            } catch (RadosException e) {
+                assertEquals(ErrorCode.ECANCELED.getErrorCode(), e.getReturnValue());
+            }
+
+            try (ReadOp rop = ioctx.readOpCreate()) {
+                rop.queueAssertExists();
+                rop.operate("rados-java_readOpMissing", Rados.OPERATION_NOFLAG);
+                fail("assert_exists should have failed");
+            } catch (RadosNotFoundException e) {
+                // this is expected
+            }
+        } finally {
+            cleanupObject(rados, ioctx, oid);
+        }
+    }
+
+    @Test
+    public void testAsyncReadOpAndWriteOp() throws Exception {
+        final String prefix = "rados-java_asyncOp-";
+        final int count = 8;
+        final AsyncIoCTX async = ioctx.async();
+
+        try {
+            List<WriteOp> writeOps = new ArrayList<>();
+            List<CompletableFuture<Void>> writes = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                WriteOp wop = ioctx.writeOpCreate();
+                wop.queueWriteFull(("object " + i).getBytes());
+                wop.queueSetXattr("index", String.valueOf(i).getBytes());
+                writeOps.add(wop);
+                writes.add(async.operate(prefix + i, wop, Rados.OPERATION_NOFLAG));
+            }
+            for (int i = 0; i < count; i++) {
+                writes.get(i).get(30, TimeUnit.SECONDS);
+                writeOps.get(i).close();
+            }
+
+            // several compound reads in flight at once
+            List<ReadOp> readOps = new ArrayList<>();
+            List<ReadOp.StatResult> stats = new ArrayList<>();
+            List<ReadOp.XattrsResult> xattrs = new ArrayList<>();
+            List<CompletableFuture<Void>> reads = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                ReadOp rop = ioctx.readOpCreate();
+                stats.add(rop.queueStat());
+                xattrs.add(rop.queueGetXattrs());
+                readOps.add(rop);
+                reads.add(async.operate(prefix + i, rop, Rados.OPERATION_NOFLAG));
+            }
+            for (int i = 0; i < count; i++) {
+                reads.get(i).get(30, TimeUnit.SECONDS);
+                assertEquals(("object " + i).length(), stats.get(i).getSize());
+                assertEquals(String.valueOf(i), new String(xattrs.get(i).getXattr("index")));
+                readOps.get(i).close();
+            }
+
+            try (ReadOp rop = ioctx.readOpCreate()) {
+                rop.queueAssertExists();
+                async.operate(prefix + "missing", rop, Rados.OPERATION_NOFLAG).get(30, TimeUnit.SECONDS);
+                fail("assert_exists should have failed");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof RadosNotFoundException);
+            }
+        } finally {
+            for (int i = 0; i < count; i++) {
+                cleanupObject(rados, ioctx, prefix + i);
+            }
+        }
+    }
+
+    @Test
+    public void testPooledReads() throws Exception {
+        final String oid = "rados-java_pooledReads";
+        final String content = "The quick brown fox jumped over the lazy dog.";
+        final BufferPool pool = new BufferPool(4 * 1024 * 1024);
+        ioctx.write(oid, content);
+
+        try {
+            ByteBuffer buf = ioctx.read(oid, 100, 4, pool);
+            byte[] data = new byte[buf.remaining()];
+            buf.get(data);
+            assertEquals(content.substring(4), new String(data));
+            pool.release(buf);
+
+            try (ReadOp rop = ioctx.readOpCreate()) {
+                ReadResult result = rop.queueRead(0, 9, pool);
+                rop.operate(oid, Rados.OPERATION_NOFLAG);
+                assertEquals(9, result.getBytesRead());
+                result.release();
+            }
+            assertEquals(0, pool.getBorrowedCount());
+            assertEquals(1, pool.getReuseCount());
+        } finally {
+            cleanupObject(rados, ioctx, oid);
+        }
+    }
+
+    @Test
+    public void testObjectStreams() throws Exception {
+        final String oid = "rados-java_streams";
+        final int chunkSize = 64 * 1024;
+        final byte[] content = new byte[3 * chunkSize + 12345];
+        new Random().nextBytes(content);
+
+        try {
+            try (RadosOutputStream out = ioctx.openOutputStream(oid, chunkSize, 2)) {
+                out.write(content, 0, 1000);
+                // a partial chunk, the next one still ends at a chunk boundary
+                out.flush();
+                for (int i = 1000; i < 1010; i++) {
+                    out.write(content[i]);
+                }
+                out.write(content, 1010, content.length - 1010);
+                assertEquals(content.length, out.getPosition());
+            }
+            assertTrue(Arrays.equals(content, readFully(oid)));
+
+            ByteArrayOutputStream copy = new ByteArrayOutputStream();
+            try (RadosInputStream in = ioctx.openInputStream(oid, chunkSize, 2)) {
+                byte[] b = new byte[10000];
+                int n;
+                while ((n = in.read(b)) > 0) {
+                    copy.write(b, 0, n);
+                }
+                assertEquals(-1, in.read());
+            }
+            assertTrue(Arrays.equals(content, copy.toByteArray()));
+
+            try (RadosInputStream in = ioctx.openInputStream(oid, chunkSize, 1)) {
+                assertEquals(content[0] & 0xff, in.read());
+                // past the chunks in flight
+                assertEquals(2 * chunkSize, in.skip(2 * chunkSize));
+                assertEquals(2 * chunkSize + 1, in.getPosition());
+                assertEquals(content[2 * chunkSize + 1] & 0xff, in.read());
+                assertEquals(content.length - 2 * chunkSize - 2, in.skip(content.length));
+                assertEquals(-1, in.read());
+            }
+
+            // an empty stream still replaces the content
+            new RadosOutputStream(ioctx, oid, chunkSize, 1).close();
+            assertEquals(0, ioctx.stat(oid).getSize());
+
+            // with an alignment, flush() keeps the unaligned tail buffered
+            try (RadosOutputStream out = new RadosOutputStream(ioctx, oid, 4096, 1024, 2)) {
+                out.write(content, 0, 2500);
+                out.flush();
+                assertEquals(2048, ioctx.stat(oid).getSize());
+                assertEquals(2500, out.getPosition());
+                out.write(content, 2500, 100);
+                out.flush();
+                assertEquals(2048, ioctx.stat(oid).getSize());
+            }
+            assertTrue(Arrays.equals(Arrays.copyOf(content, 2600), readFully(oid)));
+        } finally {
+            cleanupObject(rados, ioctx, oid);
+        }
+    }
+
+    @Test
+    public void testObjectChannel() throws Exception {
+        final String oid = "rados-java_channel";
+        final int blockSize = 4096;
+        final byte[] content = new byte[3 * blockSize + 100];
+        new Random().nextBytes(content);
+        ioctx.write(oid, content);
+
+        try (RadosObjectChannel channel = ioctx.openChannel(oid, blockSize, 2)) {
+            assertEquals(content.length, channel.size());
+
+            // small reads near each other share a block
+            ByteBuffer small = ByteBuffer.allocate(16);
+            channel.position(content.length - 40);
+            assertEquals(16, channel.read(small));
+            small.clear();
+            assertEquals(16, channel.read(small));
+            small.clear();
+            assertEquals(8, channel.read(small));
+            assertEquals(-1, channel.read(small));
+            assertEquals(1, channel.getCacheMisses());
+            assertEquals(2, channel.getCacheHits());
+            assertTrue(Arrays.equals(Arrays.copyOfRange(content, content.length - 8, content.length),
+                    Arrays.copyOf(small.array(), 8)));
+
+            // a small read across a block boundary
+            ByteBuffer across = ByteBuffer.allocateDirect(10);
+            channel.position(blockSize - 5);
+            assertEquals(10, channel.read(across));
+            across.flip();
+            for (int i = 0; i < 10; i++) {
+                assertEquals(content[blockSize - 5 + i], across.get());
+            }
+
+            // large reads bypass the cache
+            ByteBuffer large = ByteBuffer.allocateDirect(2 * blockSize);
+            channel.position(0);
+            assertEquals(2 * blockSize, channel.read(large));
+            assertEquals(2 * blockSize, channel.position());
+
+            // writes drop the cached blocks they overlap
+            channel.position(blockSize - 2);
+            assertEquals(4, channel.write(ByteBuffer.wrap(new byte[] { 1, 2, 3, 4 })));
+            ByteBuffer check = ByteBuffer.allocate(4);
+            channel.position(blockSize - 2);
+            assertEquals(4, channel.read(check));
+            assertTrue(Arrays.equals(new byte[] { 1, 2, 3, 4 }, check.array()));
+
+            channel.truncate(blockSize);
+            assertEquals(blockSize, channel.size());
+            assertEquals(blockSize, channel.position());
+            assertEquals(blockSize, ioctx.stat(oid).getSize());
+        } finally {
+            cleanupObject(rados, ioctx, oid);
+        }
+    }
+
+    @Test
+    public void testParallelUpload() throws Exception {
+        final String oid = "rados-java_upload";
+        final int partSize = 64 * 1024;
+        final byte[] content = new byte[3 * partSize + 500];
+        new Random().nextBytes(content);
+        // a larger previous version must not show through
+        ioctx.write(oid, new byte[5 * partSize]);
+
+        try (ParallelUploader uploader = new ParallelUploader(ioctx, partSize, 2)) {
+            Map<String, byte[]> xattrs = new HashMap<>();
+            xattrs.put("content-type", "application/octet-stream".getBytes());
+
+            ParallelUploader.UploadResult result = uploader.upload(oid, ByteBuffer.wrap(content), xattrs);
+            assertEquals(content.length, result.getBytes());
+            assertEquals(4, result.getParts());
+            assertTrue(result.getBytesPerSecond() > 0);
+            assertTrue(Arrays.equals(content, readFully(oid)));
+            assertEquals("application/octet-stream", ioctx.getExtendedAttributes(oid).get("content-type"));
+
+            ByteBuffer direct = ByteBuffer.allocateDirect(content.length);
+            direct.put(content).flip();
+            uploader.upload(oid, direct, null);
+            assertFalse(direct.hasRemaining());
+            assertTrue(Arrays.equals(content, readFully(oid)));
+
+            File file = File.createTempFile("rados-java", "upload");
+            try {
+                Files.write(file.toPath(), content);
+                try (InputStream in = new FileInputStream(file)) {
+                    result = uploader.upload(oid, in, null);
+                }
+                assertEquals(content.length, result.getBytes());
+                assertTrue(Arrays.equals(content, readFully(oid)));
+
+                result = ioctx.upload(oid, file.toPath(), null);
+                assertEquals(1, result.getParts());
+                assertTrue(Arrays.equals(content, readFully(oid)));
+            } finally {
+                file.delete();
+            }
+
+            result = uploader.upload(oid, ByteBuffer.allocate(0), null);
+            assertEquals(0, result.getParts());
+            assertEquals(0, ioctx.stat(oid).getSize());
+        } finally {
+            cleanupObject(rados, ioctx, oid);
+        }
+    }
+
+    @Test
+    public void testParallelDownload() throws Exception {
+        final String oid = "rados-java_download";
+        final int partSize = 64 * 1024;
+        final byte[] content = new byte[3 * partSize + 500];
+        new Random().nextBytes(content);
+        ioctx.write(oid, content);
+
+        try (ParallelDownloader downloader = new ParallelDownloader(ioctx, partSize, 2)) {
+            ByteBuffer dst = ByteBuffer.allocateDirect(content.length + 10);
+            dst.position(10);
+            ParallelDownloader.DownloadResult result = downloader.download(oid, 0, dst);
+            assertEquals(content.length, result.getBytes());
+            assertEquals(4, result.getParts());
+            assertEquals(dst.capacity(), dst.position());
+            byte[] copy = new byte[content.length];
+            dst.position(10);
+            dst.get(copy);
+            assertTrue(Arrays.equals(content, copy));
+
+            // a range in the middle, bounded by the buffer
+            dst = ByteBuffer.allocateDirect(partSize);
+            result = downloader.download(oid, partSize / 2, dst);
+            assertEquals(partSize, result.getBytes());
+            dst.flip();
+            copy = new byte[partSize];
+            dst.get(copy);
+            assertTrue(Arrays.equals(Arrays.copyOfRange(content, partSize / 2, partSize / 2 + partSize), copy));
+
+            File file = File.createTempFile("rados-java", "download");
+            try {
+                try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                    result = downloader.download(oid, channel, 3);
+                }
+                assertEquals(content.length, result.getBytes());
+                byte[] written = Files.readAllBytes(file.toPath());
+                assertEquals(content.length + 3, written.length);
+                assertTrue(Arrays.equals(content, Arrays.copyOfRange(written, 3, written.length)));
+
+                result = ioctx.download(oid, file.toPath());
+                assertEquals(content.length, result.getBytes());
+                assertTrue(Arrays.equals(content, Files.readAllBytes(file.toPath())));
+            } finally {
+                file.delete();
+            }
+        } finally {
+            cleanupObject(rados, ioctx, oid);
+        }
+    }
+
+    @Test
+    public void testOmap() throws Exception {
+        final String oid = "rados-java_omap";
+        ioctx.write(oid, "index");
+
+        try {
+            Map<String, byte[]> values = new HashMap<>();
+            for (int i = 0; i < 25; i++) {
+                values.put(String.format("key-%02d", i), String.valueOf(i).getBytes());
+            }
+            values.put("other", "x".getBytes());
+            ioctx.omapSet(oid, values);
+
+            Map<String, byte[]> found = ioctx.omapGet(oid, "key-03", "missing", "other");
+            assertEquals(2, found.size());
+            assertEquals("3", new String(found.get("key-03")));
+
+            // pages of 10 over the 25 keys with the prefix, starting after key-04
+            OmapIterator it = ioctx.omapIterator(oid, "key-04", "key-", 10);
+            List<String> keys = new ArrayList<>();
+            while (it.hasNext()) {
+                Map.Entry<String, byte[]> entry = it.next();
+                assertEquals(new String(values.get(entry.getKey())), new String(entry.getValue()));
+                keys.add(entry.getKey());
+            }
+            assertEquals(20, keys.size());
+            assertEquals("key-05", keys.get(0));
+            assertEquals("key-24", keys.get(19));
+            assertTrue(it.getPageCount() >= 2);
+
+            ioctx.omapRemove(oid, "key-00", "other");
+            assertTrue(ioctx.omapGet(oid, "key-00", "other").isEmpty());
+
+            ioctx.omapClear(oid);
+            assertFalse(ioctx.omapIterator(oid, null, null, 100).hasNext());
+        } finally {
+            cleanupObject(rados, ioctx, oid);
+        }
+    }
+
+    @Test
+    public void testWriteOp() throws Exception {
+        final String oid = "rados-java_writeOp";
+        final String content = "The quick brown fox jumped over the lazy dog.";
+
+        try {
+            try (WriteOp wop = ioctx.writeOpCreate()) {
+                wop.queueCreate(true);
+                wop.queueWriteFull(content.getBytes());
+                wop.queueTruncate(9);
+                wop.queueAppend(" red".getBytes());
+                wop.queueSetXattr("color", "red".getBytes());
+                Map<String, byte[]> omap = new HashMap<>();
+                omap.put("key1", "value1".getBytes());
+                omap.put("key2", new byte[0]);
+                wop.queueOmapSet(omap);
+                wop.operate(oid, Rados.OPERATION_NOFLAG);
+            }
+            assertEquals("The quick red", new String(readFully(oid)));
+            assertEquals("red", ioctx.getExtendedAttribute(oid, "color"));
+
+            // the whole operation fails, so the append must not be applied
+            try (WriteOp wop = ioctx.writeOpCreate()) {
+                wop.queueAppend(" fox".getBytes());
+                wop.queueCreate(true);
+                wop.operate(oid, Rados.OPERATION_NOFLAG);
+                fail("exclusive create of an existing object should fail");
+            } catch (RadosException e) {
+                assertEquals(ErrorCode.EEXIST.getErrorCode(), e.getReturnValue());
+            }
+            assertEquals("The quick red", new String(readFully(oid)));
+
+            try (WriteOp wop = ioctx.writeOpCreate()) {
+                wop.queueZero(0, 3);
+                wop.queueRmXattr("color");
+                wop.queueOmapRemove("key1");
+                wop.operate(oid, Rados.OPERATION_NOFLAG);
+            }
+            assertEquals(13, ioctx.stat(oid).getSize());
+            assertEquals(0, readFully(oid)[0]);
+            assertFalse(ioctx.getExtendedAttributes(oid).containsKey("color"));
+
+            try (WriteOp wop = ioctx.writeOpCreate()) {
+                wop.queueOmapClear();
+                wop.queueRemove();
+                wop.operate(oid, Rados.OPERATION_NOFLAG);
+            }
+            try {
+                ioctx.stat(oid);
+                fail("the object should have been removed");
+            } catch (RadosNotFoundException e) {
+                // this is expected
+            }
+        } finally {
+            try {
+                cleanupObject(rados, ioctx, oid);
+            } catch (RadosNotFoundException e) {
+                // already removed by the test
+            }
+        }
+    }
+
+    private byte[] readFully(String oid) throws RadosException {
+        byte[] buf = new byte[(int) ioctx.stat(oid).getSize()];
+        ioctx.read(oid, buf.length, 0, buf);
+        return buf;
+    }
+
+    @Test
+    public void testListObjectsLazily() throws Exception {
+        final String prefix = "rados-java_lazyList-";
+        final int count = 20;
+        Set<String> written = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            ioctx.write(prefix + i, "x");
+            written.add(prefix + i);
+        }
+
+        try {
+            try (Stream<String> objects = ioctx.listObjectsStream()) {
+                assertEquals(written, objects.filter(oid -> oid.startsWith(prefix)).collect(Collectors.toSet()));
+            }
+
+            // stop early, close() releases the list handle
+            try (ObjectIterator iterator = ioctx.listObjectsIterator()) {
+                assertTrue(iterator.hasNext());
+                assertNotNull(iterator.next());
+            }
+
+            ObjectIterator iterator = ioctx.listObjectsIterator();
+            iterator.close();
+            assertFalse(iterator.hasNext());
+        } finally {
+            for (String oid : written) {
+                cleanupObject(rados, ioctx, oid);
+            }
+        }
+    }
+
+    @Test
+    public void testListObjectsParallelAndSlices() throws Exception {
+        final String prefix = "rados-java_parallelList-";
+        final int count = 200;
+        Set<String> written = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            ioctx.write(prefix + i, "x");
+            written.add(prefix + i);
+        }
+
+        try {
+            Set<String> listed;
+            try (Stream<String> objects = ioctx.listObjectsParallel()) {
+                listed = objects.filter(oid -> oid.startsWith(prefix))
+                        .collect(Collectors.toSet());
+            }
+            assertEquals(written, listed);
+
+            // every object is in exactly one slice
+            List<String> fromSlices = new ArrayList<>();
+            for (int slice = 0; slice < 4; slice++) {
+                try (Stream<String> objects = ioctx.listObjectsSlice(slice, 4)) {
+                    objects.filter(oid -> oid.startsWith(prefix)).forEach(fromSlices::add);
+                }
+            }
+            assertEquals(count, fromSlices.size());
+            assertEquals(written, new HashSet<>(fromSlices));
+        } finally {
+            for (String oid : written) {
+                cleanupObject(rados, ioctx, oid);
+            }
+        }
+    }
+
+    @Test
+    public void testListObjectsFiltered() throws Exception {
+        final String prefix = "rados-java_filteredList-";
+        final int count = 20;
+        Set<String> written = new HashSet<>();
+        Set<String> tagged = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            ioctx.write(prefix + i, "x");
+            written.add(prefix + i);
+            if (i % 4 == 0) {
+                try (WriteOp op = ioctx.writeOpCreate()) {
+                    op.queueSetXattr("rados-java.tag", "yes".getBytes());
+                    op.operate(prefix + i, Rados.OPERATION_NOFLAG);
+                }
+                tagged.add(prefix + i);
+            }
+        }
+
+        try {
+            try (Stream<String> objects = ioctx.listObjectsWithPrefix(prefix)) {
+                assertEquals(written, objects.collect(Collectors.toSet()));
+            }
+
+            try (Stream<String> objects = ioctx.listObjectsWithXattr("rados-java.tag", "yes".getBytes())) {
+                Set<String> listed = objects.filter(oid -> oid.startsWith(prefix)).collect(Collectors.toSet());
+                assertEquals(tagged, listed);
+            }
+
+            ObjectListFilter filter = ObjectListFilter.xattrEquals("rados-java.tag", "yes".getBytes())
+                    .withPrefix(prefix + "1");
+            List<String> fromSlices = new ArrayList<>();
+            for (int slice = 0; slice < 2; slice++) {
+                try (Stream<String> objects = ioctx.listObjectsSlice(slice, 2, filter)) {
+                    objects.forEach(fromSlices::add);
+                }
+            }
+            assertEquals(new HashSet<>(Arrays.asList(prefix + "12", prefix + "16")), new HashSet<>(fromSlices));
+        } finally {
+            for (String oid : written) {
+                cleanupObject(rados, ioctx, oid);
+            }
+        }
+    }
+
+    @Test
+    public void testListObjectEntriesAllNamespaces() throws Exception {
+        final String oid = "rados-java_namespacedList";
+        Set<ObjectListEntry> written = new HashSet<>();
+        for (String namespace : new String[] { "rados-java-ns1", "rados-java-ns2" }) {
+            ioctx.setNamespace(namespace);
+            ioctx.write(oid, "x");
+            written.add(new ObjectListEntry(namespace, oid, null));
+        }
+
+        try {
+            ioctx.setNamespace(Rados.ALL_NAMESPACES);
+            Set<ObjectListEntry> listed;
+            try (Stream<ObjectListEntry> objects = ioctx.listObjectEntries()) {
+                listed = objects.filter(entry -> entry.getOid().equals(oid)).collect(Collectors.toSet());
+            }
+            assertEquals(written, listed);
+        } finally {
+            for (ObjectListEntry entry : written) {
+                ioctx.setNamespace(entry.getNamespace());
+                cleanupObject(rados, ioctx, entry.getOid());
+            }
+            ioctx.setNamespace(null);
+        }
+    }
+
+    @Test
+    public void testListPartialResumeFromCursor() throws Exception {
+        final String prefix = "rados-java_cursorList-";
+        final int count = 50;
+        Set<String> written = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            ioctx.write(prefix + i, "x");
+            written.add(prefix + i);
+        }
+
+        try {
+            List<String> all = new ArrayList<>();
+            ListCtx first = ioctx.listObjectsPartial(10);
+            first.nextObjects();
+            all.addAll(Arrays.asList(first.getObjects()));
+            first.nextObjects();
+            all.addAll(Arrays.asList(first.getObjects()));
+            String cursor = first.getCursor();
+            first.close();
+
+            // a fresh listing picks up where the first one stopped
+            ListCtx resumed = ioctx.listObjectsPartial(10, cursor);
+            while (resumed.nextObjects() > 0) {
+                all.addAll(Arrays.asList(resumed.getObjects()));
+            }
+            assertEquals("end", resumed.getCursor());
+
+            Set<String> listed = new HashSet<>();
+            for (String oid : all) {
+                if (oid.startsWith(prefix)) {
+                    assertTrue("listed twice: " + oid, listed.add(oid));
+                }
+            }
+            assertEquals(written, listed);
+        } finally {
+            for (String oid : written) {
+                cleanupObject(rados, ioctx, oid);
+            }
+        }
+    }
+
+    /**
+     * A cursor pointing past the end of a placement group which lost its
+     * objects resumes at the next placement group without skipping its
+     * first object, even when taken again right after seeking
+     */
+    @Test
+    public void testListPartialCursorOnShrunkPlacementGroup() throws Exception {
+        final String prefix = "rados-java_shrunkCursor-";
+        final int count = 100;
+        Set<String> written = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            ioctx.write(prefix + i, "x");
+            written.add(prefix + i);
+        }
+
+        try {
+            // the objects of each placement group, in listing order, and the
+            // cursor after the last one
+            List<String> hashes = new ArrayList<>();
+            Map<String, List<String>> groups = new HashMap<>();
+            Map<String, String> cursors = new HashMap<>();
+            ListCtx all = ioctx.listObjectsPartial(1);
+            while (all.nextObjects() > 0) {
+                String cursor = all.getCursor();
+                String hash = cursor.substring(0, cursor.indexOf(':'));
+                if (!groups.containsKey(hash)) {
+                    hashes.add(hash);
+                    groups.put(hash, new ArrayList<String>());
+                }
+                groups.get(hash).add(all.getObjects()[0]);
+                cursors.put(hash, cursor);
+            }
+
+            // a placement group holding only objects of this test, which is
+            // followed by another one
+            String shrunk = null;
+            for (int i = 0; i < hashes.size() - 1 && shrunk == null; i++) {
+                boolean ours = true;
+                for (String oid : groups.get(hashes.get(i))) {
+                    ours &= written.contains(oid);
+                }
+                if (ours) {
+                    shrunk = hashes.get(i);
+                }
+            }
+            assertNotNull("No placement group holds only objects of this test", shrunk);
+            final String next = groups.get(hashes.get(hashes.indexOf(shrunk) + 1)).get(0);
+            for (String oid : groups.get(shrunk)) {
+                ioctx.remove(oid);
+                written.remove(oid);
+            }
+
+            ListCtx seeked = ioctx.listObjectsPartial(1, cursors.get(shrunk));
+            String cursor = seeked.getCursor();
+            assertTrue("The object read ahead should not count: " + cursor, cursor.endsWith(":0"));
+            assertFalse(cursor.startsWith(shrunk + ":"));
+
+            ListCtx resumed = ioctx.listObjectsPartial(1, cursor);
+            assertEquals(1, resumed.nextObjects());
+            assertEquals(next, resumed.getObjects()[0]);
+            resumed.close();
+
+            assertEquals(1, seeked.nextObjects());
+            assertEquals(next, seeked.getObjects()[0]);
+            seeked.close();
+        } finally {
+            for (String oid : written) {
+                cleanupObject(rados, ioctx, oid);
+            }
+        }
+    }
+
     @Test
     public void testListPartial() {
         /**
@@ -554,6 +1571,226 @@ public final class TestRados {
         }
     }
 
+    /**
+     * This test sets binary extended attributes, one larger than the scratch
+     * buffer, and reads them back with their exact length.
+     */
+    @Test
+    public void testIoCtxBinaryExtendedAttributes() throws Exception {
+        String oid = "rados-java-w/binary.attributes";
+        byte[] small = new byte[] { 1, 0, 2, 0 };
+        byte[] large = new byte[10000];
+        new Random().nextBytes(large);
+        try {
+            ioctx.setExtendedAttribute(oid, "small", small);
+            ioctx.setExtendedAttribute(oid, "large", large);
+            ioctx.setExtendedAttribute(oid, "empty", new byte[0]);
+
+            assertTrue(Arrays.equals(small, ioctx.getExtendedAttributeBytes(oid, "small")));
+            // probed through the listing, then read through the grown scratch buffer
+            assertTrue(Arrays.equals(large, ioctx.getExtendedAttributeBytes(oid, "large")));
+            assertTrue(Arrays.equals(large, ioctx.getExtendedAttributeBytes(oid, "large")));
+            assertEquals(0, ioctx.getExtendedAttributeBytes(oid, "empty").length);
+
+            Map<String, byte[]> all = ioctx.getExtendedAttributesBytes(oid);
+            assertEquals(3, all.size());
+            assertTrue(Arrays.equals(small, all.get("small")));
+            assertTrue(Arrays.equals(large, all.get("large")));
+
+            ByteBuffer value = ByteBuffer.allocateDirect(small.length);
+            value.put(small).flip();
+            ioctx.setExtendedAttribute(oid, "direct", value);
+            assertFalse(value.hasRemaining());
+            ByteBuffer read = ByteBuffer.allocateDirect(16);
+            assertEquals(small.length, ioctx.getExtendedAttribute(oid, "direct", read));
+            assertEquals(small.length, read.position());
+
+            try {
+                ioctx.getExtendedAttribute(oid, "large", ByteBuffer.allocateDirect(16));
+                fail("A value larger than the buffer should fail with ERANGE");
+            } catch (RadosException e) {
+                assertEquals(ErrorCode.ERANGE.getErrorCode(), e.getReturnValue());
+            }
+        } finally {
+            cleanupObject(rados, ioctx, oid);
+        }
+    }
+
+    /**
+     * This test checks that the metadata cache serves repeated lookups and
+     * follows the modifications made through its IoCTX.
+     */
+    @Test
+    public void testMetadataCache() throws Exception {
+        String oid = "rados-java_metadata_cache";
+        try (ObjectMetadataCache cache = ioctx.createMetadataCache(128, 1, TimeUnit.MINUTES)) {
+            try {
+                cache.stat(oid);
+                fail("The object should not exist yet");
+            } catch (RadosNotFoundException e) {
+                // cached as missing
+            }
+
+            ioctx.write(oid, new byte[100]);
+            assertEquals(100, cache.stat(oid).getSize());
+            assertEquals(100, cache.stat(oid).getSize());
+
+            ioctx.setExtendedAttribute(oid, "key", new byte[] { 1, 2 });
+            assertTrue(Arrays.equals(new byte[] { 1, 2 }, cache.getExtendedAttributeBytes(oid, "key")));
+
+            try (WriteOp op = ioctx.writeOpCreate()) {
+                op.queueSetXattr("key", new byte[] { 3 });
+                op.queueTruncate(10);
+                op.operate(oid, Rados.OPERATION_NOFLAG);
+            }
+            assertTrue(Arrays.equals(new byte[] { 3 }, cache.getExtendedAttributeBytes(oid, "key")));
+            assertEquals(10, cache.stat(oid).getSize());
+            assertEquals(1, cache.getHits());
+
+            ioctx.remove(oid);
+            try {
+                cache.stat(oid);
+                fail("The object should be removed");
+            } catch (RadosNotFoundException e) {
+                // removed through the same IoCTX
+            }
+        } finally {
+            try {
+                cleanupObject(rados, ioctx, oid);
+            } catch (RadosNotFoundException e) {
+                // already removed by the test
+            }
+        }
+    }
+
+    /**
+     * This test watches an object, notifies it and checks the reply of the
+     * watcher, which is acknowledged from the listener.
+     */
+    @Test
+    public void testWatchNotify() throws Exception {
+        String oid = "rados-java_watch";
+        ioctx.write(oid, new byte[0]);
+        final BlockingQueue<byte[]> received = new LinkedBlockingQueue<>();
+        Watch.Listener listener = new Watch.Listener() {
+            @Override
+            public void onNotify(Watch.Notification notification) {
+                received.add(notification.getPayload());
+                try {
+                    notification.ack("pong".getBytes());
+                } catch (RadosException e) {
+                    fail(e.getMessage());
+                }
+            }
+
+            @Override
+            public void onError(Watch watch, RadosException e) {
+                fail(e.getMessage());
+            }
+        };
+        try (Watch watch = ioctx.watch(oid, listener)) {
+            assertTrue(watch.check() >= 0);
+            NotifyResult result = ioctx.notify(oid, "ping".getBytes(), 5, TimeUnit.SECONDS);
+            assertTrue(Arrays.equals("ping".getBytes(), received.poll(5, TimeUnit.SECONDS)));
+            assertEquals(1, result.getAcks().size());
+            assertEquals(watch.getCookie(), result.getAcks().get(0).getCookie());
+            assertTrue(Arrays.equals("pong".getBytes(), result.getAcks().get(0).getReply()));
+            assertTrue(result.getTimeouts().isEmpty());
+        } finally {
+            cleanupObject(rados, ioctx, oid);
+        }
+    }
+
+    /**
+     * This test invalidates a metadata cache through a notification, as if
+     * the object was modified by another client.
+     */
+    @Test
+    public void testCacheInvalidator() throws Exception {
+        String oid = "rados-java_invalidated";
+        String control = "rados-java_invalidation";
+        ioctx.write(oid, new byte[10]);
+        IoCTX other = rados.ioCtxCreate(POOL);
+        try (ObjectMetadataCache cache = ioctx.createMetadataCache(16, 1, TimeUnit.HOURS);
+                CacheInvalidator invalidator = new CacheInvalidator(ioctx, control, cache)) {
+            assertEquals(10, cache.stat(oid).getSize());
+            // written behind the back of the cache
+            other.write(oid, new byte[20]);
+            assertEquals(10, cache.stat(oid).getSize());
+
+            NotifyResult result = invalidator.publish(oid);
+            assertEquals(1, result.getAcks().size());
+            // acknowledged once the cache was invalidated
+            assertEquals(20, cache.stat(oid).getSize());
+            assertTrue(invalidator.check());
+        } finally {
+            rados.ioCtxDestroy(other);
+            cleanupObject(rados, ioctx, oid);
+            cleanupObject(rados, ioctx, control);
+        }
+    }
+
+    /**
+     * This test reads objects through the object cache: hits are served as
+     * read-only views, objects read twice survive a scan of objects read
+     * once, writes through the same IoCTX drop the cached content and the
+     * buffers stay within the budget.
+     */
+    @Test
+    public void testObjectCache() throws Exception {
+        final int size = 1024;
+        final String[] oids = new String[6];
+        Random random = new Random();
+        try (ObjectCache cache = ioctx.createObjectCache(4 * size, 1, TimeUnit.HOURS)) {
+            for (int i = 0; i < oids.length; i++) {
+                oids[i] = "rados-java_object_cache_" + i;
+                byte[] content = new byte[size];
+                random.nextBytes(content);
+                ioctx.write(oids[i], content);
+            }
+
+            try (ObjectCache.Content hot = cache.get(oids[0])) {
+                assertTrue(hot.getBuffer().isReadOnly());
+                assertEquals(size, hot.getBuffer().remaining());
+                try (ObjectCache.Content again = cache.get(oids[0])) {
+                    assertEquals(hot.getBuffer(), again.getBuffer());
+                }
+                assertEquals(1, cache.getMisses());
+                assertEquals(1, cache.getHits());
+
+                // a scan of objects read once evicts them, not the hot object
+                for (int i = 1; i < oids.length; i++) {
+                    cache.get(oids[i]).release();
+                }
+                assertEquals(4 * size, cache.getCachedBytes());
+                assertEquals(2, cache.getEvictions());
+                assertTrue(cache.getAllocatedBytes() <= 4 * size);
+                cache.get(oids[0]).release();
+                assertEquals(2, cache.getHits());
+
+                try (ObjectCache.Content range = cache.read(oids[0], size - 10, 100)) {
+                    assertEquals(10, range.getBuffer().remaining());
+                    assertEquals(hot.getBuffer().get(size - 10), range.getBuffer().get(0));
+                }
+
+                byte[] changed = new byte[size / 2];
+                ioctx.write(oids[0], changed);
+                try (ObjectCache.Content reloaded = cache.get(oids[0])) {
+                    assertEquals(size / 2, reloaded.getBuffer().remaining());
+                }
+                // the buffer held is not reused
+                assertEquals(size, hot.getBuffer().remaining());
+                assertTrue(cache.getAllocatedBytes() <= 4 * size);
+            }
+        } finally {
+            for (String oid : oids) {
+                if (oid != null) {
+                    cleanupObject(rados, ioctx, oid);
+                }
+            }
+        }
+    }
+
     static class RadosFinalizeTest extends Rados {
 
         public RadosFinalizeTest(String id) {
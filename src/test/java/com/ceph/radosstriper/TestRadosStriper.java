@@ -4,6 +4,7 @@ package com.ceph.radosstriper;
 import com.ceph.rados.IoCTX;
 import com.ceph.rados.Rados;
 import org.junit.AfterClass;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
@@ -11,6 +12,8 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Map;
 import java.util.Random;
 
 public class TestRadosStriper {
@@ -149,5 +152,33 @@ public class TestRadosStriper {
         }
     }
 
+    /**
+     * This test sets binary extended attributes, one larger than the
+     * scratch buffer, and reads them back with their exact length
+     */
+    @Test
+    public void testIoCtxStripedBinaryExtendedAttributes() throws Exception {
+        String oid = "rados-java-striped-xattrs";
 
+        try {
+            ioctx.write(oid, "x".getBytes());
+            byte[] small = new byte[] { 1, 0, 2, 0 };
+            byte[] large = new byte[10000];
+            new Random(42).nextBytes(large);
+            ioctx.setExtendedAttribute(oid, "small", small);
+            ioctx.setExtendedAttribute(oid, "large", large);
+
+            assertArrayEquals(small, ioctx.getExtendedAttributeBytes(oid, "small"));
+            assertArrayEquals(large, ioctx.getExtendedAttributeBytes(oid, "large"));
+            Map<String, byte[]> all = ioctx.getExtendedAttributesBytes(oid);
+            assertArrayEquals(small, all.get("small"));
+            assertArrayEquals(large, all.get("large"));
+
+            ByteBuffer buf = ByteBuffer.allocateDirect(16);
+            assertEquals(small.length, ioctx.getExtendedAttribute(oid, "small", buf));
+            assertEquals(small.length, buf.position());
+        } finally {
+            ioctx.remove(oid);
+        }
+    }
 }